@@ -0,0 +1,154 @@
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.LockSupport;
+
+import cryptography.Passwords;
+import server.post.InvalidVoteException;
+import server.post.Post.Vote;
+import server.storage.PostMap;
+import server.storage.UserMap;
+import server.user.SameUserException;
+
+/**
+ * Backup benchmark for the storages: storages filled up with USERS users and POSTS posts are backed up over and over again while
+ * every thread keeps on following, unfollowing users and rating posts picked at random every PAUSE nanoseconds, the way the handlers
+ * of the matching commands do.
+ * The time each backup takes and the latency of the requests handled meanwhile are reported.
+ * Usage: java BackupBenchmark [number of backups].
+ * @author Giacomo Trapani.
+ */
+public class BackupBenchmark
+{
+	/** Number of users registered before the run. */
+	private static final int USERS = 20000;
+	/** Number of posts created before the run. */
+	private static final int POSTS = 100000;
+	/** Number of users followed by every user before the run. */
+	private static final int FOLLOWING = 16;
+	/** Number of threads handling requests. */
+	private static final int THREADS = 4;
+	/** Default number of backups. */
+	private static final int DEFAULTBACKUPS = 10;
+	/** Nanoseconds each thread waits for between two requests. */
+	private static final long PAUSE = 100000;
+	/** Maximum number of latencies recorded by each thread. */
+	private static final int SAMPLES = 1 << 20;
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		final int backups = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTBACKUPS;
+		final UserMap users = new UserMap();
+		final PostMap posts = new PostMap();
+		final byte[] salt = Passwords.generateSalt();
+		final String password = Passwords.hashPassword("password".getBytes(StandardCharsets.US_ASCII), salt);
+		final Set<String> tags = Collections.singleton("benchmark");
+		final int[] ids = new int[POSTS];
+		final File directory = Files.createTempDirectory("winsome-backup").toFile();
+
+		for (int i = 0; i < USERS; i++)
+			users.register(username(i), password, tags, salt);
+		for (int i = 0; i < USERS; i++)
+			for (int j = 1; j <= FOLLOWING; j++)
+				users.handleFollowUser(username(i), username((i + j * 97) % USERS));
+		for (int i = 0; i < POSTS; i++)
+			ids[i] = posts.handleCreatePost(username(i % USERS), users, "title", "contents");
+		backup(users, posts, directory); // every entity is backed up once, so that the following backups are the steady state ones
+
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final List<long[]> latencies = new ArrayList<>();
+		final int[] counts = new int[THREADS];
+		final List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < THREADS; t++)
+		{
+			final long[] samples = new long[SAMPLES];
+			final int index = t;
+			latencies.add(samples);
+			final Thread worker = new Thread(() ->
+			{
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				int n = 0;
+				while (!done.get() && n < SAMPLES)
+				{
+					final int i = random.nextInt(USERS);
+					final String username = username(i);
+					final String other = username(random.nextInt(USERS));
+					final long begin = System.nanoTime();
+					try
+					{
+						switch (random.nextInt(3))
+						{
+							case 0:
+								users.handleFollowUser(username, other);
+								break;
+
+							case 1:
+								users.handleUnfollowUser(username, other);
+								break;
+
+							default: // rating a post by a user they followed before the run
+								final int author = (i + (1 + random.nextInt(FOLLOWING)) * 97) % USERS;
+								final int post = ids[author + USERS * random.nextInt(POSTS / USERS)];
+								posts.handleRate(username, users, post, random.nextBoolean() ? Vote.UPVOTE : Vote.DOWNVOTE);
+								break;
+						}
+					}
+					catch (SameUserException | InvalidVoteException ignored) { }
+					catch (Exception shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+					samples[n++] = System.nanoTime() - begin;
+					LockSupport.parkNanos(PAUSE);
+				}
+				counts[index] = n;
+			});
+			workers.add(worker);
+			worker.start();
+		}
+
+		final long[] durations = new long[backups];
+		for (int b = 0; b < backups; b++)
+		{
+			Thread.sleep(100);
+			final long begin = System.nanoTime();
+			backup(users, posts, directory);
+			durations[b] = System.nanoTime() - begin;
+		}
+		done.set(true);
+		for (Thread worker : workers) worker.join();
+
+		int total = 0;
+		for (int count : counts) total += count;
+		final long[] all = new long[total];
+		for (int t = 0, offset = 0; t < THREADS; offset += counts[t], t++)
+			System.arraycopy(latencies.get(t), 0, all, offset, counts[t]);
+		Arrays.sort(all);
+		Arrays.sort(durations);
+
+		System.out.println(String.format("backup duration (ms): median %.1f, max %.1f", durations[backups / 2] / 1e6, durations[backups - 1] / 1e6));
+		System.out.println(String.format("request latency (ms): p50 %.3f, p99 %.3f, p99.9 %.3f, max %.1f (%d requests)",
+				all[total / 2] / 1e6, all[(int) (total * 0.99)] / 1e6, all[(int) (total * 0.999)] / 1e6, all[total - 1] / 1e6, total));
+		for (File f : directory.listFiles()) f.delete();
+		directory.delete();
+	}
+
+	/** Backs up both storages inside the given directory. */
+	private static void backup(final UserMap users, final PostMap posts, final File directory)
+	throws Exception
+	{
+		users.backupUsers(new File(directory, "users.json"), new File(directory, "following.json"), new File(directory, "transactions.json"));
+		posts.backupPosts(new File(directory, "posts.json"), new File(directory, "posts-interactions.json"));
+	}
+
+	/** Returns the username of the i-th user. */
+	private static String username(final int i)
+	{
+		return "user" + i;
+	}
+}
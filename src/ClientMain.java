@@ -235,6 +235,11 @@ public class ClientMain
 		{
 			channel = SocketChannel.open(new InetSocketAddress(configuration.serverAddress, configuration.portNoTCP));
 			System.out.println(Colors.ANSI_CYAN + "Connected to server successfully!" + Colors.ANSI_RESET);
+			if (Command.switchProtocol(configuration.protocol, channel, true) != 0)
+			{
+				System.err.println(Colors.ANSI_RED + "Fatal error occurred while negotiating the protocol version: now aborting..." + Colors.ANSI_RESET);
+				System.exit(1);
+			}
 		}
 		catch (IOException e)
 		{
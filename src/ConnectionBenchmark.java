@@ -0,0 +1,329 @@
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import server.connection.Acceptor;
+import server.connection.BlockingAcceptor;
+import server.connection.BufferPool;
+import server.connection.Connection;
+import server.connection.Connection.State;
+import server.connection.FrameDecoder;
+import server.connection.Reactor;
+import server.connection.ReadinessHandler;
+
+/**
+ * Connection benchmark: the same number of clients is connected both to the reactors the server uses by default and to the
+ * engine serving each client by a blocking thread of its own, every client then sends a request at a time and waits for it to be echoed.
+ * The time needed to connect every client, the median time needed for every client to get a response, the threads and the
+ * resident memory used by the server are reported.
+ * Both the clients and the server are run by this process: each connection takes up two file descriptors, so the limit on open files
+ * is to be at least twice the number of connections, and the limit on threads is to be above it if the blocking engine cannot
+ * use virtual threads (i.e. Java versions older than 21). Counts the environment cannot sustain are reported as failed.
+ * Usage: java ConnectionBenchmark [number of connections ...].
+ * @author Giacomo Trapani.
+ */
+public class ConnectionBenchmark
+{
+	/** Default numbers of connections. */
+	private static final int[] DEFAULTCONNECTIONS = { 1000, 10000, 50000 };
+	/** Number of requests sent by each client, the first one is discarded while the JIT compiler warms up. */
+	private static final int ROUNDS = 11;
+	/** Size (in bytes) of the body of each request. */
+	private static final int REQUESTSIZE = 64;
+	/** Maximum size (in bytes) of a frame accepted by the server. */
+	private static final int MAXIMUMFRAMESIZE = 1024;
+	/** Bytes queued for a client above which it is no longer read from. */
+	private static final int HIGHWATERMARK = 1 << 16;
+	/** Number of connections sent from each loopback address, so that ephemeral ports are never exhausted. */
+	private static final int CONNECTIONSPERADDRESS = 10000;
+
+	/** Last byte of the first loopback address clients are to be bound to, every run uses fresh ones as ports left in TIME_WAIT cannot be reused. */
+	private static int nextAddress = 2;
+	/** Time (in msec) after which a phase which has not been completed is given up on. */
+	private static final long TIMEOUT = 120000;
+
+	/** Engine a server may be run by. */
+	private enum Engine
+	{
+		REACTOR("Reactor"),
+		BLOCKING("Blocking");
+
+		public final String description;
+
+		private Engine(final String description)
+		{
+			this.description = description;
+		}
+	}
+
+	/** Echoes every frame back on the reactor's thread. */
+	private static class EchoHandler implements ReadinessHandler
+	{
+		public void onReadable(final SelectionKey key)
+		{
+			final Connection connection = (Connection) key.attachment();
+			try
+			{
+				if (connection.read() == -1)
+				{
+					connection.close();
+					return;
+				}
+				ByteBuffer frame = null;
+				while ((frame = connection.nextFrame()) != null)
+					connection.enqueue(ByteBuffer.allocate(Integer.BYTES).putInt(0, frame.remaining()), frame);
+				connection.reactor.transition(connection, connection.flush() ? State.READING : State.WRITING);
+			}
+			catch (IOException e) { connection.close(); }
+		}
+
+		public void onWritable(final SelectionKey key)
+		{
+			final Connection connection = (Connection) key.attachment();
+			try { if (connection.flush()) connection.reactor.transition(connection, State.READING); }
+			catch (IOException e) { connection.close(); }
+		}
+
+		public void onIdle(final Connection connection)
+		{
+			connection.close();
+		}
+	}
+
+	/** Echoes every frame back on a blocking thread of its own. */
+	private static class BlockingEchoHandler implements Runnable
+	{
+		private final SocketChannel client;
+
+		public BlockingEchoHandler(final SocketChannel client)
+		{
+			this.client = client;
+		}
+
+		public void run()
+		{
+			final FrameDecoder decoder = new FrameDecoder(MAXIMUMFRAMESIZE);
+			final ByteBuffer header = ByteBuffer.allocate(Integer.BYTES);
+			try
+			{
+				while (decoder.read(client) != -1)
+				{
+					ByteBuffer frame = null;
+					while ((frame = decoder.nextFrame()) != null)
+					{
+						header.clear().putInt(0, frame.remaining());
+						final ByteBuffer[] response = { header, frame };
+						while (frame.hasRemaining()) client.write(response);
+						BufferPool.release(frame);
+					}
+				}
+			}
+			catch (IOException e) { }
+			finally
+			{
+				decoder.release();
+				try { client.close(); }
+				catch (IOException ignored) { }
+			}
+		}
+	}
+
+	/** Measurements taken while running an engine. */
+	private static class Result
+	{
+		long connectMillis;
+		double roundMillis;
+		int threads;
+		long residentBytes;
+	}
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		final int[] connections = args.length > 0 ? new int[args.length] : DEFAULTCONNECTIONS;
+		for (int i = 0; i < args.length; i++) connections[i] = Integer.parseInt(args[i]);
+
+		System.out.printf("%d requests of %d bytes per connection, median of %d rounds:\n", ROUNDS - 1, REQUESTSIZE, ROUNDS - 1);
+		System.out.printf("%-9s %11s %12s %12s %8s %12s\n", "Engine", "Connections", "Connect (ms)", "Round (ms)", "Threads", "RSS (MB)");
+		for (int n : connections)
+		{
+			for (Engine engine : Engine.values())
+			{
+				try
+				{
+					final Result r = run(engine, n);
+					System.out.printf("%-9s %11d %12d %12.1f %8d %12s\n", engine.description, n, r.connectMillis, r.roundMillis, r.threads,
+						r.residentBytes < 0 ? "-" : String.valueOf(r.residentBytes >> 20));
+				}
+				catch (IOException | IllegalStateException | OutOfMemoryError e)
+				{
+					System.out.printf("%-9s %11d could not be run: %s\n", engine.description, n, e.getMessage());
+				}
+				System.gc();
+			}
+		}
+		System.exit(0); // threads serving clients which could not be stopped are not waited for
+	}
+
+	/** Connects n clients to a server run by engine, sends every request and stops the server. */
+	private static Result run(final Engine engine, final int n)
+	throws IOException
+	{
+		final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+		final ServerSocketChannel server = ServerSocketChannel.open();
+		final List<Reactor> reactors = new ArrayList<>();
+		final List<SocketChannel> clients = new ArrayList<>();
+		BlockingAcceptor blocking = null;
+		final Result result = new Result();
+
+		server.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), n);
+		try (Selector selector = Selector.open())
+		{
+			if (engine == Engine.REACTOR)
+			{
+				for (int i = 0; i < Runtime.getRuntime().availableProcessors(); i++)
+				{
+					final Reactor r = new Reactor(new EchoHandler(), MAXIMUMFRAMESIZE, HIGHWATERMARK, 0);
+					reactors.add(r);
+					start(r);
+				}
+				start(new Acceptor(server, reactors.toArray(new Reactor[0])));
+			}
+			else
+			{
+				blocking = new BlockingAcceptor(server, BlockingEchoHandler::new);
+				start(blocking);
+			}
+
+			final long residentBefore = residentBytes();
+			long start = System.nanoTime();
+			final int firstAddress = nextAddress;
+			int connected = 0;
+			nextAddress += (n - 1) / CONNECTIONSPERADDRESS + 1;
+			for (int i = 0; i < n; i++)
+			{
+				final SocketChannel c = SocketChannel.open();
+				clients.add(c);
+				c.configureBlocking(false);
+				c.bind(new InetSocketAddress(InetAddress.getByAddress(new byte[] { 127, 0, 0, (byte) (firstAddress + i / CONNECTIONSPERADDRESS) }), 0));
+				if (!c.connect(server.getLocalAddress())) c.register(selector, SelectionKey.OP_CONNECT);
+				else
+				{
+					c.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(Integer.BYTES + REQUESTSIZE));
+					connected++;
+				}
+			}
+			await(selector, n - connected, true);
+			result.connectMillis = (System.nanoTime() - start) / 1000000;
+
+			final ByteBuffer request = ByteBuffer.allocate(Integer.BYTES + REQUESTSIZE);
+			request.putInt(0, REQUESTSIZE);
+			final List<Double> rounds = new ArrayList<>();
+			for (int round = 0; round < ROUNDS; round++)
+			{
+				start = System.nanoTime();
+				for (SocketChannel c : clients)
+				{
+					final ByteBuffer r = request.duplicate();
+					while (r.hasRemaining()) c.write(r);
+				}
+				await(selector, n, false);
+				if (round > 0) rounds.add((System.nanoTime() - start) / 1e6);
+				if (round == 0)
+				{
+					result.threads = threads.getThreadCount();
+					final long resident = residentBytes();
+					result.residentBytes = residentBefore < 0 || resident < 0 ? -1 : resident - residentBefore;
+				}
+			}
+			Collections.sort(rounds);
+			result.roundMillis = rounds.get(rounds.size() / 2);
+			return result;
+		}
+		finally
+		{
+			for (SocketChannel c : clients)
+			{
+				try { c.close(); }
+				catch (IOException ignored) { }
+			}
+			if (blocking != null) blocking.close();
+			else server.close();
+			for (Reactor r : reactors) r.close();
+		}
+	}
+
+	/**
+	 * Waits for n clients either to be connected or to get back a whole response each.
+	 * @throws IllegalStateException if it takes longer than TIMEOUT or a client gets disconnected.
+	 */
+	private static void await(final Selector selector, final int n, final boolean connecting)
+	throws IOException, IllegalStateException
+	{
+		final long deadline = System.currentTimeMillis() + TIMEOUT;
+		int done = 0;
+
+		while (done < n)
+		{
+			final long left = deadline - System.currentTimeMillis();
+			if (left <= 0) throw new IllegalStateException(String.format("only %d out of %d clients have been %s in time.", done, n, connecting ? "connected" : "answered"));
+			selector.select(left);
+			final Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+			while (it.hasNext())
+			{
+				final SelectionKey k = it.next();
+				it.remove();
+				final SocketChannel c = (SocketChannel) k.channel();
+				if (k.isConnectable())
+				{
+					if (!c.finishConnect()) continue;
+					k.interestOps(SelectionKey.OP_READ).attach(ByteBuffer.allocate(Integer.BYTES + REQUESTSIZE));
+					if (connecting) done++;
+				}
+				else if (k.isReadable())
+				{
+					final ByteBuffer response = (ByteBuffer) k.attachment();
+					if (c.read(response) == -1) throw new IllegalStateException("a client has been disconnected by the server.");
+					if (response.hasRemaining()) continue;
+					response.clear();
+					done++;
+				}
+			}
+		}
+	}
+
+	/** Runs task on a daemon thread. */
+	private static void start(final Runnable task)
+	{
+		final Thread t = new Thread(task);
+		t.setDaemon(true);
+		t.start();
+	}
+
+	/** Returns the resident memory (in bytes) of this process, -1 if it cannot be read. */
+	private static long residentBytes()
+	{
+		final Path status = Paths.get("/proc/self/status");
+		try
+		{
+			for (String line : Files.readAllLines(status))
+				if (line.startsWith("VmRSS:")) return Long.parseLong(line.replaceAll("[^0-9]", "")) * 1024;
+		}
+		catch (IOException | NumberFormatException e) { }
+		return -1;
+	}
+}
@@ -0,0 +1,40 @@
+import java.io.File;
+
+import configuration.ServerConfiguration;
+import server.storage.PostMap;
+import server.storage.UserMap;
+
+/**
+ * Exports the binary snapshots of the storages to the JSON backups specified inside the server configuration, so that they can be
+ * inspected or imported by a server which is not configured to take binary snapshots. Mutations journaled after the snapshots have
+ * been taken are not exported, they are still replayed on top of the snapshots by the server.
+ * Usage: java ExportSnapshot [server configuration file].
+ * @author Giacomo Trapani.
+ */
+public class ExportSnapshot
+{
+	/** Default server configuration file. */
+	private static final String DEFAULTCONFIGURATION = "./configs/server.properties";
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		final ServerConfiguration configuration = new ServerConfiguration(new File(args.length > 0 ? args[0] : DEFAULTCONFIGURATION));
+
+		if (configuration.usersSnapshotFilename == null)
+		{
+			System.err.println("No snapshot directory has been specified inside the configuration: there is nothing to export.");
+			System.exit(1);
+		}
+
+		long start = System.nanoTime();
+		final UserMap users = UserMap.fromSnapshot(new File(configuration.usersSnapshotFilename));
+		final PostMap posts = PostMap.fromSnapshot(new File(configuration.postsSnapshotFilename));
+		System.out.printf("Snapshots loaded in %d ms.\n", (System.nanoTime() - start) / 1000000);
+
+		start = System.nanoTime();
+		users.backupUsers(new File(configuration.userStorageFilename), new File(configuration.followingStorageFilename), new File(configuration.transactionsFilename));
+		posts.backupPosts(new File(configuration.postStorageFilename), new File(configuration.postsInteractionsStorageFilename));
+		System.out.printf("Storages exported to JSON in %d ms.\n", (System.nanoTime() - start) / 1000000);
+	}
+}
@@ -0,0 +1,129 @@
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import api.CommandCode;
+import api.Protocol;
+import api.RequestField;
+import server.command.Request;
+
+/**
+ * Request parsing benchmark: the same text requests, built the way the client does, are parsed over and over again both by the streaming
+ * parser the server uses and by decoding them to a string and turning them into a Gson tree, the way the server used to.
+ * Every field of the requests is read after parsing them. The median latency and the bytes allocated per request are reported.
+ * Usage: java ParserBenchmark [number of requests parsed by each run].
+ * @author Giacomo Trapani.
+ */
+public class ParserBenchmark
+{
+	/** Default number of requests parsed by each run. */
+	private static final int DEFAULTREQUESTS = 1000000;
+	/** Number of runs discarded while the JIT compiler warms up. */
+	private static final int WARMUPRUNS = 5;
+	/** Number of runs measured. */
+	private static final int RUNS = 10;
+
+	/** Used to parse a request. */
+	@FunctionalInterface
+	private interface Parser
+	{
+		/** Parses message and returns a value depending on every field read, so that no work can be left out. */
+		int parse(final ByteBuffer message);
+	}
+
+	/** Keeps the results of the parsers alive. */
+	private static int sink = 0;
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		final int requests = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTREQUESTS;
+		final List<ByteBuffer> messages = new ArrayList<>();
+		final SocketChannel client = SocketChannel.open(); // never connected, it only identifies the sender
+		final Gson gson = new Gson();
+		final StringBuilder contents = new StringBuilder();
+
+		for (int i = 0; i < 20; i++) contents.append("lorem ipsum ");
+		messages.add(message(CommandCode.LOGINATTEMPT, RequestField.USERNAME, "benchmarker", RequestField.HASHEDPASSWORD, "c2FsdGVkIGFuZCBoYXNoZWQgcGFzc3dvcmQ="));
+		messages.add(message(CommandCode.CREATEPOST, RequestField.AUTHOR, "benchmarker", RequestField.TITLE, "A title", RequestField.CONTENTS, contents.toString()));
+		messages.add(message(CommandCode.COMMENT, RequestField.USERNAME, "benchmarker", RequestField.POSTID, "4242", RequestField.CONTENTS, "Nice post!"));
+		messages.add(message(CommandCode.RATE, RequestField.USERNAME, "benchmarker", RequestField.POSTID, "4242", RequestField.VOTE, "+1"));
+		messages.add(message(CommandCode.SHOWFEED, RequestField.USERNAME, "benchmarker", RequestField.LIMIT, "20", RequestField.CURSOR, "4242"));
+
+		final Parser streaming = message ->
+		{
+			final Request request = Request.parse(client, null, Protocol.TEXT, message);
+			int r = request.getCommand().ordinal();
+			for (RequestField f : RequestField.values())
+			{
+				final String value = request.get(f);
+				if (value != null) r += value.length();
+			}
+			return r;
+		};
+		final Parser tree = message ->
+		{
+			final JsonObject fields = gson.fromJson(StandardCharsets.US_ASCII.decode(message).toString(), JsonObject.class);
+			int r = 0;
+			for (RequestField f : RequestField.values())
+			{
+				final JsonElement value = fields.get(f.name);
+				if (value != null && value.isJsonPrimitive()) r += value.getAsString().length();
+			}
+			return r;
+		};
+
+		if (streaming.parse(messages.get(0).duplicate()) == 0 || tree.parse(messages.get(0).duplicate()) == 0)
+			throw new IllegalStateException("Requests are not parsed the way they are expected to be.");
+		System.out.printf("%d requests per run, median of %d runs:\n", requests, RUNS);
+		report("Streaming parser", streaming, messages, requests);
+		report("Gson tree", tree, messages, requests);
+		client.close();
+		if (sink == 42) System.out.println(); // keeps the results alive
+	}
+
+	/** Runs a parser and prints out its median latency and the bytes it allocates per request. */
+	private static void report(final String name, final Parser parser, final List<ByteBuffer> messages, final int requests)
+	{
+		final com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+		final long thread = Thread.currentThread().getId();
+		final List<Double> latencies = new ArrayList<>();
+		final List<Double> allocations = new ArrayList<>();
+
+		for (int run = 0; run < WARMUPRUNS + RUNS; run++)
+		{
+			final long allocated = threads.getThreadAllocatedBytes(thread);
+			final long start = System.nanoTime();
+			for (int i = 0; i < requests; i++)
+				sink += parser.parse(messages.get(i % messages.size()).duplicate());
+			final long elapsed = System.nanoTime() - start;
+			if (run < WARMUPRUNS) continue;
+			latencies.add((double) elapsed / requests);
+			allocations.add((double) (threads.getThreadAllocatedBytes(thread) - allocated) / requests);
+		}
+		Collections.sort(latencies);
+		Collections.sort(allocations);
+		System.out.printf("%-16s %8.1f ns/request %8.1f bytes/request\n", name, latencies.get(RUNS / 2), allocations.get(RUNS / 2));
+	}
+
+	/** Builds up a text request as a direct buffer, the way frames are handed to the parser. */
+	private static ByteBuffer message(final CommandCode command, final Object... fields)
+	{
+		final JsonObject request = new JsonObject();
+		request.addProperty(RequestField.COMMAND.name, command.description);
+		for (int i = 0; i < fields.length; i += 2)
+			request.addProperty(((RequestField) fields[i]).name, (String) fields[i + 1]);
+		final byte[] bytes = request.toString().getBytes(StandardCharsets.US_ASCII);
+		final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+		buffer.put(bytes).flip();
+		return buffer;
+	}
+}
@@ -1,68 +1,63 @@
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.net.ServerSocket;
-import java.nio.BufferOverflowException;
+import java.net.SocketTimeoutException;
 import java.nio.ByteBuffer;
-import java.nio.channels.CancelledKeyException;
-import java.nio.channels.ClosedChannelException;
-import java.nio.channels.ClosedSelectorException;
-import java.nio.channels.SelectableChannel;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.channels.SelectionKey;
-import java.nio.channels.Selector;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
-import java.nio.charset.StandardCharsets;
 import java.rmi.RemoteException;
 import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
-import java.util.Iterator;
+import java.util.EnumMap;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
-import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
-import com.google.gson.Gson;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-
-import api.CommandCode;
-import api.Communication;
+import api.Protocol;
 import api.ResponseCode;
 
 import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.ThreadPoolExecutor;
 
 import configuration.InvalidConfigException;
 import configuration.ServerConfiguration;
 import server.BackupTask;
+import server.Lane;
+import server.LaneExecutor;
 import server.LoggingTask;
 import server.RMICallbackService;
 import server.RMITask;
 import server.RewardsTask;
-import server.post.InvalidCommentException;
+import server.command.CommandContext;
+import server.command.CommandRegistry;
+import server.command.RateLimiter;
+import server.command.Request;
+import server.connection.Acceptor;
+import server.connection.BlockingAcceptor;
+import server.connection.BufferPool;
+import server.connection.Connection;
+import server.connection.Connection.State;
+import server.connection.FrameDecoder;
+import server.connection.ReadinessHandler;
+import server.connection.ResponseBuilder;
+import server.connection.Reactor;
 import server.post.InvalidGeneratorException;
-import server.post.InvalidPostException;
-import server.post.InvalidVoteException;
-import server.post.Post.Vote;
 import server.storage.IllegalArchiveException;
-import server.storage.NoSuchPostException;
 import server.storage.NoSuchUserException;
 import server.storage.PostMap;
 import server.storage.PostStorage;
 import server.storage.UserMap;
 import server.storage.UserStorage;
-import server.user.InvalidLoginException;
 import server.user.InvalidLogoutException;
-import server.user.SameUserException;
-import server.user.WrongCredentialsException;
 
 /**
  * Server main file.
@@ -70,1148 +65,399 @@ import server.user.WrongCredentialsException;
  */
 public class ServerMain
 {
-	/** Default size for ByteBuffers. */
-	private static final int BUFFERSIZE = 1024;
+	/** Upper bound to the size of a request. */
+	private static final int MAXIMUMFRAMESIZE = 1 << 16;
+	/** Number of bytes waiting to be sent to a client above which it is not to be read from. */
+	private static final int HIGHWATERMARK = 1 << 20;
 	/** Part of the error message when NPE is thrown. */
 	private static final String NULL_ERROR = " cannot be null.";
-	/** Used to store multicast address and port as a byte array. */
-	private static byte[] multicastInfoBytes;
+	/** Empty string. */
+	private static final String EMPTY_STRING = "";
 
-	/** Used to group together all the information needed for a thread to be dispatched to handle a certain client's request. */
-	private static class SetElement
+	/**
+	 * Handles a client's disconnection: the user it has logged in with (if any) is logged out, its connection is closed and the event is logged.
+	 * @param connection cannot be null.
+	 * @param registry cannot be null.
+	 * @param users cannot be null.
+	 * @param loggedInClients cannot be null.
+	 * @param logQueue cannot be null.
+	 * @param reason cannot be null, it will be appended in the log.
+	 */
+	private static void handleDisconnection(final Connection connection, final CommandRegistry registry, final UserStorage users,
+			final Map<SocketChannel, String> loggedInClients, final BlockingQueue<String> logQueue, final String reason)
 	{
-		/** Channel denoting the client. */
-		final SocketChannel client;
-		/** OP_CODE of the operation to be performed on this client. */
-		final int operation;
-		/** ByteBuffer to be used when handling this request. */
-		final ByteBuffer buffer;
+		connection.close();
+		handleDisconnection(connection.channel, registry, users, loggedInClients, logQueue, reason);
+	}
 
-		/**
-		 * Default constructor.
-		 * @param client cannot be null.
-		 * @param operation must be either OP_READ or OP_WRITE.
-		 * @param buffer cannot be null.
-		 * @throws IllegalArgumentException if operation is neither OP_READ or OP_WRITE.
-		 * @throws NullPointerException if any parameter is null
-		 */
-		public SetElement(final SocketChannel client, final int operation, final ByteBuffer buffer)
-		throws IllegalArgumentException
+	/**
+	 * Handles a client's disconnection: the user it has logged in with (if any) is logged out and the event is logged.
+	 * The channel is not closed.
+	 * @param client cannot be null.
+	 * @param registry cannot be null.
+	 * @param users cannot be null.
+	 * @param loggedInClients cannot be null.
+	 * @param logQueue cannot be null.
+	 * @param reason cannot be null, it will be appended in the log.
+	 */
+	private static void handleDisconnection(final SocketChannel client, final CommandRegistry registry, final UserStorage users,
+			final Map<SocketChannel, String> loggedInClients, final BlockingQueue<String> logQueue, final String reason)
+	{
+		final String loggedInUsername = loggedInClients.remove(client);
+		registry.disconnected(client);
+		StringBuilder logMessageBuilder = new StringBuilder();
+
+		logMessageBuilder.append(String.format("[%s][THREAD %d][CLIENT %d]",
+					DateTimeFormatter.ofPattern("dd MMM. YYYY - HH:mm:ss").withLocale(Locale.getDefault()).withZone(ZoneId.systemDefault()).format(Instant.now()),
+					Thread.currentThread().getId(), client.hashCode())
+		);
+		if (loggedInUsername != null)
 		{
-			if (operation != SelectionKey.OP_READ && operation != SelectionKey.OP_WRITE)
-				throw new IllegalArgumentException("Operation specified is not valid. Only OP_READ and OP_WRITE are permitted.");
-			this.client = Objects.requireNonNull(client, "Client" + NULL_ERROR);
-			this.operation = operation;
-			this.buffer = Objects.requireNonNull(buffer, "Buffer" + NULL_ERROR);
+			logMessageBuilder.append(String.format("[%s]", loggedInUsername));
+			try { users.handleLogout(loggedInUsername, client); }
+			catch (InvalidLogoutException ignored) { }
+			catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
 		}
+		logMessageBuilder.append(reason).append("[DISCONNECTION]\n");
+		logQueue.offer(logMessageBuilder.toString());
+	}
+
+	/**
+	 * Parses a request, hands it to the handler of its command and logs it. The frame is given back to BufferPool.
+	 * @param client cannot be null.
+	 * @param protocol version of the protocol the client is currently speaking.
+	 * @param frame cannot be null, it is the body of the request.
+	 * @param response cannot be null, the response is appended to it.
+	 * @param registry cannot be null.
+	 * @param loggedInClients cannot be null.
+	 * @param logQueue cannot be null.
+	 * @param shed toggled on if the request is to be rejected without being handled, as the server is overloaded.
+	 * @return the request parsed, it is only valid until the calling thread parses another one.
+	 */
+	private static Request handleRequest(final SocketChannel client, final int protocol, final ByteBuffer frame, final ResponseBuilder response,
+			final CommandRegistry registry, final Map<SocketChannel, String> loggedInClients, final BlockingQueue<String> logQueue, final boolean shed)
+	{
+		/** Username of the user this client is currently logged in with. */
+		final String loggedInUsername = loggedInClients.get(client);
+		/** Used to build up the message to be logged. */
+		StringBuilder logMessageBuilder = new StringBuilder();
+
+		logMessageBuilder.append(String.format("[%s][THREAD %d][CLIENT %d]",
+					DateTimeFormatter.ofPattern("dd MMM. YYYY - HH:mm:ss").withLocale(Locale.getDefault()).withZone(ZoneId.systemDefault()).format(Instant.now()),
+					Thread.currentThread().getId(), client.hashCode())
+		);
+		if (loggedInUsername != null) logMessageBuilder.append(String.format("[%s]", loggedInUsername));
+
+		// the frame has been fully reassembled, it is parsed in place:
+		logMessageBuilder.append('[');
+		if (protocol == Protocol.TEXT)
+			for (int i = frame.position(); i < frame.limit(); i++)
+				logMessageBuilder.append((char) (frame.get(i) & 0xFF));
+		final Request request = Request.parse(client, loggedInUsername, protocol, frame);
+		BufferPool.release(frame);
+		// binary responses carry the identifier of the request they answer, as they may be sent in any order:
+		if (protocol == Protocol.BINARY) response.putInt(request.id);
+		// binary requests are logged by their command only:
+		if (protocol != Protocol.TEXT) logMessageBuilder.append(request.getCommand() == null ? "?" : request.getCommand().description);
+		logMessageBuilder.append(']');
+		final ResponseCode code = shed ? registry.reject(request, response) : registry.dispatch(request, response);
+		logMessageBuilder.append(String.format("[%d]\n", code.getValue()));
+		logQueue.offer(logMessageBuilder.toString());
+		return request;
 	}
 
 	/** Used to group together the whole logic for a task to handle a certain client's request. */
 	private static class RequestHandler implements Runnable
 	{
-		/** Pointer to the set of clients to be registered for next select's iteration. */
-		private Set<SetElement> toBeRegistered = null;
-		/** Pointer to selector. It is used to wake it up after handling the request. */
-		private Selector selector = null;
-		/** Pointer to the key denoting this client. */
-		private SelectionKey key = null;
+		/** Pointer to the state of the connection denoting this client. */
+		private Connection connection = null;
+		/** Body of the request to be handled. */
+		private ByteBuffer frame = null;
+		/** Used to build up the answer to be sent back. */
+		private ResponseBuilder answerConstructor = null;
+		/** Pointer to the registry requests are dispatched by. */
+		private CommandRegistry registry = null;
 		/** Pointer to user storage. */
 		private UserStorage users = null;
-		/** Pointer to post storage. */
-		private PostStorage posts = null;
 		/** Pointer to the map storing the couples (client, username they have logged in with). */
 		private Map<SocketChannel, String> loggedInClients = null;
-		/** Pointer to the RMI callbackService. */
-		private RMICallbackService callbackService = null;
 		/** Pointer to the blocking queue shared with the logging thread. */
 		private BlockingQueue<String> logQueue = null;
-
-		private static final String CLIENT_ALREADY_LOGGED_IN = "Client has already logged in";
+		/** Pointer to the handler the request has been handed out by, it is notified once the response has been queued. */
+		private ClientHandler dispatcher = null;
+		/** Pointer to the lane the request has been scheduled on. */
+		private LaneExecutor lane = null;
+		/** Time (as returned by System.nanoTime) the request has been handed out at. */
+		private final long admittedAt = System.nanoTime();
 
 		/** Default constructor. */
-		public RequestHandler(final Set<SetElement> toBeRegistered, final Selector selector,
-				final SelectionKey key, final UserStorage users, final PostStorage posts, Map<SocketChannel, String> loggedInClients,
-				final RMICallbackService callbackService, BlockingQueue<String> logQueue)
+		public RequestHandler(final Connection connection, final ByteBuffer frame, final CommandRegistry registry, final UserStorage users,
+				Map<SocketChannel, String> loggedInClients, BlockingQueue<String> logQueue, final ClientHandler dispatcher, final LaneExecutor lane)
 		{
-			this.toBeRegistered = Objects.requireNonNull(toBeRegistered, "Set" + NULL_ERROR);
-			this.selector = Objects.requireNonNull(selector, "Selector" + NULL_ERROR);
-			this.key = Objects.requireNonNull(key, "Key" + NULL_ERROR);
+			this.connection = Objects.requireNonNull(connection, "Connection" + NULL_ERROR);
+			this.frame = Objects.requireNonNull(frame, "Frame" + NULL_ERROR);
+			this.registry = Objects.requireNonNull(registry, "Registry" + NULL_ERROR);
 			this.users = Objects.requireNonNull(users, "Users storage" + NULL_ERROR);
-			this.posts = Objects.requireNonNull(posts, "Posts storage" + NULL_ERROR);
 			this.loggedInClients = Objects.requireNonNull(loggedInClients, "Logged in clients" + NULL_ERROR);
-			this.callbackService = Objects.requireNonNull(callbackService, "Callback service" + NULL_ERROR);
 			this.logQueue = Objects.requireNonNull(logQueue, "Queue" + NULL_ERROR);
+			this.dispatcher = Objects.requireNonNull(dispatcher, "Dispatcher" + NULL_ERROR);
+			this.lane = Objects.requireNonNull(lane, "Lane" + NULL_ERROR);
 		}
 
 		public void run()
 		{
-			/** Attachment buffer. */
-			ByteBuffer buffer = (ByteBuffer) key.attachment();
-			/** Client channel. */
-			SocketChannel client = (SocketChannel) key.channel();
-			/** Result of reading operations. */
-			int nRead = 0;
-			/** Size of the buffer. */
-			int size = BUFFERSIZE;
-			/** Used to parse request. */
-			JsonObject JSONMessage = null;
-			/** Used to parse JSONMessage. */
-			JsonElement elem = null;
-			/** Used to build up the answer to be sent back. */
-			ByteArrayOutputStream answerConstructor = new ByteArrayOutputStream();
-			/** Used to read from client. */
-			StringBuilder sb = new StringBuilder();
-			/** Username of the user this client is claiming to be logged in with. */
-			final String username;
-			/** Username of the user this client is currently logged in with. */
-			final String loggedInUsername = loggedInClients.get(client);
-			/** Request message. */
-			String message = null;
-			/** Toggled on if the request has triggered an exception in any of the storages used. */
-			boolean exceptionCaught = false;
-			/** Used to build up the message to be logged. */
-			StringBuilder logMessageBuilder = new StringBuilder();
+			final long waited = System.nanoTime() - admittedAt;
+			lane.recordWait(waited);
+			// requests which have been waiting for too long are rejected, their client has most likely given up already:
+			final boolean expired = waited > dispatcher.queueDeadline;
+			if (expired) lane.recordRejection();
+			serve(expired);
+		}
+
+		/**
+		 * Rejects the request without handling it, it is to be invoked if the request cannot be admitted to the thread pool.
+		 * As it is run by a reactor's thread, no exception is let through: the client is disconnected instead.
+		 */
+		public void shed()
+		{
+			lane.recordRejection();
+			try { serve(true); }
+			catch (RuntimeException e) { e.printStackTrace(); }
+		}
 
-			logMessageBuilder.append(String.format("[%s][THREAD %d][CLIENT %d]",
-						DateTimeFormatter.ofPattern("dd MMM. YYYY - HH:mm:ss").withLocale(Locale.getDefault()).withZone(ZoneId.systemDefault()).format(Instant.now()),
-						Thread.currentThread().getId(), client.hashCode())
-			);
-			if (loggedInUsername != null) logMessageBuilder.append(String.format("[%s]", loggedInUsername));
+		/**
+		 * Handles the request and sends back the response.
+		 * @param shed toggled on if the request is to be rejected without being handled.
+		 */
+		private void serve(final boolean shed)
+		{
+			try { handleRequest(shed); }
+			catch (RuntimeException e) // the client would otherwise wait for a response forever
+			{
+				if (answerConstructor != null) answerConstructor.close();
+				handleDisconnection(connection, registry, users, loggedInClients, logQueue, String.format("[INTERNAL ERROR %s]", e.getMessage()));
+				throw e;
+			}
+		}
+
+		/**
+		 * Parses the request, hands it to the handler of its command and sends back the response.
+		 * @param shed toggled on if the request is to be rejected without being handled.
+		 */
+		private void handleRequest(final boolean shed)
+		{
+			answerConstructor = new ResponseBuilder();
+			final Request request = ServerMain.handleRequest(connection.channel, connection.getProtocol(), frame, answerConstructor, registry,
+					loggedInClients, logQueue, shed);
 
-			buffer.flip();
-			buffer.clear();
-			try { nRead = Communication.receiveMessage(client, buffer, sb); }
-			catch (ClosedChannelException e) { return; }
+			connection.enqueue(answerConstructor.finish());
+			// the response has been queued following the previous version, the next request is to follow the new one:
+			if (request.getNextProtocol() != 0) connection.setProtocol(request.getNextProtocol());
+			// trying to send the response right away, whatever is left is going to be sent by the reactor:
+			try { connection.flush(); }
 			catch (IOException e)
 			{
-				if (loggedInUsername != null)
-				{
-					loggedInClients.remove(client);
-					try { users.handleLogout(loggedInUsername, client); }
-					catch (InvalidLogoutException ignored) { }
-					catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-				}
-				logMessageBuilder.append(String.format("[I/O ERROR %s][DISCONNECTION]\n", e.getMessage()));
-				try { client.close(); }
-				catch (IOException ignored) { }
-				logQueue.offer(logMessageBuilder.toString());
+				handleDisconnection(connection, registry, users, loggedInClients, logQueue, String.format("[I/O ERROR %s]", e.getMessage()));
 				return;
 			}
-			if (nRead == -1) // client forcibly disconnected
+			// the requests received in the meantime are handed out by the reactor:
+			connection.endRequest();
+			connection.reactor.execute(() -> dispatcher.dispatch(connection));
+		}
+	}
+
+	/** Used to group together the whole logic for a thread serving a single client with blocking reads and writes, one request at a time. */
+	private static class BlockingClientHandler implements Runnable
+	{
+		/** Channel denoting the client. */
+		private SocketChannel client = null;
+		/** Pointer to the registry requests are dispatched by. */
+		private CommandRegistry registry = null;
+		/** Pointer to user storage. */
+		private UserStorage users = null;
+		/** Pointer to the map storing the couples (client, username they have logged in with). */
+		private Map<SocketChannel, String> loggedInClients = null;
+		/** Pointer to the blocking queue shared with the logging thread. */
+		private BlockingQueue<String> logQueue = null;
+		/** Time (in msec) the client may wait for before sending its next request, 0 if it is never disconnected. */
+		private final int idleTimeout;
+
+		/** Default constructor. */
+		public BlockingClientHandler(final SocketChannel client, final CommandRegistry registry, final UserStorage users,
+				Map<SocketChannel, String> loggedInClients, BlockingQueue<String> logQueue, final int idleTimeout)
+		{
+			this.idleTimeout = idleTimeout;
+			this.client = Objects.requireNonNull(client, "Client" + NULL_ERROR);
+			this.registry = Objects.requireNonNull(registry, "Registry" + NULL_ERROR);
+			this.users = Objects.requireNonNull(users, "Users storage" + NULL_ERROR);
+			this.loggedInClients = Objects.requireNonNull(loggedInClients, "Logged in clients" + NULL_ERROR);
+			this.logQueue = Objects.requireNonNull(logQueue, "Queue" + NULL_ERROR);
+		}
+
+		public void run()
+		{
+			final FrameDecoder decoder = new FrameDecoder(MAXIMUMFRAMESIZE);
+			int protocol = Protocol.TEXT;
+			String reason = EMPTY_STRING;
+
+			try
 			{
-				if (loggedInUsername != null)
+				// reads on the channel itself ignore the socket timeout, the ones through the socket's stream do not:
+				ReadableByteChannel source = client;
+				if (idleTimeout > 0)
 				{
-					loggedInClients.remove(client);
-					try { users.handleLogout(loggedInUsername, client); }
-					catch (InvalidLogoutException ignored) { }
-					catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+					client.socket().setSoTimeout(idleTimeout);
+					source = Channels.newChannel(client.socket().getInputStream());
 				}
-				logMessageBuilder.append("[DISCONNECTION]\n");
-				try { client.close(); }
-				catch (IOException ignored) { }
-				logQueue.offer(logMessageBuilder.toString());
-				return;
-			}
-			else if (nRead == 0) return;
-			else // read has not failed:
-			{
-				buffer.flip();
-				buffer.clear();
-				message = sb.toString();
-				/** Code to be appended in the log. */
-				ResponseCode code = null;
-				logMessageBuilder.append(String.format("[%s]", message));
-				JSONMessage = new Gson().fromJson(message, JsonObject.class);
-				elem = JSONMessage.get("command");
-				if (elem == null) code = syntaxErrorHandler(answerConstructor);
-				else
+				while (true)
 				{
-					if (elem.getAsString().equals(CommandCode.LOGINATTEMPT.description))
-					{
-						if (loggedInClients.containsKey(client))
-						{
-							try
-							{
-								code = ResponseCode.FORBIDDEN;
-								answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-								answerConstructor.write(CLIENT_ALREADY_LOGGED_IN.getBytes(StandardCharsets.US_ASCII));
-							}
-							catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-						}
-						else
-						{
-							elem = JSONMessage.get("username");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								username = elem.getAsString();
-								elem = JSONMessage.get("hashedpassword");
-								if (elem == null) code = syntaxErrorHandler(answerConstructor);
-								else
-								{
-									String hashedPassword = elem.getAsString();
-									try { users.handleLogin(username, client, hashedPassword); }
-									catch (InvalidLoginException | WrongCredentialsException | NoSuchUserException e)
-									{
-										exceptionCaught = true;
-										try
-										{
-											code = ResponseCode.FORBIDDEN;
-											answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									catch (NullPointerException e)
-									{
-										exceptionCaught = true;
-										code = ResponseCode.BAD_REQUEST;
-										try { answerConstructor.write(ResponseCode.BAD_REQUEST.getDescription().getBytes(StandardCharsets.US_ASCII)); }
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									if (!exceptionCaught)
-									{
-										try
-										{
-											code = ResponseCode.OK;
-											answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write((username + " has now logged in.").getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										loggedInClients.put(client, username);
-									}
-								}
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.LOGINSETUP.description))
-					{
-						if (loggedInClients.containsKey(client))
-						{
-							try
-							{
-								code = ResponseCode.FORBIDDEN;
-								answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-								answerConstructor.write(CLIENT_ALREADY_LOGGED_IN.getBytes(StandardCharsets.US_ASCII));
-							}
-							catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-						}
-						else
-						{
-							elem = JSONMessage.get("username");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								username = elem.getAsString();
-								String salt = null;
-								try { salt = users.handleLoginSetup(username); }
-								catch (NoSuchUserException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.NOT_FOUND;
-										answerConstructor.write(ResponseCode.NOT_FOUND.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(salt.getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.PULLFOLLOWERS.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								Set<String> result = null;
-								try { result = users.recoverFollowers(username); }
-								catch (NoSuchUserException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.NOT_FOUND;
-										answerConstructor.write(ResponseCode.NOT_FOUND.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										size = SetToByteArray(result, answerConstructor);
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.RETRIEVEMULTICAST.description))
-					{
-						try
-						{
-							code = ResponseCode.OK;
-							answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-							answerConstructor.write(multicastInfoBytes);
-						}
-						catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-					}
-					else if (elem.getAsString().equals(CommandCode.LOGOUT.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								try { users.handleLogout(username, client); }
-								catch (InvalidLogoutException | NoSuchUserException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.FORBIDDEN;
-										answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write((username + " has now logged out").getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									loggedInClients.remove(client);
-								}
-							}
-							else code = invalidUsernameHandler(answerConstructor, username);
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.LISTUSERS.description))
+					ByteBuffer frame = null;
+					while ((frame = decoder.nextFrame()) == null)
+						if (decoder.read(source) == -1) return; // client disconnected
+					final ResponseBuilder answerConstructor = new ResponseBuilder();
+					final Request request;
+					try { request = handleRequest(client, protocol, frame, answerConstructor, registry, loggedInClients, logQueue, false); }
+					catch (RuntimeException e)
 					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								Set<String> result = null;
-								try { result = users.handleListUsers(username); }
-								catch (NoSuchUserException | NullPointerException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.BAD_REQUEST;
-										answerConstructor.write(ResponseCode.BAD_REQUEST.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										size = SetToByteArray(result, answerConstructor);
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-							else code = invalidUsernameHandler(answerConstructor, username);
-						}
+						answerConstructor.close();
+						reason = String.format("[INTERNAL ERROR %s]", e.getMessage());
+						throw e;
 					}
-					else if (elem.getAsString().equals(CommandCode.LISTFOLLOWING.description))
+					final ByteBuffer[] chunks = answerConstructor.finish();
+					try
 					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								Set<String> result = null;
-								try { result = users.handleListFollowing(username); }
-								catch (NoSuchUserException | NullPointerException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.BAD_REQUEST;
-										answerConstructor.write(ResponseCode.BAD_REQUEST.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										size = SetToByteArray(result, answerConstructor);
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-							else code = invalidUsernameHandler(answerConstructor, username);
-						}
+						long remaining = 0;
+						for (ByteBuffer b : chunks) remaining += b.remaining();
+						while (remaining > 0) remaining -= client.write(chunks);
 					}
-					else if (elem.getAsString().equals(CommandCode.FOLLOWUSER.description))
+					finally
 					{
-						elem = JSONMessage.get("follower");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("followed");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								final String followed = elem.getAsString();
-								if (loggedInUsername.equals(username))
-								{
-									boolean result = false;
-									try { result = users.handleFollowUser(username, followed); }
-									catch (IllegalArgumentException | NoSuchUserException | SameUserException e)
-									{
-										exceptionCaught = true;
-										try
-										{
-											code = ResponseCode.FORBIDDEN;
-											answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									if (!exceptionCaught)
-									{
-										if (!result)
-										{
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write((username + " is already following " + followed).getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										else
-										{
-											try { callbackService.notifyNewFollower(users.usernameToUserString(username), followed); }
-											catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write((username + " is now following " + followed).getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-								}
-								else code = invalidUsernameHandler(answerConstructor, username);
-							}
-						}
+						for (ByteBuffer b : chunks) BufferPool.release(b);
 					}
-					else if (elem.getAsString().equals(CommandCode.UNFOLLOWUSER.description))
-					{
-						elem = JSONMessage.get("follower");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("followed");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								final String unfollowed = elem.getAsString();
-								boolean result = false;
-								if (loggedInUsername.equals(username))
-								{
-									try { result = users.handleUnfollowUser(username, unfollowed); }
-									catch (IllegalArgumentException | NullPointerException | NoSuchUserException e)
-									{
-										exceptionCaught = true;
-										try
-										{
-											code = ResponseCode.FORBIDDEN;
-											answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									if (!exceptionCaught)
-									{
-										if (!result)
-										{
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write((username + " is not following " + unfollowed).getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										else
-										{
-											try { callbackService.notifyUnfollow(users.usernameToUserString(username), unfollowed); }
-											catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write((username + " has now stopped following " + unfollowed).getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-								}
-								else code = invalidUsernameHandler(answerConstructor, username);
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.VIEWBLOG.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							Set<String> result = null;
-							result = posts.handleBlog(username);
-							try
-							{
-								code = ResponseCode.OK;
-								answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-								size = SetToByteArray(result, answerConstructor);
-							}
-							catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.CREATEPOST.description))
-					{
-						elem = JSONMessage.get("author");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("title");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								final String title = elem.getAsString();
-								elem = JSONMessage.get("contents");
-								if (elem == null) code = syntaxErrorHandler(answerConstructor);
-								else
-								{
-									final String contents = elem.getAsString();
-									if (loggedInUsername.equals(username))
-									{
-										int postID = -1;
-										try { postID = posts.handleCreatePost(username, title, contents); }
-										catch (InvalidPostException e)
-										{
-											exceptionCaught = true;
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										catch (InvalidGeneratorException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										if (!exceptionCaught)
-										{
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write((username + " has now created a new post: " + postID).getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-									else code = invalidUsernameHandler(answerConstructor, username);
-								}
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.SHOWFEED.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								Set<String> result = null;
-								try { result = posts.handleShowFeed(username, users); }
-								catch (NoSuchUserException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.FORBIDDEN;
-										answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										size = SetToByteArray(result, answerConstructor);
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-							else code = invalidUsernameHandler(answerConstructor, username);
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.SHOWPOST.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("postid");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								if (loggedInUsername.equals(username))
-								{
-									String result = null;
-									try { result = posts.handleShowPost(Integer.parseInt(elem.getAsString())); }
-									catch (NumberFormatException e)
-									{
-										exceptionCaught = true;
-										code = syntaxErrorHandler(answerConstructor);
-									}
-									catch (NoSuchPostException e)
-									{
-										exceptionCaught = true;
-										try
-										{
-											code = ResponseCode.FORBIDDEN;
-											answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									if (!exceptionCaught)
-									{
-										try
-										{
-											code = ResponseCode.OK;
-											answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(result.getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-								}
-								else code = invalidUsernameHandler(answerConstructor, username);
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.DELETEPOST.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("postid");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								if (loggedInUsername.equals(username))
-								{
-									boolean result = false;
-									try { result = posts.handleDeletePost(username, Integer.parseInt(elem.getAsString())); }
-									catch (NumberFormatException e)
-									{
-										exceptionCaught = true;
-										code = syntaxErrorHandler(answerConstructor);
-									}
-									catch (NoSuchPostException e)
-									{
-										exceptionCaught = true;
-										try
-										{
-											code = ResponseCode.FORBIDDEN;
-											answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									if (!exceptionCaught)
-									{
-										if (result)
-										{
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write("Post has now been deleted.".getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										else
-										{
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write("Post could not be deleted.".getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-								}
-								else code = invalidUsernameHandler(answerConstructor, username);
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.REWIN.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("postid");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								if (loggedInUsername.equals(username))
-								{
-									boolean result = false;
-									try { result = posts.handleRewin(username, users, Integer.parseInt(elem.getAsString())); }
-									catch (NumberFormatException e)
-									{
-										exceptionCaught = true;
-										code = syntaxErrorHandler(answerConstructor);
-									}
-									catch (NoSuchPostException e)
-									{
-										exceptionCaught = true;
-										try
-										{
-											code = ResponseCode.FORBIDDEN;
-											answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-											answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-										}
-										catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-									}
-									if (!exceptionCaught)
-									{
-										if (result)
-										{
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write("Post has now been rewon.".getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										else
-										{
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write("Post could not be rewon.".getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-								}
-								else code = invalidUsernameHandler(answerConstructor, username);
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.RATE.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("vote");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								final String vote = elem.getAsString();
-								elem = JSONMessage.get("postid");
-								if (elem == null) code = syntaxErrorHandler(answerConstructor);
-								else
-								{
-									if (loggedInUsername.equals(username))
-									{
-										try { posts.handleRate(username, users, Integer.parseInt(elem.getAsString()), Vote.fromValue(Integer.parseInt(vote))); }
-										catch (NumberFormatException e)
-										{
-											exceptionCaught = true;
-											code = syntaxErrorHandler(answerConstructor);
-										}
-										catch (NoSuchPostException | InvalidVoteException e)
-										{
-											exceptionCaught = true;
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										if (!exceptionCaught)
-										{
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write("Vote has now been cast.".getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-									else code = invalidUsernameHandler(answerConstructor, username);
-								}
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.COMMENT.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							elem = JSONMessage.get("contents");
-							if (elem == null) code = syntaxErrorHandler(answerConstructor);
-							else
-							{
-								final String contents = elem.getAsString();
-								elem = JSONMessage.get("postid");
-								if (elem == null) code = syntaxErrorHandler(answerConstructor);
-								else
-								{
-									if (loggedInUsername.equals(username))
-									{
-										try { posts.handleAddComment(username, users, Integer.parseInt(elem.getAsString()), contents); }
-										catch (NumberFormatException e)
-										{
-											exceptionCaught = true;
-											code = syntaxErrorHandler(answerConstructor);
-										}
-										catch (InvalidCommentException | NoSuchPostException e)
-										{
-											exceptionCaught = true;
-											try
-											{
-												code = ResponseCode.FORBIDDEN;
-												answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-										if (!exceptionCaught)
-										{
-											try
-											{
-												code = ResponseCode.OK;
-												answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-												answerConstructor.write("Comment has now been added.".getBytes(StandardCharsets.US_ASCII));
-											}
-											catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-										}
-									}
-									else code = invalidUsernameHandler(answerConstructor, username);
-								}
-							}
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.WALLET.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								Set<String> result = null;
-								try { result = users.handleGetWallet(username); }
-								catch (NoSuchUserException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.FORBIDDEN;
-										answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										size = SetToByteArray(result, answerConstructor);
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-							else code = invalidUsernameHandler(answerConstructor, username);
-						}
-					}
-					else if (elem.getAsString().equals(CommandCode.WALLETBTC.description))
-					{
-						elem = JSONMessage.get("username");
-						if (elem == null) code = syntaxErrorHandler(answerConstructor);
-						else
-						{
-							username = elem.getAsString();
-							if (loggedInUsername.equals(username))
-							{
-								String result = null;
-								try { result = users.handleGetWalletInBitcoin(username); }
-								catch (NoSuchUserException e)
-								{
-									exceptionCaught = true;
-									try
-									{
-										code = ResponseCode.FORBIDDEN;
-										answerConstructor.write(ResponseCode.FORBIDDEN.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(e.getMessage().getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-								catch (IOException | NumberFormatException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								if (!exceptionCaught)
-								{
-									try
-									{
-										code = ResponseCode.OK;
-										answerConstructor.write(ResponseCode.OK.getDescription().getBytes(StandardCharsets.US_ASCII));
-										answerConstructor.write(result.getBytes(StandardCharsets.US_ASCII));
-									}
-									catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-								}
-							}
-							else code = invalidUsernameHandler(answerConstructor, username);
-						}
-					}
-					else code = syntaxErrorHandler(answerConstructor);
-
-					logMessageBuilder.append(String.format("[%d]\n", code.getValue()));
-
-					putByteArray(buffer, size, answerConstructor.toByteArray());
-					buffer.flip();
-
-					toBeRegistered.add(new SetElement(client, SelectionKey.OP_WRITE, buffer));
-					selector.wakeup();
-					logQueue.offer(logMessageBuilder.toString());
-					return;
+					// the response has been sent following the previous version, the next request is to follow the new one:
+					if (request.getNextProtocol() != 0) protocol = request.getNextProtocol();
 				}
 			}
+			catch (SocketTimeoutException idle) { reason = "[IDLE TIMEOUT]"; }
+			catch (IOException e) { reason = String.format("[I/O ERROR %s]", e.getMessage()); }
+			finally
+			{
+				decoder.release();
+				try { client.close(); }
+				catch (IOException ignored) { }
+				handleDisconnection(client, registry, users, loggedInClients, logQueue, reason);
+			}
 		}
+	}
 
-		/**
-		 * Method used to convert a set to a byte array following the syntax CONCAT(LENGTH, ITEM) with ITEM denoting the item of the set
-		 * and LENGTH its length when converted to byte array.
-		 * @param <T> type of the elements of the set.
-		 * @param set set to be converted.
-		 * @param dst BAOS the result will be appended to.
-		 * @return size of the buffer.
-		 * @throws IOException if I/O error(s) occur(s).
-		 */
-		private static <T> int SetToByteArray(Set<T> set, ByteArrayOutputStream dst)
-		throws IOException
+	/** Class used to wrap together the logic run by a reactor whenever one of its clients is ready for I/O. */
+	private static class ClientHandler implements ReadinessHandler
+	{
+		/** Maps each lane to the thread pool its requests are to be handled by. */
+		private Map<Lane, LaneExecutor> lanes = null;
+		/** Pointer to the registry requests are dispatched by. */
+		private CommandRegistry registry = null;
+		/** Pointer to user storage. */
+		private UserStorage users = null;
+		/** Pointer to the map storing the couples (client, username they have logged in with). */
+		private Map<SocketChannel, String> loggedInClients = null;
+		/** Pointer to the logging queue. */
+		private BlockingQueue<String> logQueue = null;
+		/** Time (in nsec) after which a request still waiting for a thread of the pool is rejected. */
+		private final long queueDeadline;
+
+		/** Default constructor. */
+		public ClientHandler(final Map<Lane, LaneExecutor> lanes, final CommandRegistry registry, final UserStorage users,
+				Map<SocketChannel, String> loggedInClients, BlockingQueue<String> logQueue, final int queueDeadline)
 		{
-			int size = BUFFERSIZE;
-			ByteBuffer buffer = ByteBuffer.allocate(size);
-			byte[] tmp = null;
-			for (T item: set)
-			{
-				tmp = item.toString().getBytes(StandardCharsets.US_ASCII);
-				size = putByteArray(buffer, size, tmp);
-			}
-			byte[] array = new byte[buffer.position()];
-			buffer.flip();
-			buffer.get(array);
-			dst.write(array);
-			return size;
+			this.queueDeadline = TimeUnit.MILLISECONDS.toNanos(queueDeadline);
+			this.lanes = Objects.requireNonNull(lanes, "Lanes" + NULL_ERROR);
+			this.registry = Objects.requireNonNull(registry, "Registry" + NULL_ERROR);
+			this.users = Objects.requireNonNull(users, "Users storage" + NULL_ERROR);
+			this.loggedInClients = Objects.requireNonNull(loggedInClients, "Logged in clients" + NULL_ERROR);
+			this.logQueue = Objects.requireNonNull(logQueue, "Log queue" + NULL_ERROR);
 		}
 
-		/**
-		 * Puts a byte array inside a ByteBuffer doubling its size every time this operation is not successful.
-		 * @param dst buffer the array is to be put in.
-		 * @param buffersize buffer's initial size.
-		 * @param src byte array to be put inside the buffer.
-		 * @return new buffer's size.
-		 */
-		private static int putByteArray(ByteBuffer dst, int buffersize, byte[] src)
+		public void onReadable(final SelectionKey k)
 		{
-			ByteBuffer tmp = null;
-			int newSize = buffersize;
-			while (true)
+			final Connection connection = (Connection) k.attachment();
+			int nRead = 0;
+			// reading exactly once: a partial request is kept by the decoder until the next wake up.
+			try { nRead = connection.read(); }
+			catch (IOException e)
 			{
-				try
-				{
-					dst.putInt(src.length);
-					break;
-				}
-				catch (BufferOverflowException e)
-				{
-					newSize *= 2;
-					tmp = ByteBuffer.allocate(newSize);
-					tmp.put(dst);
-					dst = tmp;
-				}
+				handleDisconnection(connection, registry, users, loggedInClients, logQueue, String.format("[I/O ERROR %s]", e.getMessage()));
+				return;
 			}
-			while (true)
+			if (nRead == -1) // client forcibly disconnected
 			{
-				try
-				{
-					dst.put(src);
-					break;
-				}
-				catch (BufferOverflowException e)
-				{
-					newSize *= 2;
-					tmp = ByteBuffer.allocate(newSize);
-					tmp.put(dst);
-					dst = tmp;
-				}
+				handleDisconnection(connection, registry, users, loggedInClients, logQueue, EMPTY_STRING);
+				return;
 			}
-			return newSize;
+			dispatch(connection);
 		}
 
-		/** Handles syntax errors. */
-		private static ResponseCode syntaxErrorHandler(ByteArrayOutputStream baos)
+		public void onWritable(final SelectionKey k)
 		{
-			try
-			{
-				baos.write(ResponseCode.BAD_REQUEST.getDescription().getBytes(StandardCharsets.US_ASCII));
-				baos.write("Syntax error.".getBytes(StandardCharsets.US_ASCII));
-			}
-			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-			return ResponseCode.BAD_REQUEST;
-		}
+			final Connection connection = (Connection) k.attachment();
+			State next = connection.getState();
 
-		/** Handles username's errors. */
-		private static ResponseCode invalidUsernameHandler(ByteArrayOutputStream baos, final String username)
-		{
-			try
+			try { connection.flush(); }
+			catch (IOException e)
 			{
-				baos.write(ResponseCode.NOT_FOUND.getDescription().getBytes(StandardCharsets.US_ASCII));
-				baos.write(String.format("User %s is not logged in with this client", username).getBytes(StandardCharsets.US_ASCII));
+				handleDisconnection(connection, registry, users, loggedInClients, logQueue, String.format("[I/O ERROR %s]", e.getMessage()));
+				return;
 			}
-			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-			return ResponseCode.NOT_FOUND;
+			// reading is enabled once again as soon as enough bytes have been sent:
+			if (next == State.WRITING && !connection.isAboveHighWaterMark()) dispatch(connection);
+			else connection.reactor.transition(connection, next);
 		}
-	}
 
-	/** Class used to wrap together the whole logic for a task to send a message to a client. */
-	private static class MessageDispatcher implements Runnable
-	{
-		/** Pointer to the set of clients to be registered for next select's iteration. */
-		private Set<SetElement> toBeRegistered = null;
-		/** Pointer to selector. It is used to wake it up after handling the request. */
-		private Selector selector = null;
-		/** Pointer to the key denoting this client. */
-		private SelectionKey key = null;
-		/** Pointer to user storage. */
-		private UserStorage users = null;
-		/** Pointer to the map storing the couples (client, username they have logged in with). */
-		private Map<SocketChannel, String> loggedInClients = null;
-
-		public MessageDispatcher(final Set<SetElement> toBeRegistered, final Selector selector,
-				final SelectionKey key, final UserStorage users, Map<SocketChannel, String> loggedInClients)
+		public void onIdle(final Connection connection)
 		{
-			this.toBeRegistered = Objects.requireNonNull(toBeRegistered, "Set" + NULL_ERROR);
-			this.selector = Objects.requireNonNull(selector, "Selector" + NULL_ERROR);
-			this.key = Objects.requireNonNull(key, "Key" + NULL_ERROR);
-			this.loggedInClients = Objects.requireNonNull(loggedInClients, "Logged in clients" + NULL_ERROR);
+			// the client is most likely gone without closing the connection:
+			handleDisconnection(connection, registry, users, loggedInClients, logQueue, "[IDLE TIMEOUT]");
 		}
 
-		public void run()
+		/**
+		 * Hands out to the thread pool every request fully received so far, as long as the connection allows it,
+		 * and updates whether the connection is to be read from. It is to be invoked only by the thread running the reactor the client has been handed to.
+		 * @param connection cannot be null.
+		 */
+		public void dispatch(final Connection connection)
 		{
-			SocketChannel client = (SocketChannel) key.channel();
-			ByteBuffer buffer = (ByteBuffer) key.attachment();
-			String username = null;
+			ByteBuffer frame = null;
 
-			try { client.configureBlocking(false); }
-			catch (IOException e)
+			if (connection.isAboveHighWaterMark())
 			{
-				username = loggedInClients.get(client);
-				if (username != null)
-				{
-					loggedInClients.remove(client);
-					try { users.handleLogout(username, client); }
-					catch (InvalidLogoutException ignored) { }
-					catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
-				}
-				try { client.close(); }
-				catch (IOException ignored) { }
+				connection.reactor.transition(connection, State.WRITING);
+				return;
 			}
-			try { client.write(buffer); }
-			catch (IOException e) // client forcibly disconnected
+			while (connection.beginRequest())
 			{
-				username = loggedInClients.get(client);
-				if (username != null)
+				try { frame = connection.nextFrame(); }
+				catch (IOException e)
 				{
-					loggedInClients.remove(client);
-					try { users.handleLogout(username, client); }
-					catch (InvalidLogoutException ignored) { }
-					catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+					handleDisconnection(connection, registry, users, loggedInClients, logQueue, String.format("[I/O ERROR %s]", e.getMessage()));
+					return;
 				}
-				try { client.close(); }
-				catch (IOException ignored) { }
+				if (frame == null) // request has yet to be fully received
+				{
+					connection.endRequest();
+					connection.reactor.transition(connection, State.READING);
+					return;
+				}
+				// only the command is looked at to pick the lane, the request is parsed as a whole by the thread handling it:
+				final LaneExecutor lane = lanes.get(Lane.of(Request.peekCommand(connection.getProtocol(), frame)));
+				final RequestHandler task = new RequestHandler(connection, frame, registry, users, loggedInClients, logQueue, this, lane);
+				try { lane.execute(task); }
+				catch (RejectedExecutionException e) { task.shed(); } // the queue is full: rejecting the request right away is cheaper than making it wait
 			}
-			buffer.clear();
-			toBeRegistered.add(new SetElement(client, SelectionKey.OP_READ, buffer));
-			selector.wakeup();
-			return;
+			// the connection is not to be read from until one of its requests is done with:
+			connection.reactor.transition(connection, State.PROCESSING);
 		}
 	}
+
 	public static void main(String[] args)
 	{
 
@@ -1237,11 +483,17 @@ public class ServerMain
 			e.printStackTrace();
 			System.exit(1);
 		}
-		multicastInfoBytes = configuration.getMulticastInfo().getBytes(StandardCharsets.US_ASCII);
 
 		// setting up rmi:
 		UserStorage users = null;
-		try { users = UserMap.fromJSON(new File(configuration.userStorageFilename), new File(configuration.followingStorageFilename), new File(configuration.transactionsFilename)); }
+		// binary snapshots are loaded whenever they exist, JSON backups are imported otherwise:
+		final File usersSnapshotFile = configuration.usersSnapshotFilename == null ? null : new File(configuration.usersSnapshotFilename);
+		final File postsSnapshotFile = configuration.postsSnapshotFilename == null ? null : new File(configuration.postsSnapshotFilename);
+		try
+		{
+			if (usersSnapshotFile != null && usersSnapshotFile.exists()) users = UserMap.fromSnapshot(usersSnapshotFile);
+			else users = UserMap.fromJSON(new File(configuration.userStorageFilename), new File(configuration.followingStorageFilename), new File(configuration.transactionsFilename));
+		}
 		catch (FileNotFoundException | IllegalArchiveException e)
 		{
 			System.err.println("Warning: user storage could not be recovered from backup.");
@@ -1255,7 +507,11 @@ public class ServerMain
 			System.exit(1);
 		}
 		PostStorage posts = null;
-		try { posts = PostMap.fromJSON(new File(configuration.postStorageFilename), new File(configuration.postsInteractionsStorageFilename)); }
+		try
+		{
+			if (postsSnapshotFile != null && postsSnapshotFile.exists()) posts = PostMap.fromSnapshot(postsSnapshotFile);
+			else posts = PostMap.fromJSON(new File(configuration.postStorageFilename), new File(configuration.postsInteractionsStorageFilename));
+		}
 		catch (IllegalArchiveException | InvalidGeneratorException e)
 		{
 			System.err.println("Warning: post storage could not be recovered from backup.");
@@ -1268,6 +524,22 @@ public class ServerMain
 			e.printStackTrace();
 			System.exit(1);
 		}
+		// replaying the mutations which have not made it to the backups:
+		if (configuration.journalDirectory != null)
+		{
+			try
+			{
+				final File journalDirectory = new File(configuration.journalDirectory);
+				if (users.openJournal(journalDirectory) + posts.openJournal(journalDirectory) > 0)
+					System.err.println("Warning: some of the journaled mutations could not be replayed.");
+			}
+			catch (IOException e)
+			{
+				System.err.println("Fatal error occurred while replaying the journals: now aborting...");
+				e.printStackTrace();
+				System.exit(1);
+			}
+		}
 		RMICallbackService callbackService = null;
 		try  { callbackService = new RMICallbackService(); }
 		catch (RemoteException e)
@@ -1295,16 +567,69 @@ public class ServerMain
 		logging.start();
 
 		// setting up multiplexing:
+		/** Maps a channel to the username it has logged in with. */
+		Map<SocketChannel, String> loggedInClients = new ConcurrentHashMap<>();
+		final boolean selectorEngine = configuration.engine == ServerConfiguration.Engine.SELECTOR;
+		// thread pools are only needed by the selector engine, the other one handles requests on the thread serving the client:
+		final Map<Lane, LaneExecutor> lanes = new EnumMap<>(Lane.class);
+		if (selectorEngine)
+		{
+			lanes.put(Lane.INTERACTIVE, new LaneExecutor(Lane.INTERACTIVE, configuration.corePoolSize, configuration.maximumPoolSize,
+					configuration.keepAliveTime, configuration.maximumQueueSize));
+			lanes.put(Lane.QUERY, new LaneExecutor(Lane.QUERY, configuration.queryPoolSize, configuration.queryPoolSize,
+					configuration.keepAliveTime, configuration.maximumQueueSize));
+			lanes.put(Lane.EXTERNAL, new LaneExecutor(Lane.EXTERNAL, configuration.externalPoolSize, configuration.externalPoolSize,
+					configuration.keepAliveTime, configuration.maximumQueueSize));
+		}
+		final int metricsInterval = configuration.metricsInterval;
+		final Thread metrics = new Thread(() ->
+		{
+			// periodically logging how each lane is doing:
+			while (!Thread.currentThread().isInterrupted())
+			{
+				try { Thread.sleep(metricsInterval); }
+				catch (InterruptedException shutdown) { break; }
+				final String timestamp = String.format("[%s][METRICS]",
+						DateTimeFormatter.ofPattern("dd MMM. YYYY - HH:mm:ss").withLocale(Locale.getDefault()).withZone(ZoneId.systemDefault()).format(Instant.now()));
+				for (LaneExecutor l : lanes.values()) logQueue.offer(timestamp + l.report());
+			}
+		});
+		if (selectorEngine)
+		{
+			metrics.setDaemon(true);
+			metrics.start();
+		}
+		final RateLimiter limiter = new RateLimiter(configuration.rateLimits);
+		final Thread sweeper = new Thread(() ->
+		{
+			// periodically forgetting about the users whose buckets are full again, off the threads handling requests:
+			while (!Thread.currentThread().isInterrupted())
+			{
+				try { Thread.sleep(limiter.getSweepInterval()); }
+				catch (InterruptedException shutdown) { break; }
+				limiter.sweep();
+			}
+		});
+		if (limiter.isEnabled())
+		{
+			sweeper.setDaemon(true);
+			sweeper.start();
+		}
+		final CommandRegistry registry = new CommandRegistry(new CommandContext(users, posts, loggedInClients, callbackService, configuration.getMulticastInfo()),
+				limiter);
 		ServerSocketChannel serverSocketChannel = null;
-		Selector selector = null;
+		final Reactor[] reactors = new Reactor[selectorEngine ? configuration.selectorThreads : 0];
 		try
 		{
 			serverSocketChannel = ServerSocketChannel.open();
 			ServerSocket sSocket = serverSocketChannel.socket();
 			sSocket.bind(new InetSocketAddress(configuration.serverAddress, configuration.portNoTCP));
-			serverSocketChannel.configureBlocking(false);
-			selector = Selector.open();
-			serverSocketChannel.register(selector, SelectionKey.OP_ACCEPT);
+			if (selectorEngine)
+			{
+				final ClientHandler handler = new ClientHandler(lanes, registry, users, loggedInClients, logQueue, configuration.queueDeadline);
+				for (int i = 0; i < reactors.length; i++)
+					reactors[i] = new Reactor(handler, MAXIMUMFRAMESIZE, HIGHWATERMARK, configuration.socketTimeout);
+			}
 		}
 		catch (IOException e)
 		{
@@ -1312,12 +637,26 @@ public class ServerMain
 			e.printStackTrace();
 			System.exit(1);
 		}
-		Set<SetElement> toBeRegistered = ConcurrentHashMap.newKeySet();
+		final Thread[] reactorThreads = new Thread[reactors.length];
+		for (int i = 0; i < reactors.length; i++)
+		{
+			reactorThreads[i] = new Thread(reactors[i]);
+			reactorThreads[i].start();
+		}
+
+		final UserStorage usersHandler = users;
+		final int socketTimeout = configuration.socketTimeout;
+		final BlockingAcceptor blockingAcceptor = selectorEngine ? null : new BlockingAcceptor(serverSocketChannel,
+				client -> new BlockingClientHandler(client, registry, usersHandler, loggedInClients, logQueue, socketTimeout));
+		if (blockingAcceptor != null)
+		{
+			System.out.printf("Every client is going to be served by its own %s thread.\n", blockingAcceptor.usesVirtualThreads() ? "virtual" : "platform");
+			if (!blockingAcceptor.usesVirtualThreads())
+				System.out.println("Platform threads are not meant to serve thousands of clients: the SELECTOR engine is to be used instead.");
+		}
 
 		// properly handling shutdown:
-		final Selector selectorHandler = selector;
-		final ExecutorService threadPool = new ThreadPoolExecutor(configuration.corePoolSize, configuration.maximumPoolSize, configuration.keepAliveTime,
-				TimeUnit.MILLISECONDS, new LinkedBlockingQueue<>());
+		final ServerSocketChannel serverSocketChannelHandler = serverSocketChannel;
 		final ServerConfiguration configurationHandler = configuration;
 		Runtime.getRuntime().addShutdownHook(new Thread()
 		{
@@ -1327,34 +666,23 @@ public class ServerMain
 				rmi.interrupt();
 				rewardsHandler.interrupt();
 				logging.interrupt();
-				selectorHandler.wakeup();
-				Iterator<SelectionKey> keys = selectorHandler.keys().iterator();
-				while (keys.hasNext())
-				{
-					SelectableChannel c = keys.next().channel();
-					if (c instanceof ServerSocketChannel)
-					{
-						try { c.close(); }
-						catch (IOException e)
-						{
-							System.err.println("I/O error occurred during shutdown:");
-							e.printStackTrace();
-						}
-					}
-				}
-				try { selectorHandler.close(); }
+				try { serverSocketChannelHandler.close(); }
 				catch (IOException e)
 				{
 					System.err.println("I/O error occurred during shutdown:");
 					e.printStackTrace();
 				}
-				threadPool.shutdown();
-				try
+				for (Reactor r : reactors) r.close();
+				if (blockingAcceptor != null) blockingAcceptor.close();
+				metrics.interrupt();
+				for (LaneExecutor l : lanes.values()) l.shutdown(configurationHandler.threadPoolTimeout);
+				for (Thread t : reactorThreads)
 				{
-					if (!threadPool.awaitTermination(configurationHandler.threadPoolTimeout, TimeUnit.MILLISECONDS))
-						threadPool.shutdownNow();
+					try { t.join(500); }
+					catch (InterruptedException e) { }
 				}
-				catch (InterruptedException e) { threadPool.shutdownNow(); }
+				final int leaks = BufferPool.reportLeaks(System.err);
+				if (leaks != 0) System.err.printf("%d buffer(s) have not been released.\n", leaks);
 				// storing users:
 				try { backup.join(500); }
 				catch (InterruptedException e) { }
@@ -1367,71 +695,8 @@ public class ServerMain
 			}
 		});
 
-		/** Maps a channel to the username it has logged in with. */
-		Map<SocketChannel, String> loggedInClients = new ConcurrentHashMap<>();
-		// select loop:
-		while (true)
-		{
-			int r = 0;
-			try { r = selector.select(); }
-			catch (IOException e)
-			{
-				System.err.println("Fatal I/O error occurred during select: now aborting...");
-				e.printStackTrace();
-				System.exit(1);
-			}
-			catch (ClosedSelectorException e) { break; }
-			if (!selector.isOpen()) break;
-			if (r == 0)
-			{
-				if (!toBeRegistered.isEmpty())
-				{
-					for (final SetElement s : toBeRegistered)
-					{
-						try { s.client.register(selector, s.operation, s.buffer); }
-						catch (ClosedChannelException clientDisconnected) { }
-						toBeRegistered.remove(s);
-					}
-				}
-			}
-			final Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
-			while (keys.hasNext())
-			{
-				try
-				{
-					final SelectionKey k = keys.next();
-					keys.remove(); // remove from selected set
-					if (k.isAcceptable())
-					{
-						final ServerSocketChannel server = (ServerSocketChannel) k.channel();
-						SocketChannel client = null;
-						try
-						{
-							client = server.accept();
-							client.configureBlocking(false);
-
-							client.register(selector, SelectionKey.OP_READ, ByteBuffer.allocate(BUFFERSIZE));
-						}
-						catch (ClosedChannelException clientDisconnected) { } // nothing to do
-						catch (IOException e)
-						{
-							System.err.printf("I/O error occurred:\n%s\n", e.getMessage());
-						}
-						continue;
-					}
-					if (k.isReadable())
-					{
-						k.cancel();
-						threadPool.execute(new Thread(new RequestHandler(toBeRegistered, selector, k, users, posts, loggedInClients, callbackService, logQueue)));
-					}
-					if (k.isWritable())
-					{
-						k.cancel();
-						threadPool.execute(new Thread(new MessageDispatcher(toBeRegistered, selector, k, users, loggedInClients)));
-					}
-				}
-				catch (CancelledKeyException e) { continue; }
-			}
-		}
+		// accept loop:
+		if (selectorEngine) new Acceptor(serverSocketChannel, reactors).run();
+		else blockingAcceptor.run();
 	}
-}
\ No newline at end of file
+}
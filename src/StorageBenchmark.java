@@ -0,0 +1,123 @@
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+import cryptography.Passwords;
+import server.storage.PostMap;
+import server.storage.UserMap;
+import server.user.SameUserException;
+
+/**
+ * Contention benchmark for the storages: every thread keeps on creating posts, following and unfollowing users picked at random,
+ * the way the handlers of the matching commands do, and the throughput is reported for 1 up to MAXTHREADS threads.
+ * Usage: java StorageBenchmark [seconds each run lasts].
+ * @author Giacomo Trapani.
+ */
+public class StorageBenchmark
+{
+	/** Number of users registered before each run. */
+	private static final int USERS = 4096;
+	/** Number of users followed by every user before each run. */
+	private static final int FOLLOWING = 16;
+	/** Maximum number of threads the benchmark is run with. */
+	private static final int MAXTHREADS = 32;
+	/** Default number of seconds each run lasts. */
+	private static final int DEFAULTSECONDS = 2;
+
+	public static void main(String[] args)
+	throws Exception
+	{
+		final int seconds = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULTSECONDS;
+
+		run(MAXTHREADS, 1); // warm-up
+		System.out.println(String.format("%-8s %14s %8s", "threads", "writes/sec", "speedup"));
+		double base = 0;
+		for (int threads = 1; threads <= MAXTHREADS; threads *= 2)
+		{
+			final double throughput = run(threads, seconds);
+			if (threads == 1) base = throughput;
+			System.out.println(String.format("%-8d %14.0f %7.2fx", threads, throughput, throughput / base));
+		}
+	}
+
+	/**
+	 * Runs the benchmark on storages filled up from scratch.
+	 * @param threads number of writer threads.
+	 * @param seconds number of seconds the run lasts.
+	 * @return the number of writes handled every second.
+	 */
+	private static double run(final int threads, final int seconds)
+	throws Exception
+	{
+		final UserMap users = new UserMap();
+		final PostMap posts = new PostMap();
+		final byte[] salt = Passwords.generateSalt();
+		final String password = Passwords.hashPassword("password".getBytes(StandardCharsets.US_ASCII), salt);
+		final Set<String> tags = Collections.singleton("benchmark");
+
+		for (int i = 0; i < USERS; i++)
+			users.register(username(i), password, tags, salt);
+		for (int i = 0; i < USERS; i++)
+			for (int j = 1; j <= FOLLOWING; j++)
+				users.handleFollowUser(username(i), username((i + j * 97) % USERS));
+		for (int i = 0; i < USERS; i++) // materializing every feed, so that posts are fanned out to them
+			posts.handleShowFeed(username(i), users, Integer.MAX_VALUE, 1);
+
+		final LongAdder writes = new LongAdder();
+		final CountDownLatch start = new CountDownLatch(1);
+		final long[] deadline = new long[1];
+		final List<Thread> workers = new ArrayList<>();
+		for (int t = 0; t < threads; t++)
+		{
+			final Thread worker = new Thread(() ->
+			{
+				final ThreadLocalRandom random = ThreadLocalRandom.current();
+				try { start.await(); }
+				catch (InterruptedException e) { return; }
+				while (System.nanoTime() < deadline[0])
+				{
+					final String username = username(random.nextInt(USERS));
+					final String other = username(random.nextInt(USERS));
+					try
+					{
+						switch (random.nextInt(4))
+						{
+							case 0:
+								if (users.handleFollowUser(username, other)) posts.updateFeedOnFollow(username, other);
+								break;
+
+							case 1:
+								if (users.handleUnfollowUser(username, other)) posts.updateFeedOnUnfollow(username, other, users);
+								break;
+
+							default:
+								posts.handleCreatePost(username, users, "title", "contents");
+								break;
+						}
+					}
+					catch (SameUserException ignored) { }
+					catch (Exception shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+					writes.increment();
+				}
+			});
+			workers.add(worker);
+			worker.start();
+		}
+		final long begin = System.nanoTime();
+		deadline[0] = begin + seconds * 1000000000L;
+		start.countDown();
+		for (Thread worker : workers) worker.join();
+		return writes.sum() / ((System.nanoTime() - begin) / 1e9);
+	}
+
+	/** Returns the username of the i-th user. */
+	private static String username(final int i)
+	{
+		return "user" + i;
+	}
+}
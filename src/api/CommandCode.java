@@ -8,50 +8,79 @@ package api;
 public enum CommandCode
 {
 	/** Command code used to retrieve user's salt. */
-	LOGINSETUP("Login setup"),
+	LOGINSETUP("Login setup", 1),
 	/** Command code used to login. */
-	LOGINATTEMPT("Login"),
+	LOGINATTEMPT("Login", 2),
 	/** Command code used to retrieve old followers. */
-	PULLFOLLOWERS("Pull followers"),
+	PULLFOLLOWERS("Pull followers", 3),
 	/** Command code used to ask for multicast coordinates. */
-	RETRIEVEMULTICAST("Retrieve multicast"),
+	RETRIEVEMULTICAST("Retrieve multicast", 4),
 	/** Command code used to logout. */
-	LOGOUT("Logout"),
+	LOGOUT("Logout", 5),
 	/** Command code used to retrieve the list of users currently sharing an interest with the caller. */
-	LISTUSERS("List users"),
+	LISTUSERS("List users", 6),
 	/** Command code used to retrieve the list of users currently followed by the caller. */
-	LISTFOLLOWING("List following"),
+	LISTFOLLOWING("List following", 7),
 	/** Command code used to follow another user. */
-	FOLLOWUSER("Follow"),
+	FOLLOWUSER("Follow", 8),
 	/** Command code used to unfollow another user. */
-	UNFOLLOWUSER("Unfollow"),
+	UNFOLLOWUSER("Unfollow", 9),
 	/** Command code used to retrieve the list of the posts by the caller. */
-	VIEWBLOG("Blog"),
+	VIEWBLOG("Blog", 10),
 	/** Command code used to add a post. */
-	CREATEPOST("Post"),
+	CREATEPOST("Post", 11),
 	/** Command code used to retrieve the list of the posts on caller's feed. */
-	SHOWFEED("Show feed"),
+	SHOWFEED("Show feed", 12),
 	/** Command code used to show a post. */
-	SHOWPOST("Show post"),
+	SHOWPOST("Show post", 13),
 	/** Command code used to delete a post. */
-	DELETEPOST("Delete post"),
+	DELETEPOST("Delete post", 14),
 	/** Command code used to ask for a certain post to be rewon by the caller. */
-	REWIN("Rewin"),
+	REWIN("Rewin", 15),
 	/** Command code used to add a new comment to a post. */
-	COMMENT("Comment"),
+	COMMENT("Comment", 16),
 	/** Command code used to rate a certain post. */
-	RATE("Rate"),
+	RATE("Rate", 17),
 	/** Command code used to retrieve each and every transaction the caller's been involved with and the total amount of WINCOINS currently owned. */
-	WALLET("Wallet"),
+	WALLET("Wallet", 18),
 	/** Command code used to show user's amount of WINCOINS converted to BTC. */
-	WALLETBTC("Wallet BTC");
+	WALLETBTC("Wallet BTC", 19),
+	/** Command code used to switch to another version of the protocol. */
+	PROTOCOL("Protocol", 20);
 
 	/** Used to represent the command as a string. */
 	public final String description;
+	/** Used to represent the command inside a binary request. */
+	public final int opcode;
+
+	/** Used to map opcodes to their command code. */
+	private static final CommandCode[] byOpcode = new CommandCode[values().length + 1];
+
+	static
+	{
+		for (CommandCode c : values())
+			byOpcode[c.opcode] = c;
+	}
 
 	/**
 	 * Private constructor used to initialize a CommandCode.
 	 * @param description Used to describe the code.
+	 * @param opcode Used to represent the code inside a binary request, it must fit in a byte.
+	 */
+	private CommandCode(String description, int opcode)
+	{
+		this.description = description;
+		this.opcode = opcode;
+	}
+
+	/**
+	 * Method used to find the command code matching a certain opcode.
+	 * @param opcode the opcode of the command.
+	 * @return the command code matching opcode, null if there is none.
 	 */
-	private CommandCode(String description) { this.description = description; }
+	public static CommandCode fromOpcode(final int opcode)
+	{
+		if (opcode < 0 || opcode >= byOpcode.length) return null;
+		return byOpcode[opcode];
+	}
 }
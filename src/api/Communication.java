@@ -46,7 +46,7 @@ public class Communication
 				size = buffer.getInt();
 			dst.append(StandardCharsets.US_ASCII.decode(buffer).toString());
 			buffer.clear();
-		} while (nRead < size || size < 0);
+		} while (size < 0 || nRead < size + Integer.BYTES);
 		return nRead;
 	}
 
@@ -78,10 +78,12 @@ public class Communication
 			buffer.flip();
 			if (size == -1)
 				size = buffer.getInt();
-			while (buffer.hasRemaining())
+			if (buffer.hasArray())
+				dst.write(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+			else while (buffer.hasRemaining())
 				dst.write(buffer.get());
 			buffer.clear();
-		} while (nRead < size || size < 0);
+		} while (size < 0 || nRead < size + Integer.BYTES);
 		return nRead;
 	}
 
@@ -89,17 +91,20 @@ public class Communication
 	 * Utility function used to send a valid message. Its structure will be CONCAT(LENGTH, BYTES) with LENGTH representing the number of bytes written
 	 * (which are properly encoded), BYTES the message (to be read).
 	 * @param dst channel to write to.
-	 * @param buffer used to write to the channel.
+	 * @param buffer used to write LENGTH to the channel, BYTES are written from src without being copied.
 	 * @param src bytes to be written on the channel.
-	 * @throws IOException Refer to WritableByteChannel write.
+	 * @throws IOException Refer to GatheringByteChannel write.
 	 */
 	public static void send(SocketChannel dst, ByteBuffer buffer, byte[] src)
 	throws IOException
 	{
+		final ByteBuffer[] frame = { buffer, ByteBuffer.wrap(src) };
+
+		buffer.clear();
 		buffer.putInt(src.length);
-		buffer.put(src);
 		buffer.flip();
-		while (buffer.hasRemaining())
-			dst.write(buffer);
+		while (buffer.hasRemaining() || frame[1].hasRemaining())
+			dst.write(frame);
+		buffer.clear();
 	}
 }
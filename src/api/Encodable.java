@@ -0,0 +1,20 @@
+package api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Interface to be implemented by every typed record sent back by the server when speaking the binary protocol.
+ * Its toString method is expected to return the record as it is sent when speaking the text protocol.
+ * @author Giacomo Trapani.
+ */
+public interface Encodable
+{
+	/**
+	 * Writes the record following the binary protocol.
+	 * @param dst cannot be null.
+	 * @throws IOException Refer to OutputStream write function.
+	 */
+	public void writeTo(final OutputStream dst)
+	throws IOException;
+}
@@ -0,0 +1,79 @@
+package api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Immutable class used to describe a post as it is listed to clients, i.e. its identifier, its author and its title.
+ * Binary syntax: CONCAT(ID, AUTHOR, TITLE) with ID being a varint.
+ * @author Giacomo Trapani.
+ */
+public class PostPreview implements Encodable
+{
+	/** Identifier of the post. */
+	public final int id;
+	/** Username of the author of the post. */
+	public final String author;
+	/** Title of the post. */
+	public final String title;
+
+	/**
+	 * Default constructor.
+	 * @param id identifier of the post, it must not be negative.
+	 * @param author cannot be null.
+	 * @param title cannot be null.
+	 * @throws NullPointerException if author or title is null.
+	 */
+	public PostPreview(final int id, final String author, final String title)
+	throws NullPointerException
+	{
+		this.id = id;
+		this.author = Objects.requireNonNull(author, "Author cannot be null.");
+		this.title = Objects.requireNonNull(title, "Title cannot be null.");
+	}
+
+	public void writeTo(final OutputStream dst)
+	throws IOException
+	{
+		Protocol.writeVarint(dst, id);
+		Protocol.writeString(dst, author);
+		Protocol.writeString(dst, title);
+	}
+
+	/**
+	 * Reads a post preview written by writeTo.
+	 * @param src cannot be null.
+	 * @return the post preview read.
+	 * @throws BufferUnderflowException if src ends before the post preview does.
+	 * @throws IllegalArgumentException if src does not contain a valid post preview.
+	 */
+	public static PostPreview readFrom(final ByteBuffer src)
+	throws BufferUnderflowException, IllegalArgumentException
+	{
+		final int id = Protocol.readVarint(src);
+		final String author = Protocol.readString(src);
+		return new PostPreview(id, author, Protocol.readString(src));
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj) return true;
+		if (obj == null || getClass() != obj.getClass()) return false;
+		return id == ((PostPreview) obj).id;
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Integer.hashCode(id);
+	}
+
+	public String toString()
+	{
+		return String.format("{ \"%s\": \"%d\",\n \"%s\": \"%s\",\n \"%s\": \"%s\"}", "id", id, "author", author, "title", title);
+	}
+}
@@ -0,0 +1,144 @@
+package api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+
+/**
+ * Utility class defining the versions of the protocol spoken between client and server and the primitives
+ * the binary one is made of. Every connection starts speaking TEXT, it can switch to BINARY by sending a PROTOCOL request.
+ * <br> TEXT requests are flat JSON objects, responses follow the syntax CONCAT(CODE, "\r\n", BODY).
+ * <br> BINARY requests follow the syntax CONCAT(REQUESTID, OPCODE, FIELD_{1}, ..., FIELD_{n}) with REQUESTID being a 4 bytes long int chosen by the client,
+ * OPCODE a single byte denoting the command and every FIELD following the syntax CONCAT(ID, STRING), ID being a single byte denoting the field.
+ * Responses follow the syntax CONCAT(REQUESTID, CODE, KIND, BODY) with REQUESTID being the one of the request answered,
+ * CODE the numeric response code written as a varint and KIND a single byte denoting how BODY is to be read.
+ * Many BINARY requests may be sent without waiting for their responses: they are handled concurrently and answered in any order.
+ * <br> Integers are written as varints, strings as CONCAT(LENGTH, BYTES) with LENGTH being a varint.
+ * @author Giacomo Trapani.
+ */
+public class Protocol
+{
+	/** Version speaking JSON requests and text responses. */
+	public static final int TEXT = 1;
+	/** Version speaking binary requests and responses. */
+	public static final int BINARY = 2;
+
+	/** Kind of a binary response whose body is a single string. */
+	public static final int MESSAGE = 0;
+	/** Kind of a binary response whose body is a list of strings. */
+	public static final int STRINGS = 1;
+	/** Kind of a binary response whose body is a list of users. */
+	public static final int USERS = 2;
+	/** Kind of a binary response whose body is a list of post previews. */
+	public static final int POSTS = 3;
+	/** Kind of a binary response whose body is the total amount of WINCOINS followed by a list of transactions. */
+	public static final int WALLET = 4;
+
+	private Protocol() { }
+
+	/**
+	 * Writes a non-negative integer using 7 bits per byte, the most significant bit of every byte being set if more bytes follow.
+	 * @param dst cannot be null.
+	 * @param value must not be negative.
+	 * @throws IOException Refer to OutputStream write function.
+	 * @throws IllegalArgumentException if value is negative.
+	 */
+	public static void writeVarint(final OutputStream dst, int value)
+	throws IOException, IllegalArgumentException
+	{
+		if (value < 0) throw new IllegalArgumentException("Varints cannot be negative.");
+		while ((value & ~0x7F) != 0)
+		{
+			dst.write((value & 0x7F) | 0x80);
+			value >>>= 7;
+		}
+		dst.write(value);
+	}
+
+	/**
+	 * Writes a string as CONCAT(LENGTH, BYTES) with LENGTH being a varint and BYTES the string encoded with US ASCII.
+	 * @param dst cannot be null.
+	 * @param s cannot be null.
+	 * @throws IOException Refer to OutputStream write function.
+	 * @throws NullPointerException if s is null.
+	 */
+	public static void writeString(final OutputStream dst, final String s)
+	throws IOException, NullPointerException
+	{
+		final byte[] bytes = Objects.requireNonNull(s, "String cannot be null.").getBytes(StandardCharsets.US_ASCII);
+
+		writeVarint(dst, bytes.length);
+		dst.write(bytes);
+	}
+
+	/**
+	 * Writes a double as its 8 bytes long IEEE 754 representation, most significant byte first.
+	 * @param dst cannot be null.
+	 * @param value value to be written.
+	 * @throws IOException Refer to OutputStream write function.
+	 */
+	public static void writeDouble(final OutputStream dst, final double value)
+	throws IOException
+	{
+		final long bits = Double.doubleToLongBits(value);
+
+		for (int shift = Long.SIZE - Byte.SIZE; shift >= 0; shift -= Byte.SIZE)
+			dst.write((int) (bits >>> shift));
+	}
+
+	/**
+	 * Reads a varint.
+	 * @param src cannot be null.
+	 * @return the integer read.
+	 * @throws BufferUnderflowException if src ends before the varint does.
+	 * @throws IllegalArgumentException if the varint does not fit in a non-negative int.
+	 */
+	public static int readVarint(final ByteBuffer src)
+	throws BufferUnderflowException, IllegalArgumentException
+	{
+		int value = 0;
+		for (int shift = 0; shift < Integer.SIZE; shift += 7)
+		{
+			final byte b = src.get();
+			value |= (b & 0x7F) << shift;
+			if ((b & 0x80) == 0)
+			{
+				if (value < 0) break;
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Varint is too long.");
+	}
+
+	/**
+	 * Reads a string written by writeString.
+	 * @param src cannot be null.
+	 * @return the string read.
+	 * @throws BufferUnderflowException if src ends before the string does.
+	 * @throws IllegalArgumentException if its length is not a valid varint.
+	 */
+	public static String readString(final ByteBuffer src)
+	throws BufferUnderflowException, IllegalArgumentException
+	{
+		final int length = readVarint(src);
+		if (length > src.remaining()) throw new BufferUnderflowException();
+		final byte[] bytes = new byte[length];
+		src.get(bytes);
+		return new String(bytes, StandardCharsets.US_ASCII);
+	}
+
+	/**
+	 * Reads a double written by writeDouble.
+	 * @param src cannot be null.
+	 * @return the double read.
+	 * @throws BufferUnderflowException if src ends before the double does.
+	 */
+	public static double readDouble(final ByteBuffer src)
+	throws BufferUnderflowException
+	{
+		return Double.longBitsToDouble(src.getLong());
+	}
+}
@@ -0,0 +1,83 @@
+package api;
+
+/**
+ * Enum used to represent the fields a request can be made up of, any other field sent by the client is ignored.
+ * @author Giacomo Trapani.
+ */
+public enum RequestField
+{
+	/** Field holding the command requested. */
+	COMMAND("command", 0),
+	/** Field holding the username of the caller. */
+	USERNAME("username", 1),
+	/** Field holding the hashed password of the caller. */
+	HASHEDPASSWORD("hashedpassword", 2),
+	/** Field holding the username of the user who is to follow or unfollow another one. */
+	FOLLOWER("follower", 3),
+	/** Field holding the username of the user who is to be followed or unfollowed. */
+	FOLLOWED("followed", 4),
+	/** Field holding the username of the author of a new post. */
+	AUTHOR("author", 5),
+	/** Field holding the title of a new post. */
+	TITLE("title", 6),
+	/** Field holding the contents of a new post or comment. */
+	CONTENTS("contents", 7),
+	/** Field holding the identifier of a post. */
+	POSTID("postid", 8),
+	/** Field holding the vote to be cast on a post. */
+	VOTE("vote", 9),
+	/** Field holding the version of the protocol a client asks to speak. */
+	VERSION("version", 10),
+	/** Field holding the maximum number of posts to be listed. */
+	LIMIT("limit", 11),
+	/** Field holding the cursor returned alongside the previous page of a listing. */
+	CURSOR("cursor", 12);
+
+	/** Name of the field inside a JSON request. */
+	public final String name;
+	/** Identifier of the field inside a binary request. */
+	public final int id;
+
+	/** Used to map identifiers to their field. */
+	private static final RequestField[] byID = new RequestField[values().length];
+
+	static
+	{
+		for (RequestField f : values())
+			byID[f.id] = f;
+	}
+
+	/**
+	 * Private constructor used to initialize a RequestField.
+	 * @param name name of the field inside a JSON request.
+	 * @param id identifier of the field inside a binary request.
+	 */
+	private RequestField(final String name, final int id)
+	{
+		this.name = name;
+		this.id = id;
+	}
+
+	/**
+	 * Method used to find the field matching a certain identifier.
+	 * @param id identifier of the field inside a binary request.
+	 * @return the field matching id, null if there is none.
+	 */
+	public static RequestField fromID(final int id)
+	{
+		if (id < 0 || id >= byID.length) return null;
+		return byID[id];
+	}
+
+	/**
+	 * Method used to find the field matching a certain name.
+	 * @param name name of the field inside a JSON request.
+	 * @return the field matching name, null if there is none.
+	 */
+	public static RequestField fromName(final String name)
+	{
+		for (RequestField f : values())
+			if (f.name.equals(name)) return f;
+		return null;
+	}
+}
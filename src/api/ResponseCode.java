@@ -9,7 +9,9 @@ public enum ResponseCode
 	OK(200, "200\r\n"),
 	BAD_REQUEST(400, "400\r\n"),
 	FORBIDDEN(403, "403\r\n"),
-	NOT_FOUND(404, "404\r\n");
+	NOT_FOUND(404, "404\r\n"),
+	TOO_MANY_REQUESTS(429, "429\r\n"),
+	SERVICE_UNAVAILABLE(503, "503\r\n");
 
 	/** Numeric value of the code. */
 	private int value = -1;
@@ -46,12 +48,14 @@ public enum ResponseCode
 
 	/**
 	 * Instantiates a ResponseCode given its numerical code.
-	 * @param code must be in { 200, 201, 400, 403, 404 }.
+	 * @param code must be in { 200, 201, 400, 403, 404, 429, 503 }.
 	 * @return ResponseCode corresponding to code, null if there are none. <br>
 	 * 200: OK <br>
 	 * 400: BAD REQUEST <br>
 	 * 403: FORBIDDEN <br>
 	 * 404: NOT FOUND <br>
+	 * 429: TOO MANY REQUESTS <br>
+	 * 503: SERVICE UNAVAILABLE <br>
 	 */
 	public static ResponseCode fromCode(int code)
 	{
@@ -73,6 +77,14 @@ public enum ResponseCode
 			case 404:
 				r = NOT_FOUND;
 				break;
+
+			case 429:
+				r = TOO_MANY_REQUESTS;
+				break;
+
+			case 503:
+				r = SERVICE_UNAVAILABLE;
+				break;
 	
 			default:
 				break;
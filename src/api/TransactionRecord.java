@@ -0,0 +1,74 @@
+package api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * Immutable class used to describe a transaction as it is sent to clients.
+ * Binary syntax: CONCAT(AMOUNT, TIMESTAMP) with AMOUNT being an IEEE 754 double.
+ * @author Giacomo Trapani.
+ */
+public class TransactionRecord implements Encodable
+{
+	/** Amount of WINCOINS involved in the transaction. */
+	public final double amount;
+	/** Timestamp as a formatted string. */
+	public final String timestamp;
+
+	/**
+	 * Default constructor.
+	 * @param amount amount of WINCOINS involved in the transaction.
+	 * @param timestamp cannot be null.
+	 * @throws NullPointerException if timestamp is null.
+	 */
+	public TransactionRecord(final double amount, final String timestamp)
+	throws NullPointerException
+	{
+		this.amount = amount;
+		this.timestamp = Objects.requireNonNull(timestamp, "Timestamp cannot be null.");
+	}
+
+	public void writeTo(final OutputStream dst)
+	throws IOException
+	{
+		Protocol.writeDouble(dst, amount);
+		Protocol.writeString(dst, timestamp);
+	}
+
+	/**
+	 * Reads a transaction written by writeTo.
+	 * @param src cannot be null.
+	 * @return the transaction read.
+	 * @throws BufferUnderflowException if src ends before the transaction does.
+	 * @throws IllegalArgumentException if src does not contain a valid transaction.
+	 */
+	public static TransactionRecord readFrom(final ByteBuffer src)
+	throws BufferUnderflowException, IllegalArgumentException
+	{
+		final double amount = Protocol.readDouble(src);
+		return new TransactionRecord(amount, Protocol.readString(src));
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj) return true;
+		if (obj == null || getClass() != obj.getClass()) return false;
+		final TransactionRecord other = (TransactionRecord) obj;
+		return Double.compare(amount, other.amount) == 0 && timestamp.equals(other.timestamp);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return Objects.hash(amount, timestamp);
+	}
+
+	public String toString()
+	{
+		return String.format("{ \"amount\": \"%f\", \"timestamp\":  \"%s\" }", amount, timestamp);
+	}
+}
@@ -0,0 +1,82 @@
+package api;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Immutable class used to describe a user as it is sent to clients, i.e. its username together with its tags.
+ * Binary syntax: CONCAT(USERNAME, N, TAG_{1}, ..., TAG_{N}) with N being a varint.
+ * @author Giacomo Trapani.
+ */
+public class UserRecord implements Encodable
+{
+	/** Username of the user. */
+	public final String username;
+	/** Tags of the user. */
+	public final List<String> tags;
+
+	/**
+	 * Default constructor.
+	 * @param username cannot be null.
+	 * @param tags cannot be null nor contain null.
+	 * @throws NullPointerException if username or tags is null.
+	 */
+	public UserRecord(final String username, final List<String> tags)
+	throws NullPointerException
+	{
+		this.username = Objects.requireNonNull(username, "Username cannot be null.");
+		this.tags = Collections.unmodifiableList(new ArrayList<>(Objects.requireNonNull(tags, "Tags cannot be null.")));
+	}
+
+	public void writeTo(final OutputStream dst)
+	throws IOException
+	{
+		Protocol.writeString(dst, username);
+		Protocol.writeVarint(dst, tags.size());
+		for (String t : tags)
+			Protocol.writeString(dst, t);
+	}
+
+	/**
+	 * Reads a user written by writeTo.
+	 * @param src cannot be null.
+	 * @return the user read.
+	 * @throws BufferUnderflowException if src ends before the user does.
+	 * @throws IllegalArgumentException if src does not contain a valid user.
+	 */
+	public static UserRecord readFrom(final ByteBuffer src)
+	throws BufferUnderflowException, IllegalArgumentException
+	{
+		final String username = Protocol.readString(src);
+		final int n = Protocol.readVarint(src);
+		final List<String> tags = new ArrayList<>();
+		for (int i = 0; i < n; i++)
+			tags.add(Protocol.readString(src));
+		return new UserRecord(username, tags);
+	}
+
+	@Override
+	public boolean equals(final Object obj)
+	{
+		if (this == obj) return true;
+		if (obj == null || getClass() != obj.getClass()) return false;
+		return username.equals(((UserRecord) obj).username);
+	}
+
+	@Override
+	public int hashCode()
+	{
+		return username.hashCode();
+	}
+
+	public String toString()
+	{
+		return String.format("{ \"username\": \"%s\", \"tags\": [%s]", username, String.join(",", tags)) + "}";
+	}
+}
@@ -9,11 +9,16 @@ import java.rmi.NotBoundException;
 import java.rmi.RemoteException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 
 import api.CommandCode;
 import api.Communication;
+import api.Protocol;
+import api.RequestField;
 import api.ResponseCode;
 import api.rmi.InvalidTagException;
 import api.rmi.PasswordNotValidException;
@@ -39,15 +44,62 @@ public class Command
 	private static final String RESPONSE_FAILURE = "Server response could not be parsed properly.";
 	/** Used as an error message whenever an input parameter is null. */
 	private static final String NULL_ERROR = " cannot be null.";
-	private static final String COMMAND = "command";
-	private static final String USERNAME = "username";
-	private static final String HASHEDPASSWORD = "hashedpassword";
-	private static final String FOLLOWER = "follower";
-	private static final String FOLLOWED = "followed";
-	private static final String AUTHOR = "author";
-	private static final String TITLE = "title";
-	private static final String CONTENTS = "contents";
-	private static final String POSTID = "postid";
+	private static final String COMMAND = RequestField.COMMAND.name;
+	private static final String USERNAME = RequestField.USERNAME.name;
+	private static final String HASHEDPASSWORD = RequestField.HASHEDPASSWORD.name;
+	private static final String FOLLOWER = RequestField.FOLLOWER.name;
+	private static final String FOLLOWED = RequestField.FOLLOWED.name;
+	private static final String AUTHOR = RequestField.AUTHOR.name;
+	private static final String TITLE = RequestField.TITLE.name;
+	private static final String CONTENTS = RequestField.CONTENTS.name;
+	private static final String POSTID = RequestField.POSTID.name;
+	private static final String VOTE = RequestField.VOTE.name;
+	private static final String VERSION = RequestField.VERSION.name;
+
+	/** Version of the protocol currently spoken with the server, every connection starts speaking TEXT. */
+	private static int protocol = Protocol.TEXT;
+	/** Identifier to be given to the next request sent following the binary protocol. */
+	private static int nextRequestID = 0;
+	/** Bytes received from the server which have yet to be parsed, it is always kept in write mode. */
+	private static ByteBuffer inbound = ByteBuffer.allocate(BUFFERSIZE);
+	/** Responses received while waiting for the one to another request, by the identifier of the request they answer. */
+	private static final Map<Integer, byte[]> earlyResponses = new HashMap<>();
+
+	/**
+	 * Asks the server to switch to a different version of the protocol. The request is sent following the version currently in use,
+	 * every request following a successful switch is sent following the new one.
+	 * @param version version of the protocol to be spoken (refer to api.Protocol).
+	 * @param server cannot be null.
+	 * @param verbose toggled on if any output is to be printed out.
+	 * @return 0 on success, 1 on failure, -1 if an error occurs.
+	 * @throws IOException if I/O error(s) occur(s) (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
+	 * @throws NullPointerException if server is null.
+	 */
+	public static int switchProtocol(final int version, final SocketChannel server, final boolean verbose)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(server, "Server" + NULL_ERROR);
+
+		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
+		int id = 0;
+		Response<String> r = null;
+
+		if (version == protocol) return 0;
+		buffer.flip(); buffer.clear();
+		// { "command": "Protocol", "version": "<version>" }
+		id = sendRequest(server, buffer, CommandCode.PROTOCOL, VERSION, Integer.toString(version));
+		if ((r = receiveAnswer(server, id)) == null) return -1;
+		if (r.code == ResponseCode.OK)
+		{
+			protocol = version;
+			return 0;
+		}
+		else
+		{
+			printIf(r, verbose);
+			return 1;
+		}
+	}
 
 	/**
 	 * Signs up a user to WINSOME.
@@ -89,7 +141,7 @@ public class Command
 	 * @param JSONMulticastInfo cannot be null.
 	 * @param verbose toggled on if response is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur(s) (refer to Communication receiveMessage, receiveBytes and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur(s) (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int login(String username, String password, SocketChannel server, Set<String> dest, StringBuilder JSONMulticastInfo, boolean verbose)
@@ -102,24 +154,17 @@ public class Command
 		Objects.requireNonNull(JSONMulticastInfo, "StringBuilder" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 		String saltDecoded = null;
 		String hashedPassword = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Response<Set<String>> responsePullFollowers;
+		int multicastID = 0;
+		int result = 0;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Login setup", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\"}", COMMAND, CommandCode.LOGINSETUP.description, USERNAME, username)
-				.getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes); // asking for salt
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1; // retrieving salt
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.LOGINSETUP, USERNAME, username); // asking for salt
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code != ResponseCode.OK)
 		{
 			printIf(r, verbose);
@@ -129,62 +174,29 @@ public class Command
 		hashedPassword = Passwords.hashPassword(password.getBytes(StandardCharsets.US_ASCII), Passwords.decodeSalt(saltDecoded));
 		buffer.flip(); buffer.clear();
 		// { "command": "Login", "username": "<username>", "hashedpassword": "<hashed password base64 encoded>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.LOGINATTEMPT.description, USERNAME,
-				username, HASHEDPASSWORD, hashedPassword).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes); // asking for client to login
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.LOGINATTEMPT, USERNAME, username, HASHEDPASSWORD, hashedPassword); // asking for client to login
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code != ResponseCode.OK) // client could not login
 		{
 			printIf(r, verbose);
 			return 1;
 		}
+		// the following requests only need the client to be logged in: they are sent without waiting for each other's response.
 		buffer.flip(); buffer.clear();
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.PULLFOLLOWERS.description, USERNAME, username)
-				.getBytes(StandardCharsets.US_ASCII);
 		// { "command": "Pull followers", "username": "<username>" }
-		Communication.send(server, buffer, bytes); // asking for initial followers' list
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveBytes(server, buffer, baos) == -1) return -1; // retrieving followers
-		responsePullFollowers = Response.parseAnswer(baos.toByteArray());
-		if (responsePullFollowers == null)
-		{
-			r = Response.parseAnswer(StandardCharsets.US_ASCII.decode(ByteBuffer.wrap(baos.toByteArray())).toString());
-			if (r == null) throw new IOException(RESPONSE_FAILURE);
-			else
-			{
-				printIf(r, verbose);
-				return 1;
-			}
-		}
-		if (r.code == ResponseCode.OK)
-		{
-			for (String s: responsePullFollowers.body) dest.add(s);
-			buffer.flip(); buffer.clear();
-			// { "command": "Retrieve multicast" }
-			bytes = String.format("{ \"%s\": \"%s\" }", COMMAND, CommandCode.RETRIEVEMULTICAST.description).getBytes(StandardCharsets.US_ASCII);
-			Communication.send(server, buffer, bytes); // asking for multicast coordinates to be sent
-			buffer.flip(); buffer.clear();
-			sb = new StringBuilder();
-			if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-			r = Response.parseAnswer(sb.toString());
-			if (r == null) throw new IOException(RESPONSE_FAILURE);
-			if (r.code != ResponseCode.OK)
-			{
-				printIf(r, verbose);
-				return 1;
-			}
-			JSONMulticastInfo.append(r.body);
-			return 0;
-		}
-		else
+		id = sendRequest(server, buffer, CommandCode.PULLFOLLOWERS, USERNAME, username); // asking for initial followers' list
+		// { "command": "Retrieve multicast" }
+		multicastID = sendRequest(server, buffer, CommandCode.RETRIEVEMULTICAST); // asking for multicast coordinates to be sent
+		result = receiveRecords(server, id, dest, verbose); // retrieving followers
+		if ((r = receiveAnswer(server, multicastID)) == null || result == -1) return -1;
+		if (result != 0) return result;
+		if (r.code != ResponseCode.OK)
 		{
-			if (verbose) System.out.printf("< %sCode%s: %s%s%s", Colors.ANSI_YELLOW, Colors.ANSI_RESET, Colors.ANSI_YELLOW, r.code.getDescription(), Colors.ANSI_RESET);
+			printIf(r, verbose);
 			return 1;
 		}
+		JSONMulticastInfo.append(r.body);
+		return 0;
 	}
 
 	/**
@@ -193,7 +205,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur(s) (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur(s) (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int logout(String username, SocketChannel server, boolean verbose)
@@ -203,19 +215,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Logout", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.LOGOUT.description, USERNAME, username).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.LOGOUT, USERNAME, username);
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -233,7 +239,7 @@ public class Command
 	 * @param dest cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur(s) (refer to Communication receiveBytes and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur(s) (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int listUsers(String username, SocketChannel server, Set<String> dest, boolean verbose)
@@ -244,29 +250,12 @@ public class Command
 		Objects.requireNonNull(dest, "Set" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Response<Set<String>> r = null;
+		int id = 0;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "List users", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.LISTUSERS.description, USERNAME, username).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveBytes(server, buffer, baos) == -1) return -1;
-		r = Response.parseAnswer(baos.toByteArray());
-		if (r == null)
-		{
-			Response<String> retry = Response.parseAnswer(StandardCharsets.US_ASCII.decode(ByteBuffer.wrap(baos.toByteArray())).toString());
-			if (retry == null) throw new IOException(RESPONSE_FAILURE);
-			else
-			{
-				printIf(retry, verbose);
-				return 1;
-			}
-		}
-		for (String s: r.body) dest.add(s);
-		return 0;
+		id = sendRequest(server, buffer, CommandCode.LISTUSERS, USERNAME, username);
+		return receiveRecords(server, id, dest, verbose);
 	}
 
 	/**
@@ -277,7 +266,7 @@ public class Command
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @param dest cannot be null.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveBytes and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int listFollowing(String username, SocketChannel server, Set<String> dest, boolean verbose)
@@ -288,29 +277,12 @@ public class Command
 		Objects.requireNonNull(dest, "Set" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Response<Set<String>> r = null;
+		int id = 0;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "List following", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.LISTFOLLOWING.description, USERNAME, username).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveBytes(server, buffer, baos) == -1) return -1;
-		r = Response.parseAnswer(baos.toByteArray());
-		if (r == null)
-		{
-			Response<String> retry = Response.parseAnswer(StandardCharsets.US_ASCII.decode(ByteBuffer.wrap(baos.toByteArray())).toString());
-			if (retry == null) throw new IOException(RESPONSE_FAILURE);
-			else
-			{
-				printIf(retry, verbose);
-				return 1;
-			}
-		}
-		for (String s: r.body) dest.add(s);
-		return 0;
+		id = sendRequest(server, buffer, CommandCode.LISTFOLLOWING, USERNAME, username);
+		return receiveRecords(server, id, dest, verbose);
 	}
 
 
@@ -321,7 +293,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur(s) (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur(s) (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int followUser(String follower, String followed, SocketChannel server, boolean verbose)
@@ -332,20 +304,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Follow", "follower": "<follower>", "followed": "<followed>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.FOLLOWUSER.description, FOLLOWER,
-				follower, FOLLOWED, followed).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.FOLLOWUSER, FOLLOWER, follower, FOLLOWED, followed);
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -361,7 +326,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur(s) (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur(s) (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int unfollowUser(final String follower, final String followed, final SocketChannel server, final boolean verbose)
@@ -372,20 +337,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Unfollow", "follower": "<follower>", "followed": "<followed>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.UNFOLLOWUSER.description, FOLLOWER,
-				follower, FOLLOWED, followed).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.UNFOLLOWUSER, FOLLOWER, follower, FOLLOWED, followed);
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -402,7 +360,7 @@ public class Command
 	 * @param dest cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveBytes and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int viewBlog(final String author, final SocketChannel server, Set<String> dest, final boolean verbose)
@@ -413,29 +371,12 @@ public class Command
 		Objects.requireNonNull(dest, "Set" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Response<Set<String>> r = null;
+		int id = 0;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Blog", "username": "<author>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.VIEWBLOG.description, USERNAME, author).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveBytes(server, buffer, baos) == -1) return -1;
-		r = Response.parseAnswer(baos.toByteArray());
-		if (r == null)
-		{
-			Response<String> retry = Response.parseAnswer(StandardCharsets.US_ASCII.decode(ByteBuffer.wrap(baos.toByteArray())).toString());
-			if (retry == null) throw new IOException(RESPONSE_FAILURE);
-			else
-			{
-				printIf(retry, verbose);
-				return 1;
-			}
-		}
-		for (String s: r.body) dest.add(s);
-		return 0;
+		id = sendRequest(server, buffer, CommandCode.VIEWBLOG, USERNAME, author);
+		return receiveRecords(server, id, dest, verbose);
 	}
 
 	/**
@@ -448,7 +389,7 @@ public class Command
 	 * @param dest cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int createPost(final String author, final String title, final String contents, final SocketChannel server, StringBuilder dest, final boolean verbose)
@@ -461,20 +402,13 @@ public class Command
 		Objects.requireNonNull(dest, "Destination" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Post", "author": "<author>", "title": "<title>", "contents": "<contents>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.CREATEPOST.description,
-				AUTHOR, author, TITLE, title, CONTENTS, contents).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.CREATEPOST, AUTHOR, author, TITLE, title, CONTENTS, contents);
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK)
 		{
 			dest.append(r.body);
@@ -496,7 +430,7 @@ public class Command
 	 * @param dest cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveBytes and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int showFeed(final String username, final SocketChannel server, Set<String> dest, final boolean verbose)
@@ -507,29 +441,12 @@ public class Command
 		Objects.requireNonNull(dest, "Set" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Response<Set<String>> r = null;
+		int id = 0;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Show feed", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.SHOWFEED.description, USERNAME, username).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveBytes(server, buffer, baos) == -1) return -1;
-		r = Response.parseAnswer(baos.toByteArray());
-		if (r == null)
-		{
-			Response<String> retry = Response.parseAnswer(StandardCharsets.US_ASCII.decode(ByteBuffer.wrap(baos.toByteArray())).toString());
-			if (retry == null) throw new IOException(RESPONSE_FAILURE);
-			else
-			{
-				printIf(retry, verbose);
-				return 1;
-			}
-		}
-		for (String s: r.body) dest.add(s);
-		return 0;
+		id = sendRequest(server, buffer, CommandCode.SHOWFEED, USERNAME, username);
+		return receiveRecords(server, id, dest, verbose);
 	}
 
 	/**
@@ -541,7 +458,7 @@ public class Command
 	 * @param dest cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int showPost(String username, int postID, SocketChannel server, StringBuilder dest, boolean verbose)
@@ -552,20 +469,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Show post", "username", "<username>", "postid": "<postID>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%d\" }", COMMAND, CommandCode.SHOWPOST.description, USERNAME,
-				username, POSTID, postID).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.SHOWPOST, USERNAME, username, POSTID, Integer.toString(postID));
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK)
 		{
 			dest.append(r.body);
@@ -585,7 +495,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int deletePost(String username, int postID, SocketChannel server, boolean verbose)
@@ -595,20 +505,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Delete post", "username": "<username>", "postid": "<postID>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%d\" }", COMMAND, CommandCode.DELETEPOST.description, USERNAME,
-				username, POSTID, postID).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.DELETEPOST, USERNAME, username, POSTID, Integer.toString(postID));
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -625,7 +528,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int rewinPost(String username, int postID, SocketChannel server, boolean verbose)
@@ -635,20 +538,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Rewin", "username": "<username>", "postid": "<postID>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%d\" }", COMMAND, CommandCode.REWIN.description, USERNAME,
-				username, POSTID, postID).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.REWIN, USERNAME, username, POSTID, Integer.toString(postID));
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -665,7 +561,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int ratePost(final String voter, final int postID, final int vote, final SocketChannel server, final boolean verbose)
@@ -675,20 +571,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Rate", "username": "<voter>", "postid": "<postID>", "vote": "<vote>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%d\", \"%s\": \"%d\" }", COMMAND, CommandCode.RATE.description,
-				USERNAME, voter, POSTID, postID, "vote", vote).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.RATE, USERNAME, voter, POSTID, Integer.toString(postID), VOTE, Integer.toString(vote));
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -705,7 +594,7 @@ public class Command
 	 * @param server cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int addComment(final String author, final int postID, final String contents, final SocketChannel server, final boolean verbose)
@@ -716,20 +605,13 @@ public class Command
 		Objects.requireNonNull(server, "Server" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = null;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Comment", "author": "<author>", "postid": "<postID>", "contents": "<contents>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\", \"%s\": \"%d\", \"%s\": \"%s\" }", COMMAND, CommandCode.COMMENT.description,
-				USERNAME, author, POSTID, postID, CONTENTS, contents).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		sb = new StringBuilder();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.COMMENT, USERNAME, author, POSTID, Integer.toString(postID), CONTENTS, contents);
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK) return 0;
 		else
 		{
@@ -747,7 +629,7 @@ public class Command
 	 * @param dest cannot be null.
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int getWallet(final String username, final SocketChannel server, final Set<String> dest, final boolean verbose)
@@ -758,29 +640,12 @@ public class Command
 		Objects.requireNonNull(dest, "Set" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
-		ByteArrayOutputStream baos = new ByteArrayOutputStream();
-		Response<Set<String>> r = null;
+		int id = 0;
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Wallet", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.WALLET.description, USERNAME, username).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveBytes(server, buffer, baos) == -1) return -1;
-		r = Response.parseAnswer(baos.toByteArray());
-		if (r == null)
-		{
-			Response<String> retry = Response.parseAnswer(StandardCharsets.US_ASCII.decode(ByteBuffer.wrap(baos.toByteArray())).toString());
-			if (retry == null) throw new IOException(RESPONSE_FAILURE);
-			else
-			{
-				printIf(retry, verbose);
-				return 1;
-			}
-		}
-		for (String s: r.body) dest.add(s);
-		return 0;
+		id = sendRequest(server, buffer, CommandCode.WALLET, USERNAME, username);
+		return receiveRecords(server, id, dest, verbose);
 	}
 
 	/**
@@ -792,7 +657,7 @@ public class Command
 	 * @param dest cannot be null
 	 * @param verbose toggled on if any output is to be printed out.
 	 * @return 0 on success, 1 on failure, -1 if an error occurs.
-	 * @throws IOException if I/O error(s) occur (refer to Communication receiveMessage and send) or an invalid response is received.
+	 * @throws IOException if I/O error(s) occur (refer to Communication send and ReadableByteChannel read) or an invalid response is received.
 	 * @throws NullPointerException if any parameters are null.
 	 */
 	public static int getWalletInBitcoin(final String username, final SocketChannel server, final StringBuilder dest, final boolean verbose)
@@ -803,18 +668,13 @@ public class Command
 		Objects.requireNonNull(dest, "StringBuilder" + NULL_ERROR);
 
 		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] bytes = null;
+		int id = 0;
 		Response<String> r = null;
-		StringBuilder sb = new StringBuilder();
 
 		buffer.flip(); buffer.clear();
 		// { "command": "Wallet BTC", "username": "<username>" }
-		bytes = String.format("{ \"%s\": \"%s\", \"%s\": \"%s\" }", COMMAND, CommandCode.WALLETBTC.description, USERNAME, username).getBytes(StandardCharsets.US_ASCII);
-		Communication.send(server, buffer, bytes);
-		buffer.flip(); buffer.clear();
-		if (Communication.receiveMessage(server, buffer, sb) == -1) return -1;
-		r = Response.parseAnswer(sb.toString());
-		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		id = sendRequest(server, buffer, CommandCode.WALLETBTC, USERNAME, username);
+		if ((r = receiveAnswer(server, id)) == null) return -1;
 		if (r.code == ResponseCode.OK)
 		{
 			dest.append(r.body);
@@ -827,6 +687,156 @@ public class Command
 		}
 	}
 
+	/**
+	 * Encodes a request following the version of the protocol currently in use and sends it, without waiting for its response.
+	 * @param server cannot be null.
+	 * @param buffer used when writing to the channel.
+	 * @param command command requested.
+	 * @param fields names of the fields making up the request, each one immediately followed by its value.
+	 * @return the identifier given to the request, it is to be used to receive its response.
+	 * @throws IOException Refer to Communication send function.
+	 */
+	private static int sendRequest(final SocketChannel server, final ByteBuffer buffer, final CommandCode command, final String ... fields)
+	throws IOException
+	{
+		if (protocol == Protocol.BINARY)
+		{
+			final int id = nextRequestID++;
+			ByteArrayOutputStream baos = new ByteArrayOutputStream();
+			baos.write(id >>> 24); baos.write(id >>> 16); baos.write(id >>> 8); baos.write(id);
+			baos.write(command.opcode);
+			try
+			{
+				for (int i = 0; i < fields.length; i += 2)
+				{
+					baos.write(RequestField.fromName(fields[i]).id);
+					Protocol.writeString(baos, fields[i + 1]);
+				}
+			}
+			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+			Communication.send(server, buffer, baos.toByteArray());
+			return id;
+		}
+		StringBuilder sb = new StringBuilder();
+		sb.append("{ \"").append(COMMAND).append("\": \"").append(command.description).append("\"");
+		for (int i = 0; i < fields.length; i += 2)
+			sb.append(", \"").append(fields[i]).append("\": \"").append(fields[i + 1]).append("\"");
+		Communication.send(server, buffer, sb.append(" }").toString().getBytes(StandardCharsets.US_ASCII));
+		return 0;
+	}
+
+	/**
+	 * Receives the response to a request. Speaking the text protocol, responses are received in the same order requests have been sent;
+	 * speaking the binary one, the responses to other requests received in the meantime are kept until they are asked for.
+	 * @param server cannot be null.
+	 * @param id identifier of the request as returned by sendRequest.
+	 * @return the body of the response without its request identifier, null if the server has closed the connection.
+	 * @throws IOException Refer to ReadableByteChannel read function, it is also thrown if an invalid response is received.
+	 */
+	private static byte[] receiveFrame(final SocketChannel server, final int id)
+	throws IOException
+	{
+		if (protocol != Protocol.BINARY) return nextFrame(server);
+		byte[] frame = earlyResponses.remove(id);
+		while (frame == null)
+		{
+			final byte[] next = nextFrame(server);
+			if (next == null) return null;
+			if (next.length < Integer.BYTES) throw new IOException(RESPONSE_FAILURE);
+			final int nextID = ByteBuffer.wrap(next).getInt();
+			if (nextID == id) frame = next;
+			else earlyResponses.put(nextID, next);
+		}
+		return Arrays.copyOfRange(frame, Integer.BYTES, frame.length);
+	}
+
+	/**
+	 * Reads the next frame following the syntax CONCAT(LENGTH, BYTES) sent by the server. Bytes received past its end are kept for the following one.
+	 * @param server cannot be null.
+	 * @return BYTES, null if the server has closed the connection.
+	 * @throws IOException Refer to ReadableByteChannel read function, it is also thrown if LENGTH is negative.
+	 */
+	private static byte[] nextFrame(final SocketChannel server)
+	throws IOException
+	{
+		while (true)
+		{
+			inbound.flip();
+			if (inbound.remaining() >= Integer.BYTES)
+			{
+				final int length = inbound.getInt(inbound.position());
+				if (length < 0) throw new IOException(RESPONSE_FAILURE);
+				if (inbound.remaining() - Integer.BYTES >= length)
+				{
+					final byte[] frame = new byte[length];
+					inbound.getInt();
+					inbound.get(frame);
+					inbound.compact();
+					return frame;
+				}
+				if (inbound.capacity() < Integer.BYTES + length) // frame does not fit
+				{
+					final ByteBuffer tmp = ByteBuffer.allocate(Integer.BYTES + length);
+					tmp.put(inbound);
+					inbound = tmp;
+					if (server.read(inbound) == -1) return null;
+					continue;
+				}
+			}
+			inbound.compact();
+			if (server.read(inbound) == -1) return null;
+		}
+	}
+
+	/**
+	 * Receives a response whose body is a single string following the version of the protocol currently in use.
+	 * @param server cannot be null.
+	 * @param id identifier of the request as returned by sendRequest.
+	 * @return the response received, null if the server has closed the connection.
+	 * @throws IOException Refer to receiveFrame.
+	 */
+	private static Response<String> receiveAnswer(final SocketChannel server, final int id)
+	throws IOException
+	{
+		final byte[] bytes = receiveFrame(server, id);
+		Response<String> r = null;
+
+		if (bytes == null) return null;
+		r = protocol == Protocol.BINARY ? Response.parseBinaryAnswer(bytes) : Response.parseAnswer(new String(bytes, StandardCharsets.US_ASCII));
+		if (r == null) throw new IOException(RESPONSE_FAILURE);
+		return r;
+	}
+
+	/**
+	 * Receives a response whose body is a set of records following the version of the protocol currently in use.
+	 * <br> dest: POST(dest) = PREV(dest) U { records } with { records } denoting the records received written following JSON syntax.
+	 * @param server cannot be null.
+	 * @param id identifier of the request as returned by sendRequest.
+	 * @param dest cannot be null.
+	 * @param verbose toggled on if any output is to be printed out.
+	 * @return 0 on success, 1 on failure, -1 if an error occurs.
+	 * @throws IOException Refer to receiveFrame.
+	 */
+	private static int receiveRecords(final SocketChannel server, final int id, final Set<String> dest, final boolean verbose)
+	throws IOException
+	{
+		final byte[] bytes = receiveFrame(server, id);
+		Response<Set<String>> r = null;
+		Response<String> retry = null;
+
+		if (bytes == null) return -1;
+		r = protocol == Protocol.BINARY ? Response.parseBinaryRecords(bytes) : Response.parseAnswer(bytes);
+		if (r == null || r.code != ResponseCode.OK)
+		{
+			retry = protocol == Protocol.BINARY ? Response.parseBinaryAnswer(bytes) : Response.parseAnswer(new String(bytes, StandardCharsets.US_ASCII));
+			if (retry == null) throw new IOException(RESPONSE_FAILURE);
+			printIf(retry, verbose);
+			return 1;
+		}
+		dest.addAll(r.body);
+		return 0;
+	}
+
 	/**
 	 * Prints on System.out if flag is toggled on.
 	 * @param toPrint response to be printed out
@@ -1,14 +1,20 @@
 package client;
 
+import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.util.HashSet;
 import java.util.Set;
 
+import api.PostPreview;
+import api.Protocol;
 import api.ResponseCode;
+import api.TransactionRecord;
+import api.UserRecord;
 
 /**
  * Utility class used when parsing server's responses. Every response has a structure of this kind:
  * "CODE\r\nBODY" with CODE representing the response code and BODY its body.
+ * Responses sent following the binary protocol are parsed as defined by api.Protocol, their records being turned back into JSON strings.
  * @author Giacomo Trapani
  */
 class Response<T>
@@ -60,7 +66,7 @@ class Response<T>
 		Set<String> body = new HashSet<>();
 
 		// parsing response code:
-		while (true)
+		while (i < bytes.length)
 		{
 			char c = (char) bytes[i];
 			sb.append(c);
@@ -72,6 +78,7 @@ class Response<T>
 				break;
 			}
 		}
+		if (s == null) return null;
 		try { code = Integer.parseInt(s); }
 		catch (NumberFormatException e) { e.printStackTrace(); return null; }
 
@@ -81,6 +88,7 @@ class Response<T>
 			// build the string
 			if (strlen > 0)
 			{
+				if (i + strlen > bytes.length) return null;
 				sb = new StringBuilder();
 				for (int j = 0; j < strlen; j++)
 				{
@@ -95,6 +103,7 @@ class Response<T>
 			else
 			{
 				// convert bytes to following string's length
+				if (i + Integer.BYTES > bytes.length) return null;
 				tmp = new byte[Integer.BYTES];
 				for (int j = 0; j < Integer.BYTES; j++)
 					tmp[j] = bytes[i + j];
@@ -108,4 +117,58 @@ class Response<T>
 		}
 		return new Response<Set<String>>(ResponseCode.fromCode(code), body);
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Static factory method used to parse input bytes following the binary protocol into a valid Response of which the body is a String.
+	 * @param bytes bytes to be parsed, its format must be CONCAT(CODE, MESSAGE, STRING) as defined by api.Protocol.
+	 * @return A new instantiated Response based on input bytes, null if the parsing fails.
+	 */
+	public static Response<String> parseBinaryAnswer(byte[] bytes)
+	{
+		ByteBuffer src = ByteBuffer.wrap(bytes);
+
+		try
+		{
+			int code = Protocol.readVarint(src);
+			if (src.get() != Protocol.MESSAGE) return null;
+			String body = Protocol.readString(src);
+			if (src.hasRemaining()) return null;
+			return new Response<String>(ResponseCode.fromCode(code), body);
+		}
+		catch (BufferUnderflowException | IllegalArgumentException e) { return null; }
+	}
+
+	/**
+	 * Static factory method used to parse input bytes following the binary protocol into a valid Response of which the body is a Set of Strings.
+	 * Every record is turned into the same string the text protocol would have sent, the total of a wallet is followed by "\r\n".
+	 * @param bytes bytes to be parsed, its format must be CONCAT(CODE, KIND, BODY) as defined by api.Protocol with KIND not being MESSAGE.
+	 * @return A new instantiated Response based on input bytes, null if the parsing fails.
+	 */
+	public static Response<Set<String>> parseBinaryRecords(byte[] bytes)
+	{
+		ByteBuffer src = ByteBuffer.wrap(bytes);
+		Set<String> body = new HashSet<>();
+
+		try
+		{
+			int code = Protocol.readVarint(src);
+			int kind = src.get();
+			if (kind == Protocol.WALLET) body.add(Double.toString(Protocol.readDouble(src)) + "\r\n");
+			int n = Protocol.readVarint(src);
+			for (int i = 0; i < n; i++)
+			{
+				switch (kind)
+				{
+					case Protocol.STRINGS: body.add(Protocol.readString(src)); break;
+					case Protocol.USERS: body.add(UserRecord.readFrom(src).toString()); break;
+					case Protocol.POSTS: body.add(PostPreview.readFrom(src).toString()); break;
+					case Protocol.WALLET: body.add(TransactionRecord.readFrom(src).toString()); break;
+					default: return null;
+				}
+			}
+			if (src.hasRemaining()) return null;
+			return new Response<Set<String>>(ResponseCode.fromCode(code), body);
+		}
+		catch (BufferUnderflowException | IllegalArgumentException e) { return null; }
+	}
+}
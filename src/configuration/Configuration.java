@@ -8,6 +8,8 @@ import java.net.InetAddress;
 import java.net.UnknownHostException;
 import java.util.Properties;
 
+import api.Protocol;
+
 /**
  * Class used to parse client-side configuration file.
  * @author Giacomo Trapani.
@@ -21,6 +23,7 @@ public class Configuration
 	private static final String PORTNOREGISTRY_STRING = "REGISTRYPORT";
 	private static final String REGISTERSERVICENAME_STRING = "REGISTERSERVICENAME";
 	private static final String CALLBACKSERVICENAME_STRING = "CALLBACKSERVICENAME";
+	private static final String PROTOCOL_STRING = "PROTOCOL";
 
 	/** Server address. */
 	public final InetAddress serverAddress;
@@ -36,6 +39,8 @@ public class Configuration
 	public final String registerServiceName;
 	/** Name of the service handling callbacks. */
 	public final String callbackServiceName;
+	/** Version of the protocol to be spoken with the server. */
+	public final int protocol;
 	
 	public Configuration(final File configurationFile)
 	throws NullPointerException, FileNotFoundException, IOException, InvalidConfigException
@@ -71,7 +76,17 @@ public class Configuration
 			registryAddressName = properties.getProperty(REGISTRYADDRESS_STRING);
 			registerServiceName = properties.getProperty(REGISTERSERVICENAME_STRING);
 			callbackServiceName = properties.getProperty(CALLBACKSERVICENAME_STRING);
-
+			// validating protocol version (optional, defaults to the text one):
+			if (properties.containsKey(PROTOCOL_STRING))
+			{
+				try
+				{
+					protocol = Integer.parseInt(properties.getProperty(PROTOCOL_STRING));
+					if (protocol != Protocol.TEXT && protocol != Protocol.BINARY) throw new InvalidConfigException("Specified protocol version is not supported.");
+				}
+				catch (NumberFormatException e) { throw new InvalidConfigException(e.getMessage()); }
+			}
+			else protocol = Protocol.TEXT;
 		}
 		else
 			throw new InvalidConfigException("Not all required fields have been specified; it is advised to check" +
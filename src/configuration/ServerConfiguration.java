@@ -6,8 +6,13 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Map;
 import java.util.Properties;
 
+import api.CommandCode;
+
 /**
  * Parser for server configuration file.
  * @author Giacomo Trapani
@@ -29,6 +34,61 @@ public class ServerConfiguration extends Configuration
 	private static final String REWARDSINTERVAL_STRING = "REWARDSINTERVAL";
 	private static final String REWARDSAUTHORPERCENTAGE_STRING = "REWARDSAUTHORPERCENTAGE";
 	private static final String LOGFILE_STRING = "LOGFILE";
+	private static final String SELECTORTHREADS_STRING = "SELECTORTHREADS";
+	private static final String ENGINE_STRING = "ENGINE";
+	private static final String MAXIMUMQUEUESIZE_STRING = "MAXIMUMQUEUESIZE";
+	private static final String QUEUEDEADLINE_STRING = "QUEUEDEADLINE";
+	private static final String QUERYPOOLSIZE_STRING = "QUERYPOOLSIZE";
+	private static final String EXTERNALPOOLSIZE_STRING = "EXTERNALPOOLSIZE";
+	private static final String METRICSINTERVAL_STRING = "METRICSINTERVAL";
+	private static final String SOCKETTIMEOUT_STRING = "SOCKETTIMEOUT";
+	private static final String JOURNAL_STRING = "JOURNAL";
+	private static final String SNAPSHOT_STRING = "SNAPSHOT";
+	/** Prefix of the keys setting the rate limit of a command, it is followed by the name of the command. */
+	private static final String RATELIMIT_PREFIX = "RATELIMIT_";
+	/** Default number of requests waiting for a thread of the pool. */
+	private static final int DEFAULTMAXIMUMQUEUESIZE = 1024;
+	/** Default time (in msec) a request may wait for a thread of the pool. */
+	private static final int DEFAULTQUEUEDEADLINE = 2000;
+	/** Default number of threads handling the requests of the query and external lanes. */
+	private static final int DEFAULTLANEPOOLSIZE = 4;
+	/** Default interval (in msec) between two reports of the lanes' metrics. */
+	private static final int DEFAULTMETRICSINTERVAL = 60000;
+
+	/** Engines TCP connections can be served by. */
+	public enum Engine
+	{
+		/** A few threads run a selector each, requests are handled by a thread pool. */
+		SELECTOR,
+		/**
+		 * Every client is served by its own thread with blocking reads and writes, virtual threads are used if the JVM provides them.
+		 * On older JVMs (e.g. Java 17) each client takes up a platform thread, which does not scale to thousands of clients.
+		 */
+		THREADPERCONNECTION
+	}
+
+	/** Rate a command can be issued at, both by a single user and by a single connection. */
+	public static class RateLimit
+	{
+		/** Maximum number of requests which can be issued in a burst. */
+		public final int burst;
+		/** Number of requests per second which can be issued once the burst is over. */
+		public final double rate;
+
+		/**
+		 * Default constructor.
+		 * @param burst must be greater than zero.
+		 * @param rate must be greater than zero.
+		 * @throws IllegalArgumentException if burst or rate is not greater than zero.
+		 */
+		public RateLimit(final int burst, final double rate)
+		throws IllegalArgumentException
+		{
+			if (burst <= 0 || !(rate > 0)) throw new IllegalArgumentException("Burst and rate must be greater than zero.");
+			this.burst = burst;
+			this.rate = rate;
+		}
+	}
 
 	/** Multicast address. */
 	public final InetAddress multicastAddress;
@@ -60,6 +120,30 @@ public class ServerConfiguration extends Configuration
 	public final double rewardsAuthorPercentage;
 	/** Filename of the file server's log is to be stored in. */
 	public final String logFilename;
+	/** Number of threads handling TCP connections, each one running its own selector. */
+	public final int selectorThreads;
+	/** Engine serving TCP connections. */
+	public final Engine engine;
+	/** Maximum number of requests waiting for a thread of the pool, any other request is rejected. */
+	public final int maximumQueueSize;
+	/** Time (in msec) after which a request still waiting for a thread of the pool is rejected. */
+	public final int queueDeadline;
+	/** Number of threads handling requests going through many users or posts, interactive ones are handled by the main thread pool. */
+	public final int queryPoolSize;
+	/** Number of threads handling requests waiting on services outside of the server. */
+	public final int externalPoolSize;
+	/** Interval (in msec) between two reports of the lanes' metrics. */
+	public final int metricsInterval;
+	/** Time (in msec) without any activity after which a client is disconnected, 0 if clients are never disconnected. */
+	public final int socketTimeout;
+	/** Maps every command which is rate limited to its limit, any other command is not. */
+	public final Map<CommandCode, RateLimit> rateLimits;
+	/** Directory the storages' journals are stored in, null if mutations are not journaled. */
+	public final String journalDirectory;
+	/** Users' binary snapshot, null if storages are backed up according to JSON syntax. */
+	public final String usersSnapshotFilename;
+	/** Posts' binary snapshot, null if storages are backed up according to JSON syntax. */
+	public final String postsSnapshotFilename;
 
 	/**
 	 * @param configurationFile cannot be null. It must follow the syntax specified in the report.
@@ -143,12 +227,78 @@ public class ServerConfiguration extends Configuration
 				if (backupInterval <= 0) throw new InvalidConfigException("Backup interval must be greater than zero.");
 			}
 			catch (NumberFormatException e) { throw new InvalidConfigException(e.getMessage()); }
+			// validating selector threads (optional, defaults to the number of available processors):
+			if (properties.containsKey(SELECTORTHREADS_STRING))
+			{
+				try
+				{
+					selectorThreads = Integer.parseInt(properties.getProperty(SELECTORTHREADS_STRING));
+					if (selectorThreads <= 0) throw new InvalidConfigException("Selector threads must be greater than zero.");
+				}
+				catch (NumberFormatException e) { throw new InvalidConfigException(e.getMessage()); }
+			}
+			else selectorThreads = Runtime.getRuntime().availableProcessors();
+			// validating engine (optional, defaults to the selector one):
+			if (properties.containsKey(ENGINE_STRING))
+			{
+				try { engine = Engine.valueOf(properties.getProperty(ENGINE_STRING).trim().toUpperCase()); }
+				catch (IllegalArgumentException e) { throw new InvalidConfigException("Specified engine is not valid: it must be either SELECTOR or THREADPERCONNECTION."); }
+			}
+			else engine = Engine.SELECTOR;
+			// validating admission queue (optional):
+			try
+			{
+				maximumQueueSize = properties.containsKey(MAXIMUMQUEUESIZE_STRING) ?
+					Integer.parseInt(properties.getProperty(MAXIMUMQUEUESIZE_STRING)) : DEFAULTMAXIMUMQUEUESIZE;
+				if (maximumQueueSize <= 0) throw new InvalidConfigException("Maximum queue size must be greater than zero.");
+				queueDeadline = properties.containsKey(QUEUEDEADLINE_STRING) ?
+					Integer.parseInt(properties.getProperty(QUEUEDEADLINE_STRING)) : DEFAULTQUEUEDEADLINE;
+				if (queueDeadline <= 0) throw new InvalidConfigException("Queue deadline must be greater than zero.");
+			}
+			catch (NumberFormatException e) { throw new InvalidConfigException(e.getMessage()); }
+			// validating lanes (optional):
+			try
+			{
+				queryPoolSize = properties.containsKey(QUERYPOOLSIZE_STRING) ?
+					Integer.parseInt(properties.getProperty(QUERYPOOLSIZE_STRING)) : DEFAULTLANEPOOLSIZE;
+				externalPoolSize = properties.containsKey(EXTERNALPOOLSIZE_STRING) ?
+					Integer.parseInt(properties.getProperty(EXTERNALPOOLSIZE_STRING)) : DEFAULTLANEPOOLSIZE;
+				if (queryPoolSize <= 0 || externalPoolSize <= 0) throw new InvalidConfigException("Lanes' pool sizes must be greater than zero.");
+				metricsInterval = properties.containsKey(METRICSINTERVAL_STRING) ?
+					Integer.parseInt(properties.getProperty(METRICSINTERVAL_STRING)) : DEFAULTMETRICSINTERVAL;
+				if (metricsInterval <= 0) throw new InvalidConfigException("Metrics interval must be greater than zero.");
+			}
+			catch (NumberFormatException e) { throw new InvalidConfigException(e.getMessage()); }
+			// validating socket timeout (optional, clients are never disconnected if it is missing or 0):
+			try
+			{
+				socketTimeout = properties.containsKey(SOCKETTIMEOUT_STRING) ? Integer.parseInt(properties.getProperty(SOCKETTIMEOUT_STRING)) : 0;
+				if (socketTimeout < 0) throw new InvalidConfigException("Socket timeout cannot be negative.");
+			}
+			catch (NumberFormatException e) { throw new InvalidConfigException(e.getMessage()); }
+			// validating rate limits (optional, following the syntax RATELIMIT_<COMMAND>=<burst>,<requests per second>):
+			final Map<CommandCode, RateLimit> limits = new EnumMap<>(CommandCode.class);
+			for (CommandCode c : CommandCode.values())
+			{
+				final String limit = properties.getProperty(RATELIMIT_PREFIX + c.name());
+				if (limit == null) continue;
+				final String[] parts = limit.split(",");
+				if (parts.length != 2) throw new InvalidConfigException(String.format("Rate limit of %s must be written as <burst>,<requests per second>.", c.name()));
+				try { limits.put(c, new RateLimit(Integer.parseInt(parts[0].trim()), Double.parseDouble(parts[1].trim()))); }
+				catch (IllegalArgumentException e) { throw new InvalidConfigException(String.format("Rate limit of %s is not valid: %s", c.name(), e.getMessage())); }
+			}
+			rateLimits = Collections.unmodifiableMap(limits);
 			userStorageFilename = properties.getProperty(USERSTORAGE_STRING);
 			followingStorageFilename = properties.getProperty(FOLLOWINGSTORAGE_STRING);
 			transactionsFilename = properties.getProperty(TRANSACTIONSSTORAGE_STRING);
 			postStorageFilename = properties.getProperty(POSTSSTORAGE_STRING);
 			postsInteractionsStorageFilename = properties.getProperty(POSTSINTERACTIONSSTORAGE_STRING);
 			logFilename = properties.getProperty(LOGFILE_STRING);
+			journalDirectory = properties.getProperty(JOURNAL_STRING); // optional, mutations are not journaled if it is missing
+			// optional, storages are backed up according to JSON syntax if it is missing:
+			final String snapshotDirectory = properties.getProperty(SNAPSHOT_STRING);
+			usersSnapshotFilename = snapshotDirectory == null ? null : new File(snapshotDirectory, "users.snapshot").getPath();
+			postsSnapshotFilename = snapshotDirectory == null ? null : new File(snapshotDirectory, "posts.snapshot").getPath();
 			return;
 		}
 		else
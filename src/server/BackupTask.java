@@ -30,6 +30,10 @@ public class BackupTask implements Runnable
 	private final File postsImmutableFile;
 	/** Posts' mutable data backup file. */
 	private final File postsReactionsFile;
+	/** Users' binary snapshot, null if storages are backed up according to JSON syntax. */
+	private final File usersSnapshotFile;
+	/** Posts' binary snapshot, null if storages are backed up according to JSON syntax. */
+	private final File postsSnapshotFile;
 
 	/** Part of the exception message when NPE is thrown. */
 	private static final String NULL_ERROR = " cannot be null.";
@@ -52,6 +56,8 @@ public class BackupTask implements Runnable
 		this.transactionsFile = new File(configuration.transactionsFilename);
 		this.postsImmutableFile = new File(configuration.postStorageFilename);
 		this.postsReactionsFile = new File(configuration.postsInteractionsStorageFilename);
+		this.usersSnapshotFile = configuration.usersSnapshotFilename == null ? null : new File(configuration.usersSnapshotFilename);
+		this.postsSnapshotFile = configuration.postsSnapshotFilename == null ? null : new File(configuration.postsSnapshotFilename);
 		this.sleepingTime = configuration.backupInterval;
 		this.users = users;
 		this.posts = posts;
@@ -66,8 +72,16 @@ public class BackupTask implements Runnable
 			catch (InterruptedException shouldTerminate) { return; }
 			try
 			{
-				users.backupUsers(usersFile, followingFile, transactionsFile);
-				posts.backupPosts(postsImmutableFile, postsReactionsFile);
+				if (usersSnapshotFile != null)
+				{
+					users.snapshotUsers(usersSnapshotFile);
+					posts.snapshotPosts(postsSnapshotFile);
+				}
+				else
+				{
+					users.backupUsers(usersFile, followingFile, transactionsFile);
+					posts.backupPosts(postsImmutableFile, postsReactionsFile);
+				}
 			}
 			catch (IOException e)
 			{
@@ -0,0 +1,41 @@
+package server;
+
+import api.CommandCode;
+
+/**
+ * Enum used to represent the classes requests are split into when scheduled: each one is handled by its own thread pool,
+ * so that slow requests cannot starve the quick ones.
+ * @author Giacomo Trapani.
+ */
+public enum Lane
+{
+	/** Quick requests users are waiting on interactively, e.g. rating a post or logging out. */
+	INTERACTIVE,
+	/** Requests going through many users or posts, e.g. building up a feed. */
+	QUERY,
+	/** Requests waiting on services outside of the server, e.g. fetching the exchange rate. */
+	EXTERNAL;
+
+	/**
+	 * Method used to find the lane a command is to be handled in.
+	 * @param command null denotes a request which could not be parsed.
+	 * @return the lane command is to be handled in, INTERACTIVE if command is null.
+	 */
+	public static Lane of(final CommandCode command)
+	{
+		if (command == null) return INTERACTIVE;
+		switch (command)
+		{
+			case SHOWFEED:
+			case LISTUSERS:
+			case VIEWBLOG:
+				return QUERY;
+
+			case WALLETBTC:
+				return EXTERNAL;
+
+			default:
+				return INTERACTIVE;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package server;
+
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Class used to wrap together the bounded thread pool handling the requests of a single lane and the metrics describing it.
+ * @author Giacomo Trapani.
+ */
+public class LaneExecutor
+{
+	/** Lane this executor handles the requests of. */
+	public final Lane lane;
+	/** Thread pool requests are handled by. */
+	private final ThreadPoolExecutor pool;
+	/** Number of requests which have been picked up by a thread of the pool. */
+	private final LongAdder started = new LongAdder();
+	/** Sum of the times (in nsec) requests have waited for a thread of the pool. */
+	private final LongAdder totalWait = new LongAdder();
+	/** Longest time (in nsec) a request has waited for a thread of the pool since the last report. */
+	private final AtomicLong maximumWait = new AtomicLong();
+	/** Number of requests which have been rejected, either because the queue was full or they waited for too long. */
+	private final LongAdder rejected = new LongAdder();
+
+	/**
+	 * Default constructor.
+	 * @param lane cannot be null.
+	 * @param corePoolSize refer to ThreadPoolExecutor.
+	 * @param maximumPoolSize refer to ThreadPoolExecutor.
+	 * @param keepAliveTime time (in msec) idle threads above the core ones are kept alive for.
+	 * @param maximumQueueSize maximum number of requests waiting for a thread of the pool, must be greater than zero.
+	 * @throws IllegalArgumentException refer to ThreadPoolExecutor and ArrayBlockingQueue constructors.
+	 * @throws NullPointerException if lane is null.
+	 */
+	public LaneExecutor(final Lane lane, final int corePoolSize, final int maximumPoolSize, final int keepAliveTime, final int maximumQueueSize)
+	throws IllegalArgumentException, NullPointerException
+	{
+		this.lane = Objects.requireNonNull(lane, "Lane cannot be null.");
+		this.pool = new ThreadPoolExecutor(corePoolSize, maximumPoolSize, keepAliveTime, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(maximumQueueSize));
+	}
+
+	/**
+	 * Hands a request to the thread pool.
+	 * @param task cannot be null.
+	 * @throws RejectedExecutionException if the queue is full or the executor has been shut down.
+	 * @throws NullPointerException if task is null.
+	 */
+	public void execute(final Runnable task)
+	throws RejectedExecutionException, NullPointerException
+	{
+		pool.execute(task);
+	}
+
+	/**
+	 * Records the time a request has waited for a thread of the pool, it is to be invoked as soon as the request is picked up.
+	 * @param nanos time waited in nsec.
+	 */
+	public void recordWait(final long nanos)
+	{
+		started.increment();
+		totalWait.add(nanos);
+		maximumWait.accumulateAndGet(nanos, Math::max);
+	}
+
+	/** Records a request which has been rejected. */
+	public void recordRejection()
+	{
+		rejected.increment();
+	}
+
+	/** Returns the number of requests currently waiting for a thread of the pool. */
+	public int getQueueDepth()
+	{
+		return pool.getQueue().size();
+	}
+
+	/**
+	 * Builds up a report of the metrics gathered since the previous one, resetting them.
+	 * @return the report as a single line following the syntax of the log.
+	 */
+	public String report()
+	{
+		final long n = started.sumThenReset();
+		final long total = totalWait.sumThenReset();
+		final long maximum = maximumWait.getAndSet(0);
+
+		return String.format("[LANE %s][QUEUE %d][ACTIVE %d][STARTED %d][WAIT AVG %.3f ms MAX %.3f ms][REJECTED %d]\n", lane, getQueueDepth(),
+				pool.getActiveCount(), n, n == 0 ? 0.0 : total / (n * 1e6), maximum / 1e6, rejected.sumThenReset());
+	}
+
+	/**
+	 * Shuts down the thread pool, waiting for the requests already admitted to be handled.
+	 * @param timeout time (in msec) to wait for before interrupting the threads still running.
+	 */
+	public void shutdown(final long timeout)
+	{
+		pool.shutdown();
+		try
+		{
+			if (!pool.awaitTermination(timeout, TimeUnit.MILLISECONDS))
+				pool.shutdownNow();
+		}
+		catch (InterruptedException e) { pool.shutdownNow(); }
+	}
+}
@@ -0,0 +1,176 @@
+package server.command;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Objects;
+
+import api.Encodable;
+import api.PostPreview;
+import api.Protocol;
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+
+/**
+ * Package private abstract class defining the methods shared by every command handler to build up responses.
+ * Every response is built following the version of the protocol the request has been sent with.
+ * @author Giacomo Trapani.
+ */
+abstract class BaseHandler implements CommandHandler
+{
+	/** Message sent back whenever a client tries to login twice. */
+	protected static final String CLIENT_ALREADY_LOGGED_IN = "Client has already logged in";
+
+	/** Pointer to the state shared by every handler. */
+	protected final CommandContext context;
+
+	/**
+	 * Default constructor.
+	 * @param context cannot be null.
+	 * @throws NullPointerException if context is null.
+	 */
+	protected BaseHandler(final CommandContext context)
+	throws NullPointerException
+	{
+		this.context = Objects.requireNonNull(context, "Context cannot be null.");
+	}
+
+	/**
+	 * Appends to response code followed by body.
+	 * @param request cannot be null.
+	 * @param response cannot be null.
+	 * @param code cannot be null.
+	 * @param body null is treated as an empty body.
+	 * @return code.
+	 */
+	protected static ResponseCode reply(final Request request, final ResponseBuilder response, final ResponseCode code, final String body)
+	{
+		if (request.protocol == Protocol.BINARY)
+		{
+			try
+			{
+				Protocol.writeVarint(response, code.getValue());
+				response.write(Protocol.MESSAGE);
+				Protocol.writeString(response, body == null ? "" : body);
+			}
+			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+			return code;
+		}
+		response.putASCII(code.getDescription());
+		if (body != null) response.putASCII(body);
+		return code;
+	}
+
+	/**
+	 * Appends to response code followed by the records in body. Speaking the text protocol, they are appended following
+	 * the syntax CONCAT(LENGTH, ITEM) with ITEM denoting the record as a string and LENGTH its length when converted to byte array.
+	 * Speaking the binary protocol, kind and the number of records are appended followed by the records.
+	 * @param request cannot be null.
+	 * @param response cannot be null.
+	 * @param code cannot be null.
+	 * @param kind kind of the records as defined by Protocol.
+	 * @param body cannot be null.
+	 * @return code.
+	 */
+	protected static ResponseCode replyWithRecords(final Request request, final ResponseBuilder response, final ResponseCode code,
+			final int kind, final Collection<? extends Encodable> body)
+	{
+		if (request.protocol == Protocol.BINARY)
+		{
+			try
+			{
+				Protocol.writeVarint(response, code.getValue());
+				response.write(kind);
+				Protocol.writeVarint(response, body.size());
+				for (Encodable item : body)
+					item.writeTo(response);
+			}
+			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+			return code;
+		}
+		response.putASCII(code.getDescription());
+		for (Encodable item : body)
+			response.putRecord(item.toString());
+		return code;
+	}
+
+	/**
+	 * Appends to response code followed by a page of posts. Unless the client has asked for a limit, it is the same as replyWithRecords.
+	 * Otherwise the records are followed by the cursor to be sent to get the next page, which is empty if this is the last one:
+	 * speaking the text protocol, it is appended as the record { "cursor": CURSOR }, speaking the binary protocol as a string.
+	 * @param request cannot be null.
+	 * @param response cannot be null.
+	 * @param code cannot be null.
+	 * @param page cannot be null, it is expected to hold at most limit posts from the newest.
+	 * @param limit limit the page has been built with.
+	 * @return code.
+	 */
+	protected static ResponseCode replyWithPage(final Request request, final ResponseBuilder response, final ResponseCode code,
+			final List<PostPreview> page, final int limit)
+	{
+		replyWithRecords(request, response, code, Protocol.POSTS, page);
+		if (request.get(RequestField.LIMIT) == null) return code;
+		// a short page is the last one, a full one may or may not be:
+		final String cursor = page.size() < limit ? "" : encodeCursor(page.get(page.size() - 1).id);
+		if (request.protocol == Protocol.BINARY)
+		{
+			try { Protocol.writeString(response, cursor); }
+			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+		}
+		else response.putRecord(String.format("{ \"%s\": \"%s\" }", RequestField.CURSOR.name, cursor));
+		return code;
+	}
+
+	/**
+	 * Parses the limit of a listing.
+	 * @param request cannot be null.
+	 * @return the limit asked for, Integer.MAX_VALUE if the client has not asked for one.
+	 * @throws IllegalArgumentException if the limit is not a number greater than zero.
+	 */
+	protected static int parseLimit(final Request request)
+	throws IllegalArgumentException
+	{
+		final String limit = request.get(RequestField.LIMIT);
+		if (limit == null) return Integer.MAX_VALUE;
+		final int r = Integer.parseInt(limit);
+		if (r <= 0) throw new IllegalArgumentException("Limit must be greater than zero.");
+		return r;
+	}
+
+	/**
+	 * Parses the cursor of a listing.
+	 * @param request cannot be null.
+	 * @return the ID every post listed is to be lower than, Integer.MAX_VALUE if the client has not sent a cursor.
+	 * @throws IllegalArgumentException if the cursor is not valid.
+	 */
+	protected static int parseCursor(final Request request)
+	throws IllegalArgumentException
+	{
+		final String cursor = request.get(RequestField.CURSOR);
+		if (cursor == null || cursor.isEmpty()) return Integer.MAX_VALUE;
+		final byte[] bytes = Base64.getUrlDecoder().decode(cursor);
+		if (bytes.length != Integer.BYTES) throw new IllegalArgumentException("Invalid cursor.");
+		return ByteBuffer.wrap(bytes).getInt();
+	}
+
+	/** Encodes the ID of the last post of a page as an opaque cursor. */
+	private static String encodeCursor(final int id)
+	{
+		return Base64.getUrlEncoder().withoutPadding().encodeToString(ByteBuffer.allocate(Integer.BYTES).putInt(id).array());
+	}
+
+	/** Handles syntax errors. */
+	protected static ResponseCode syntaxError(final Request request, final ResponseBuilder response)
+	{
+		return reply(request, response, ResponseCode.BAD_REQUEST, "Syntax error.");
+	}
+
+	/** Handles username's errors. */
+	protected static ResponseCode notLoggedIn(final Request request, final ResponseBuilder response, final String username)
+	{
+		return reply(request, response, ResponseCode.NOT_FOUND, String.format("User %s is not logged in with this client", username));
+	}
+}
@@ -0,0 +1,45 @@
+package server.command;
+
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Objects;
+
+import server.RMICallbackService;
+import server.storage.PostStorage;
+import server.storage.UserStorage;
+
+/**
+ * Class used to group together the state shared by every command handler.
+ * @author Giacomo Trapani.
+ */
+public class CommandContext
+{
+	/** Part of the error message when NPE is thrown. */
+	private static final String NULL_ERROR = " cannot be null.";
+
+	/** Pointer to user storage. */
+	public final UserStorage users;
+	/** Pointer to post storage. */
+	public final PostStorage posts;
+	/** Pointer to the map storing the couples (client, username they have logged in with). */
+	public final Map<SocketChannel, String> loggedInClients;
+	/** Pointer to the RMI callback service. */
+	public final RMICallbackService callbackService;
+	/** Multicast address and port written following JSON syntax. */
+	public final String multicastInfo;
+
+	/**
+	 * Default constructor.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public CommandContext(final UserStorage users, final PostStorage posts, final Map<SocketChannel, String> loggedInClients,
+			final RMICallbackService callbackService, final String multicastInfo)
+	throws NullPointerException
+	{
+		this.users = Objects.requireNonNull(users, "Users storage" + NULL_ERROR);
+		this.posts = Objects.requireNonNull(posts, "Posts storage" + NULL_ERROR);
+		this.loggedInClients = Objects.requireNonNull(loggedInClients, "Logged in clients" + NULL_ERROR);
+		this.callbackService = Objects.requireNonNull(callbackService, "Callback service" + NULL_ERROR);
+		this.multicastInfo = Objects.requireNonNull(multicastInfo, "Multicast info" + NULL_ERROR);
+	}
+}
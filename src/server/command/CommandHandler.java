@@ -0,0 +1,20 @@
+package server.command;
+
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+
+/**
+ * Interface defining the logic to be run to handle a single command.
+ * Implementations are to be thread-safe: the same handler is shared by every worker.
+ * @author Giacomo Trapani.
+ */
+public interface CommandHandler
+{
+	/**
+	 * Handles a request, appending the response to be sent back to the client.
+	 * @param request cannot be null.
+	 * @param response cannot be null. It will be appended the response code description followed by the body.
+	 * @return the code the response has been built with.
+	 */
+	public ResponseCode handle(final Request request, final ResponseBuilder response);
+}
@@ -0,0 +1,102 @@
+package server.command;
+
+import java.nio.channels.SocketChannel;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Objects;
+
+import api.CommandCode;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+
+/**
+ * Class used to map every command to the handler in charge of it, so that dispatching a request
+ * costs a single lookup instead of comparing its command against every known one.
+ * @author Giacomo Trapani.
+ */
+public class CommandRegistry
+{
+	/** Used to map every command to its handler. */
+	private final Map<CommandCode, CommandHandler> handlers = new EnumMap<>(CommandCode.class);
+	/** Used to throttle clients issuing commands too fast, before they get to any handler. */
+	private final RateLimiter limiter;
+
+	/**
+	 * Default constructor.
+	 * @param context state shared by every handler, cannot be null.
+	 * @param limiter cannot be null.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public CommandRegistry(final CommandContext context, final RateLimiter limiter)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(context, "Context cannot be null.");
+		this.limiter = Objects.requireNonNull(limiter, "Limiter cannot be null.");
+		handlers.put(CommandCode.LOGINSETUP, new LoginSetupHandler(context));
+		handlers.put(CommandCode.LOGINATTEMPT, new LoginHandler(context));
+		handlers.put(CommandCode.PULLFOLLOWERS, new PullFollowersHandler(context));
+		handlers.put(CommandCode.RETRIEVEMULTICAST, new RetrieveMulticastHandler(context));
+		handlers.put(CommandCode.LOGOUT, new LogoutHandler(context));
+		handlers.put(CommandCode.LISTUSERS, new ListUsersHandler(context));
+		handlers.put(CommandCode.LISTFOLLOWING, new ListFollowingHandler(context));
+		handlers.put(CommandCode.FOLLOWUSER, new FollowHandler(context));
+		handlers.put(CommandCode.UNFOLLOWUSER, new UnfollowHandler(context));
+		handlers.put(CommandCode.VIEWBLOG, new ViewBlogHandler(context));
+		handlers.put(CommandCode.CREATEPOST, new CreatePostHandler(context));
+		handlers.put(CommandCode.SHOWFEED, new ShowFeedHandler(context));
+		handlers.put(CommandCode.SHOWPOST, new ShowPostHandler(context));
+		handlers.put(CommandCode.DELETEPOST, new DeletePostHandler(context));
+		handlers.put(CommandCode.REWIN, new RewinHandler(context));
+		handlers.put(CommandCode.COMMENT, new CommentHandler(context));
+		handlers.put(CommandCode.RATE, new RateHandler(context));
+		handlers.put(CommandCode.WALLET, new WalletHandler(context));
+		handlers.put(CommandCode.WALLETBTC, new WalletBTCHandler(context));
+		handlers.put(CommandCode.PROTOCOL, new ProtocolHandler(context));
+	}
+
+	/**
+	 * Hands a request to the handler of its command, unless its client or user has exceeded the rate limit of the command.
+	 * @param request request to be handled, cannot be null. A null command denotes a request which could not be parsed.
+	 * @param response used to build up the response, cannot be null.
+	 * @return the code of the response built.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public ResponseCode dispatch(final Request request, final ResponseBuilder response)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(request, "Request cannot be null.");
+		Objects.requireNonNull(response, "Response cannot be null.");
+		final CommandCode command = request.getCommand();
+		final CommandHandler handler = command == null ? null : handlers.get(command);
+		if (handler == null) return BaseHandler.syntaxError(request, response);
+		if (!limiter.tryAcquire(request.client, request.loggedInUsername, command))
+			return BaseHandler.reply(request, response, ResponseCode.TOO_MANY_REQUESTS, "Too many requests: slow down.");
+		return handler.handle(request, response);
+	}
+
+	/**
+	 * Forgets about any state kept for a client, it is to be invoked once it has disconnected.
+	 * @param client cannot be null.
+	 * @throws NullPointerException if client is null.
+	 */
+	public void disconnected(final SocketChannel client)
+	throws NullPointerException
+	{
+		limiter.forget(client);
+	}
+
+	/**
+	 * Rejects a request without handing it to any handler, as the server is overloaded.
+	 * @param request request to be rejected, cannot be null.
+	 * @param response used to build up the response, cannot be null.
+	 * @return the code of the response built, i.e. SERVICE_UNAVAILABLE.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public ResponseCode reject(final Request request, final ResponseBuilder response)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(request, "Request cannot be null.");
+		Objects.requireNonNull(response, "Response cannot be null.");
+		return BaseHandler.reply(request, response, ResponseCode.SERVICE_UNAVAILABLE, "Server is overloaded: try again later.");
+	}
+}
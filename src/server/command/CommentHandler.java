@@ -0,0 +1,33 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.post.InvalidCommentException;
+import server.storage.NoSuchPostException;
+
+/**
+ * Handles COMMENT: has the caller add a comment to a post on its feed.
+ * @author Giacomo Trapani.
+ */
+class CommentHandler extends BaseHandler
+{
+	CommentHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		final String contents = request.get(RequestField.CONTENTS);
+		final String postID = request.get(RequestField.POSTID);
+		if (username == null || contents == null || postID == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try { context.posts.handleAddComment(username, context.users, Integer.parseInt(postID), contents); }
+		catch (NumberFormatException e) { return syntaxError(request, response); }
+		catch (InvalidCommentException | NoSuchPostException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		return reply(request, response, ResponseCode.OK, "Comment has now been added.");
+	}
+}
@@ -0,0 +1,34 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.post.InvalidGeneratorException;
+import server.post.InvalidPostException;
+
+/**
+ * Handles CREATEPOST: adds a new post authored by the caller.
+ * @author Giacomo Trapani.
+ */
+class CreatePostHandler extends BaseHandler
+{
+	CreatePostHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.AUTHOR);
+		final String title = request.get(RequestField.TITLE);
+		final String contents = request.get(RequestField.CONTENTS);
+		if (username == null || title == null || contents == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		int postID = -1;
+		try { postID = context.posts.handleCreatePost(username, context.users, title, contents); }
+		catch (InvalidPostException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		catch (InvalidGeneratorException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+		return reply(request, response, ResponseCode.OK, username + " has now created a new post: " + postID);
+	}
+}
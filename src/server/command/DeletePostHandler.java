@@ -0,0 +1,34 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchPostException;
+
+/**
+ * Handles DELETEPOST: deletes a post authored by the caller.
+ * @author Giacomo Trapani.
+ */
+class DeletePostHandler extends BaseHandler
+{
+	DeletePostHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		final String postID = request.get(RequestField.POSTID);
+		if (username == null || postID == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try
+		{
+			if (context.posts.handleDeletePost(username, Integer.parseInt(postID))) return reply(request, response, ResponseCode.OK, "Post has now been deleted.");
+			else return reply(request, response, ResponseCode.FORBIDDEN, "Post could not be deleted.");
+		}
+		catch (NumberFormatException e) { return syntaxError(request, response); }
+		catch (NoSuchPostException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+	}
+}
@@ -0,0 +1,39 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+import server.user.SameUserException;
+
+/**
+ * Handles FOLLOWUSER: has the caller start following another user, who is notified via RMI callback.
+ * @author Giacomo Trapani.
+ */
+class FollowHandler extends BaseHandler
+{
+	FollowHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.FOLLOWER);
+		final String followed = request.get(RequestField.FOLLOWED);
+		if (username == null || followed == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try
+		{
+			if (!context.users.handleFollowUser(username, followed))
+				return reply(request, response, ResponseCode.FORBIDDEN, username + " is already following " + followed);
+		}
+		catch (IllegalArgumentException | NoSuchUserException | SameUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		// the storages are updated one at a time, so that neither of them is locked while waiting for the other one:
+		context.posts.updateFeedOnFollow(username, followed);
+		try { context.callbackService.notifyNewFollower(context.users.getUserRecord(username).toString(), followed); }
+		catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+		return reply(request, response, ResponseCode.OK, username + " is now following " + followed);
+	}
+}
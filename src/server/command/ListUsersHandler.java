@@ -0,0 +1,29 @@
+package server.command;
+
+import api.Protocol;
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+
+/**
+ * Handles LISTUSERS: sends back the users sharing at least an interest with the caller.
+ * @author Giacomo Trapani.
+ */
+class ListUsersHandler extends BaseHandler
+{
+	ListUsersHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try { return replyWithRecords(request, response, ResponseCode.OK, Protocol.USERS, context.users.handleListUsers(username)); }
+		catch (NoSuchUserException e) { return reply(request, response, ResponseCode.BAD_REQUEST, e.getMessage()); }
+	}
+}
@@ -0,0 +1,34 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+import server.user.InvalidLoginException;
+import server.user.WrongCredentialsException;
+
+/**
+ * Handles LOGINATTEMPT: logs the client in with the given credentials.
+ * @author Giacomo Trapani.
+ */
+class LoginHandler extends BaseHandler
+{
+	LoginHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		if (context.loggedInClients.containsKey(request.client)) return reply(request, response, ResponseCode.FORBIDDEN, CLIENT_ALREADY_LOGGED_IN);
+		final String username = request.get(RequestField.USERNAME);
+		final String hashedPassword = request.get(RequestField.HASHEDPASSWORD);
+		if (username == null || hashedPassword == null) return syntaxError(request, response);
+
+		try { context.users.handleLogin(username, request.client, hashedPassword); }
+		catch (InvalidLoginException | WrongCredentialsException | NoSuchUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		catch (NullPointerException e) { return reply(request, response, ResponseCode.BAD_REQUEST, null); }
+		context.loggedInClients.put(request.client, username);
+		return reply(request, response, ResponseCode.OK, username + " has now logged in.");
+	}
+}
@@ -0,0 +1,28 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+
+/**
+ * Handles LOGINSETUP: sends back the salt used to hash the password of the given user.
+ * @author Giacomo Trapani.
+ */
+class LoginSetupHandler extends BaseHandler
+{
+	LoginSetupHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		if (context.loggedInClients.containsKey(request.client)) return reply(request, response, ResponseCode.FORBIDDEN, CLIENT_ALREADY_LOGGED_IN);
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+
+		try { return reply(request, response, ResponseCode.OK, context.users.handleLoginSetup(username)); }
+		catch (NoSuchUserException e) { return reply(request, response, ResponseCode.NOT_FOUND, e.getMessage()); }
+	}
+}
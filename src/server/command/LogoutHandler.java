@@ -0,0 +1,31 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+import server.user.InvalidLogoutException;
+
+/**
+ * Handles LOGOUT: logs the client out.
+ * @author Giacomo Trapani.
+ */
+class LogoutHandler extends BaseHandler
+{
+	LogoutHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try { context.users.handleLogout(username, request.client); }
+		catch (InvalidLogoutException | NoSuchUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		context.loggedInClients.remove(request.client);
+		return reply(request, response, ResponseCode.OK, username + " has now logged out");
+	}
+}
@@ -0,0 +1,33 @@
+package server.command;
+
+import api.Protocol;
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+
+/**
+ * Handles PROTOCOL: has the connection switch to another version of the protocol once the response has been sent.
+ * The response itself follows the version the request has been sent with.
+ * @author Giacomo Trapani.
+ */
+class ProtocolHandler extends BaseHandler
+{
+	ProtocolHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String version = request.get(RequestField.VERSION);
+		if (version == null) return syntaxError(request, response);
+
+		final int protocol;
+		try { protocol = Integer.parseInt(version); }
+		catch (NumberFormatException e) { return syntaxError(request, response); }
+		if (protocol != Protocol.TEXT && protocol != Protocol.BINARY)
+			return reply(request, response, ResponseCode.FORBIDDEN, String.format("Protocol version %d is not supported.", protocol));
+		request.nextProtocol = protocol;
+		return reply(request, response, ResponseCode.OK, String.format("Protocol version %d is now in use.", protocol));
+	}
+}
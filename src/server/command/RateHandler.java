@@ -0,0 +1,34 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.post.InvalidVoteException;
+import server.post.Post.Vote;
+import server.storage.NoSuchPostException;
+
+/**
+ * Handles RATE: has the caller cast a vote on a post on its feed.
+ * @author Giacomo Trapani.
+ */
+class RateHandler extends BaseHandler
+{
+	RateHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		final String vote = request.get(RequestField.VOTE);
+		final String postID = request.get(RequestField.POSTID);
+		if (username == null || vote == null || postID == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try { context.posts.handleRate(username, context.users, Integer.parseInt(postID), Vote.fromValue(Integer.parseInt(vote))); }
+		catch (NumberFormatException e) { return syntaxError(request, response); }
+		catch (NoSuchPostException | InvalidVoteException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		return reply(request, response, ResponseCode.OK, "Vote has now been cast.");
+	}
+}
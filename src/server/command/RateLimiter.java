@@ -0,0 +1,114 @@
+package server.command;
+
+import java.nio.channels.SocketChannel;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+
+import api.CommandCode;
+import configuration.ServerConfiguration.RateLimit;
+
+/**
+ * Class used to limit the rate commands can be issued at, both by every user and by every connection, so that a single client
+ * cannot keep the storages busy. Each of them owns a token bucket for every command which is rate limited.
+ * @author Giacomo Trapani.
+ */
+public class RateLimiter
+{
+	/** Limits indexed by the ordinal of their command, null if the command is not rate limited. */
+	private final RateLimit[] limits = new RateLimit[CommandCode.values().length];
+	/** Toggled on if at least one command is rate limited. */
+	private final boolean enabled;
+	/** Maps the username of every user who has issued a rate limited command to their buckets. */
+	private final Map<String, TokenBucket[]> byUser = new ConcurrentHashMap<>();
+	/** Maps every connected client which has issued a rate limited command to its buckets. */
+	private final Map<SocketChannel, TokenBucket[]> byConnection = new ConcurrentHashMap<>();
+	/** Time (in msec) it takes to fill up the slowest bucket: the buckets of a user who has been idle for as long are full again. */
+	private final long sweepInterval;
+
+	/**
+	 * Default constructor.
+	 * @param limits cannot be null, it maps every command which is to be rate limited to its limit.
+	 * @throws NullPointerException if limits is null.
+	 */
+	public RateLimiter(final Map<CommandCode, RateLimit> limits)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(limits, "Limits cannot be null.");
+		long interval = 0;
+		for (Map.Entry<CommandCode, RateLimit> e : limits.entrySet())
+		{
+			this.limits[e.getKey().ordinal()] = e.getValue();
+			interval = Math.max(interval, (long) Math.ceil(e.getValue().burst * 1e3 / e.getValue().rate));
+		}
+		this.enabled = !limits.isEmpty();
+		this.sweepInterval = Math.max(1, interval);
+	}
+
+	/**
+	 * Takes a token out of the buckets of both the client and the user it is logged in with.
+	 * @param client cannot be null.
+	 * @param loggedInUsername username of the user the client is logged in with, null if it is not logged in.
+	 * @param command null denotes a request which could not be parsed, it is never rate limited.
+	 * @return true if the request can be handled, false if it is to be throttled.
+	 * @throws NullPointerException if client is null.
+	 */
+	public boolean tryAcquire(final SocketChannel client, final String loggedInUsername, final CommandCode command)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(client, "Client cannot be null.");
+		if (!enabled || command == null) return true;
+		final int i = command.ordinal();
+		if (limits[i] == null) return true;
+		if (!byConnection.computeIfAbsent(client, c -> newBuckets())[i].tryAcquire()) return false;
+		// users keep their buckets across connections, so that logging in again does not refill them:
+		return loggedInUsername == null || byUser.computeIfAbsent(loggedInUsername, u -> newBuckets())[i].tryAcquire();
+	}
+
+	/**
+	 * Forgets about the buckets of a client, it is to be invoked once it has disconnected.
+	 * @param client cannot be null.
+	 * @throws NullPointerException if client is null.
+	 */
+	public void forget(final SocketChannel client)
+	throws NullPointerException
+	{
+		byConnection.remove(Objects.requireNonNull(client, "Client cannot be null."));
+	}
+
+	/** Returns true if at least one command is rate limited. */
+	public boolean isEnabled()
+	{
+		return enabled;
+	}
+
+	/** Returns the time (in msec) sweep is to be invoked every, i.e. the time it takes to fill up the slowest bucket. */
+	public long getSweepInterval()
+	{
+		return sweepInterval;
+	}
+
+	/**
+	 * Evicts the buckets of the users whose buckets are all full, as building them up again makes no difference: users who have
+	 * stopped issuing commands are not kept track of forever. It is to be invoked periodically by a thread which is not handling requests.
+	 * A thread which has just looked up evicted buckets may still take a token out of them, granting one more.
+	 */
+	public void sweep()
+	{
+		byUser.values().removeIf(buckets ->
+		{
+			for (TokenBucket b : buckets)
+				if (b != null && !b.isFull()) return false;
+			return true;
+		});
+	}
+
+	/** Builds up a full bucket for every command which is rate limited. */
+	private TokenBucket[] newBuckets()
+	{
+		final TokenBucket[] buckets = new TokenBucket[limits.length];
+		for (int i = 0; i < limits.length; i++)
+			if (limits[i] != null) buckets[i] = new TokenBucket(limits[i].burst, limits[i].rate);
+		return buckets;
+	}
+}
@@ -0,0 +1,150 @@
+package server.command;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.Objects;
+
+import api.CommandCode;
+import api.Protocol;
+import api.RequestField;
+
+/**
+ * Class used to represent a request sent by a client, together with the client it has been sent by.
+ * Every worker thread reuses a single instance: a request is only valid until the next one is parsed by the same thread,
+ * hence it is not to be retained by handlers.
+ * @author Giacomo Trapani.
+ */
+public class Request
+{
+	/** Request currently owned by each thread. */
+	private static final ThreadLocal<Request> current = ThreadLocal.withInitial(Request::new);
+
+	/** Channel denoting the client which has sent the request. */
+	public SocketChannel client = null;
+	/** Username of the user the client was logged in with when the request has been received, null if it was not logged in. */
+	public String loggedInUsername = null;
+	/** Version of the protocol the request has been sent with, the response is to be built with the same one. */
+	public int protocol = Protocol.TEXT;
+	/** Identifier the client has given to the request, it is always 0 for text requests. */
+	public int id = 0;
+	/** Version of the protocol the connection is to switch to once the response has been sent, 0 if it is to keep the current one. */
+	int nextProtocol = 0;
+	/** Command the request is asking for, null if it is missing or unknown. */
+	CommandCode command = null;
+	/** Values of the fields making up the request, indexed by ordinal. */
+	final String[] values = new String[RequestField.values().length];
+	/** Used to parse requests sent to the thread owning this instance. */
+	private final RequestParser parser = new RequestParser();
+
+	/** Constructor is made private to have its caller use the static method provided. */
+	private Request() { }
+
+	/**
+	 * Static factory method used to parse a request straight out of the bytes it has been received in.
+	 * @param client cannot be null.
+	 * @param loggedInUsername username of the user the client is logged in with, null if it is not logged in.
+	 * @param protocol version of the protocol the client is currently speaking.
+	 * @param message request to be parsed, it is expected to follow the syntax defined by protocol. It is fully consumed.
+	 * @return the request owned by the calling thread filled in with the one parsed, its command is null if message is not valid.
+	 * @throws NullPointerException if client or message is null.
+	 */
+	public static Request parse(final SocketChannel client, final String loggedInUsername, final int protocol, final ByteBuffer message)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(client, "Client cannot be null.");
+		Objects.requireNonNull(message, "Message cannot be null.");
+		final Request request = current.get();
+
+		request.client = client;
+		request.loggedInUsername = loggedInUsername;
+		request.protocol = protocol;
+		request.id = 0;
+		request.nextProtocol = 0;
+		request.command = null;
+		Arrays.fill(request.values, null);
+		boolean valid = false;
+		if (protocol == Protocol.BINARY)
+		{
+			try { valid = request.parseBinary(message); }
+			catch (BufferUnderflowException | IllegalArgumentException e) { valid = false; }
+			finally { message.position(message.limit()); }
+		}
+		else valid = request.parser.parse(message, request);
+		if (!valid)
+		{
+			request.command = null;
+			Arrays.fill(request.values, null);
+		}
+		return request;
+	}
+
+	/**
+	 * Finds the command a request is asking for without parsing it as a whole, so that it can be scheduled before being handled.
+	 * @param protocol version of the protocol the client is currently speaking.
+	 * @param message cannot be null, it is not consumed.
+	 * @return the command asked for, null if it is missing or unknown.
+	 * @throws NullPointerException if message is null.
+	 */
+	public static CommandCode peekCommand(final int protocol, final ByteBuffer message)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(message, "Message cannot be null.");
+		if (protocol == Protocol.BINARY)
+		{
+			// the opcode follows the request identifier:
+			if (message.remaining() <= Integer.BYTES) return null;
+			return CommandCode.fromOpcode(message.get(message.position() + Integer.BYTES) & 0xFF);
+		}
+		return current.get().parser.peekCommand(message);
+	}
+
+	/** Getter for the command the request is asking for, null if it is missing or unknown. */
+	public CommandCode getCommand()
+	{
+		return command;
+	}
+
+	/**
+	 * Getter for the version of the protocol the connection is to switch to once the response has been sent.
+	 * @return the version asked for, 0 if the connection is to keep the current one.
+	 */
+	public int getNextProtocol()
+	{
+		return nextProtocol;
+	}
+
+	/**
+	 * Getter for the value of a field.
+	 * @param field cannot be null.
+	 * @return the value of the field as a string, null if the request does not contain it.
+	 */
+	public String get(final RequestField field)
+	{
+		return values[field.ordinal()];
+	}
+
+	/** Returns true if the client was logged in with username when the request has been received. */
+	public boolean isLoggedInAs(final String username)
+	{
+		return loggedInUsername != null && loggedInUsername.equals(username);
+	}
+
+	/** Parses a request following the binary protocol, unknown fields are ignored. */
+	private boolean parseBinary(final ByteBuffer message)
+	{
+		id = message.getInt();
+		if (!message.hasRemaining()) return false;
+		command = CommandCode.fromOpcode(message.get() & 0xFF);
+		if (command == null) return false;
+		values[RequestField.COMMAND.ordinal()] = command.description;
+		while (message.hasRemaining())
+		{
+			final RequestField field = RequestField.fromID(message.get() & 0xFF);
+			final String value = Protocol.readString(message);
+			if (field != null && field != RequestField.COMMAND) values[field.ordinal()] = value;
+		}
+		return true;
+	}
+}
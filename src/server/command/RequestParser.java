@@ -0,0 +1,252 @@
+package server.command;
+
+import java.nio.ByteBuffer;
+
+import api.CommandCode;
+import api.RequestField;
+
+/**
+ * Package private class implementing a streaming parser for requests following the syntax of a flat JSON object,
+ * i.e. { "NAME": VALUE, ... } with VALUE being either a string, a number, true, false or null.
+ * Bytes are read straight out of the buffer the request has been received in: no tree is ever built,
+ * unknown fields are skipped and only the values of the known ones are turned into strings.
+ * This class is not thread-safe: every thread is meant to own its instance.
+ * @author Giacomo Trapani.
+ */
+class RequestParser
+{
+	/** Default size for the scratch buffer. */
+	private static final int SCRATCHSIZE = 256;
+	/** Every field a request can be made up of. */
+	private static final RequestField[] FIELDS = RequestField.values();
+	/** Every command a request can ask for. */
+	private static final CommandCode[] COMMANDS = CommandCode.values();
+
+	/** Used to hold the characters of the name or value currently being read, it grows as needed. */
+	private char[] scratch = new char[SCRATCHSIZE];
+	/** Number of valid characters inside scratch. */
+	private int length = 0;
+	/** Buffer currently being parsed. */
+	private ByteBuffer in = null;
+
+	/**
+	 * Parses a request.
+	 * @param src bytes to be parsed, they are fully consumed.
+	 * @param dst request the fields are to be stored into, its values are expected to be cleared.
+	 * @return true if src is a valid flat JSON object, false otherwise.
+	 */
+	boolean parse(final ByteBuffer src, final Request dst)
+	{
+		in = src;
+		try { return parseObject(dst); }
+		finally
+		{
+			in.position(in.limit());
+			in = null;
+		}
+	}
+
+	/**
+	 * Finds the command a request is asking for, without parsing the fields following it.
+	 * @param src bytes to be scanned, they are not consumed.
+	 * @return the command asked for, null if it is missing, unknown or the request is not valid up to it.
+	 */
+	CommandCode peekCommand(final ByteBuffer src)
+	{
+		final int position = src.position();
+		in = src;
+		try
+		{
+			if (next() != '{') return null;
+			int c = next();
+			while (c == '"')
+			{
+				if (!readString()) return null;
+				final boolean isCommand = equalsScratch(RequestField.COMMAND.name);
+				if (next() != ':') return null;
+				c = next();
+				if (c == '"')
+				{
+					if (!readString()) return null;
+					if (isCommand) return matchCommand();
+				}
+				else
+				{
+					if (isCommand) return null;
+					readLiteral(c);
+				}
+				if (next() != ',') return null;
+				c = next();
+			}
+			return null;
+		}
+		finally
+		{
+			in.position(position);
+			in = null;
+		}
+	}
+
+	/** Parses the whole object. */
+	private boolean parseObject(final Request dst)
+	{
+		if (next() != '{') return false;
+		int c = next();
+		if (c == '}') return next() == -1;
+		while (true)
+		{
+			if (c != '"' || !readString()) return false;
+			final RequestField field = matchField();
+			if (next() != ':') return false;
+			c = next();
+			if (c == '"')
+			{
+				if (!readString()) return false;
+				store(field, dst);
+			}
+			else if (c == '-' || (c >= '0' && c <= '9') || c == 't' || c == 'f')
+			{
+				readLiteral(c);
+				if (!isValidLiteral()) return false;
+				store(field, dst);
+			}
+			else if (c == 'n')
+			{
+				readLiteral(c);
+				if (!equalsScratch("null")) return false;
+				// JSON null is treated as a missing field
+				if (field != null) dst.values[field.ordinal()] = null;
+				if (field == RequestField.COMMAND) dst.command = null;
+			}
+			else return false; // nested objects and arrays are not part of the protocol
+			c = next();
+			if (c == '}') return next() == -1;
+			if (c != ',') return false;
+			c = next();
+		}
+	}
+
+	/** Stores the content of scratch as the value of field, unknown fields are ignored. */
+	private void store(final RequestField field, final Request dst)
+	{
+		if (field == null) return;
+		if (field == RequestField.COMMAND) dst.command = matchCommand();
+		dst.values[field.ordinal()] = new String(scratch, 0, length);
+	}
+
+	/** Returns the next character which is not whitespace, -1 if there is none. */
+	private int next()
+	{
+		while (in.hasRemaining())
+		{
+			final int c = in.get() & 0xFF;
+			if (c != ' ' && c != '\t' && c != '\n' && c != '\r') return c;
+		}
+		return -1;
+	}
+
+	/**
+	 * Reads the rest of a string whose opening quote has already been consumed into scratch, handling escape sequences.
+	 * @return true if the string has been properly terminated, false otherwise.
+	 */
+	private boolean readString()
+	{
+		length = 0;
+		while (in.hasRemaining())
+		{
+			int c = in.get() & 0xFF;
+			if (c == '"') return true;
+			if (c == '\\')
+			{
+				if (!in.hasRemaining()) return false;
+				switch (in.get())
+				{
+					case '"': c = '"'; break;
+					case '\\': c = '\\'; break;
+					case '/': c = '/'; break;
+					case 'b': c = '\b'; break;
+					case 'f': c = '\f'; break;
+					case 'n': c = '\n'; break;
+					case 'r': c = '\r'; break;
+					case 't': c = '\t'; break;
+					case 'u':
+						if (in.remaining() < 4) return false;
+						c = 0;
+						for (int i = 0; i < 4; i++)
+						{
+							final int digit = Character.digit(in.get(), 16);
+							if (digit == -1) return false;
+							c = (c << 4) | digit;
+						}
+						break;
+					default: return false;
+				}
+			}
+			append((char) c);
+		}
+		return false;
+	}
+
+	/** Reads the rest of a number or a literal whose first character is first into scratch. */
+	private void readLiteral(final int first)
+	{
+		length = 0;
+		append((char) first);
+		while (in.hasRemaining())
+		{
+			final int c = in.get(in.position()) & 0xFF;
+			if (!(c == '+' || c == '-' || c == '.' || (c >= '0' && c <= '9') || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z'))) return;
+			in.get();
+			append((char) c);
+		}
+	}
+
+	/** Returns true if scratch holds either true, false or something which looks like a number. */
+	private boolean isValidLiteral()
+	{
+		if (equalsScratch("true") || equalsScratch("false")) return true;
+		for (int i = 0; i < length; i++)
+		{
+			final char c = scratch[i];
+			if (!(c == '+' || c == '-' || c == '.' || c == 'e' || c == 'E' || (c >= '0' && c <= '9'))) return false;
+		}
+		return true;
+	}
+
+	/** Appends a character to scratch, growing it if needed. */
+	private void append(final char c)
+	{
+		if (length == scratch.length)
+		{
+			final char[] tmp = new char[scratch.length * 2];
+			System.arraycopy(scratch, 0, tmp, 0, length);
+			scratch = tmp;
+		}
+		scratch[length++] = c;
+	}
+
+	/** Returns the field whose name is held by scratch, null if there is none. */
+	private RequestField matchField()
+	{
+		for (RequestField f : FIELDS)
+			if (equalsScratch(f.name)) return f;
+		return null;
+	}
+
+	/** Returns the command whose description is held by scratch, null if there is none. */
+	private CommandCode matchCommand()
+	{
+		for (CommandCode c : COMMANDS)
+			if (equalsScratch(c.description)) return c;
+		return null;
+	}
+
+	/** Returns true if scratch holds exactly s. */
+	private boolean equalsScratch(final String s)
+	{
+		if (s.length() != length) return false;
+		for (int i = 0; i < length; i++)
+			if (scratch[i] != s.charAt(i)) return false;
+		return true;
+	}
+}
@@ -0,0 +1,21 @@
+package server.command;
+
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+
+/**
+ * Handles RETRIEVEMULTICAST: sends back the coordinates of the multicast group rewards are notified on.
+ * @author Giacomo Trapani.
+ */
+class RetrieveMulticastHandler extends BaseHandler
+{
+	RetrieveMulticastHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		return reply(request, response, ResponseCode.OK, context.multicastInfo);
+	}
+}
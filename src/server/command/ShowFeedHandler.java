@@ -0,0 +1,31 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+
+/**
+ * Handles SHOWFEED: sends back the posts on the caller's feed.
+ * @author Giacomo Trapani.
+ */
+class ShowFeedHandler extends BaseHandler
+{
+	ShowFeedHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+		final int before, limit;
+		try { before = parseCursor(request); limit = parseLimit(request); }
+		catch (IllegalArgumentException e) { return syntaxError(request, response); }
+
+		try { return replyWithPage(request, response, ResponseCode.OK, context.posts.handleShowFeed(username, context.users, before, limit), limit); }
+		catch (NoSuchUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+	}
+}
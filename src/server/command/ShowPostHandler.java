@@ -0,0 +1,30 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchPostException;
+
+/**
+ * Handles SHOWPOST: sends back a post.
+ * @author Giacomo Trapani.
+ */
+class ShowPostHandler extends BaseHandler
+{
+	ShowPostHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		final String postID = request.get(RequestField.POSTID);
+		if (username == null || postID == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try { return reply(request, response, ResponseCode.OK, context.posts.handleShowPost(Integer.parseInt(postID))); }
+		catch (NumberFormatException e) { return syntaxError(request, response); }
+		catch (NoSuchPostException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+	}
+}
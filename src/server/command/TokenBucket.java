@@ -0,0 +1,56 @@
+package server.command;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free token bucket. Rather than counting tokens and refilling them periodically, the bucket only keeps track of the time
+ * it is going to be full again at: taking a token pushes that time forward, and a token can be taken as long as the bucket
+ * would not be overdrawn, i.e. as long as that time is not further away than it takes to fill up the whole bucket.
+ * @author Giacomo Trapani.
+ */
+public class TokenBucket
+{
+	/** Time (in nsec) it takes to earn back a single token. */
+	private final long interval;
+	/** Time (in nsec) it takes to fill up the whole bucket. */
+	private final long capacity;
+	/** Time (as returned by System.nanoTime) the bucket is going to be full again at. */
+	private final AtomicLong fullAt = new AtomicLong(System.nanoTime());
+
+	/**
+	 * Default constructor, the bucket starts full.
+	 * @param burst maximum number of tokens the bucket can hold, must be greater than zero.
+	 * @param rate number of tokens earned back every second, must be greater than zero.
+	 * @throws IllegalArgumentException if burst or rate is not greater than zero.
+	 */
+	public TokenBucket(final int burst, final double rate)
+	throws IllegalArgumentException
+	{
+		if (burst <= 0 || !(rate > 0)) throw new IllegalArgumentException("Burst and rate must be greater than zero.");
+		this.interval = Math.max(1, (long) (1e9 / rate));
+		this.capacity = burst * interval;
+	}
+
+	/**
+	 * Takes a token out of the bucket.
+	 * @return true if a token has been taken, false if the bucket is empty.
+	 */
+	public boolean tryAcquire()
+	{
+		final long now = System.nanoTime();
+		while (true)
+		{
+			final long current = fullAt.get();
+			// a bucket which has been full since before now is not any fuller:
+			final long next = (current - now < 0 ? now : current) + interval;
+			if (next - now > capacity) return false;
+			if (fullAt.compareAndSet(current, next)) return true;
+		}
+	}
+
+	/** Returns true if the bucket is full, i.e. it cannot be told apart from a newly built one. */
+	public boolean isFull()
+	{
+		return fullAt.get() - System.nanoTime() <= 0;
+	}
+}
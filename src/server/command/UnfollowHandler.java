@@ -0,0 +1,38 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+
+/**
+ * Handles UNFOLLOWUSER: has the caller stop following another user, who is notified via RMI callback.
+ * @author Giacomo Trapani.
+ */
+class UnfollowHandler extends BaseHandler
+{
+	UnfollowHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.FOLLOWER);
+		final String unfollowed = request.get(RequestField.FOLLOWED);
+		if (username == null || unfollowed == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try
+		{
+			if (!context.users.handleUnfollowUser(username, unfollowed))
+				return reply(request, response, ResponseCode.FORBIDDEN, username + " is not following " + unfollowed);
+		}
+		catch (IllegalArgumentException | NoSuchUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		// the storages are updated one at a time, so that neither of them is locked while waiting for the other one:
+		context.posts.updateFeedOnUnfollow(username, unfollowed, context.users);
+		try { context.callbackService.notifyUnfollow(context.users.getUserRecord(username).toString(), unfollowed); }
+		catch (NoSuchUserException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+		return reply(request, response, ResponseCode.OK, username + " has now stopped following " + unfollowed);
+	}
+}
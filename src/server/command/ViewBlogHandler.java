@@ -0,0 +1,28 @@
+package server.command;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+
+/**
+ * Handles VIEWBLOG: sends back the posts authored or rewon by the given user.
+ * @author Giacomo Trapani.
+ */
+class ViewBlogHandler extends BaseHandler
+{
+	ViewBlogHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+		final int before, limit;
+		try { before = parseCursor(request); limit = parseLimit(request); }
+		catch (IllegalArgumentException e) { return syntaxError(request, response); }
+
+		return replyWithPage(request, response, ResponseCode.OK, context.posts.handleBlog(username, before, limit), limit);
+	}
+}
@@ -0,0 +1,31 @@
+package server.command;
+
+import java.io.IOException;
+
+import api.RequestField;
+import api.ResponseCode;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+
+/**
+ * Handles WALLETBTC: sends back the caller's amount of WINCOINS converted to BTC.
+ * @author Giacomo Trapani.
+ */
+class WalletBTCHandler extends BaseHandler
+{
+	WalletBTCHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		try { return reply(request, response, ResponseCode.OK, context.users.handleGetWalletInBitcoin(username)); }
+		catch (NoSuchUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		catch (IOException | NumberFormatException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+	}
+}
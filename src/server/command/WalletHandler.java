@@ -0,0 +1,58 @@
+package server.command;
+
+import java.io.IOException;
+import java.util.List;
+
+import api.Protocol;
+import api.RequestField;
+import api.ResponseCode;
+import api.TransactionRecord;
+import server.connection.ResponseBuilder;
+import server.storage.NoSuchUserException;
+
+/**
+ * Handles WALLET: sends back the caller's transactions and its total amount of WINCOINS.
+ * Speaking the text protocol, the total is sent as the first record followed by CRLF.
+ * @author Giacomo Trapani.
+ */
+class WalletHandler extends BaseHandler
+{
+	WalletHandler(final CommandContext context)
+	{
+		super(context);
+	}
+
+	public ResponseCode handle(final Request request, final ResponseBuilder response)
+	{
+		final String username = request.get(RequestField.USERNAME);
+		if (username == null) return syntaxError(request, response);
+		if (!request.isLoggedInAs(username)) return notLoggedIn(request, response, username);
+
+		final List<TransactionRecord> transactions;
+		try { transactions = context.users.handleGetWallet(username); }
+		catch (NoSuchUserException e) { return reply(request, response, ResponseCode.FORBIDDEN, e.getMessage()); }
+		double total = 0;
+		for (TransactionRecord t : transactions)
+			total += t.amount;
+
+		if (request.protocol == Protocol.BINARY)
+		{
+			try
+			{
+				Protocol.writeVarint(response, ResponseCode.OK.getValue());
+				response.write(Protocol.WALLET);
+				Protocol.writeDouble(response, total);
+				Protocol.writeVarint(response, transactions.size());
+				for (TransactionRecord t : transactions)
+					t.writeTo(response);
+			}
+			catch (IOException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+			return ResponseCode.OK;
+		}
+		response.putASCII(ResponseCode.OK.getDescription());
+		response.putRecord(Double.toString(total) + "\r\n");
+		for (TransactionRecord t : transactions)
+			response.putRecord(t.toString());
+		return ResponseCode.OK;
+	}
+}
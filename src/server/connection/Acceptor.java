@@ -0,0 +1,56 @@
+package server.connection;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+
+/**
+ * Task accepting new clients and handing them round-robin to a fixed set of reactors.
+ * It terminates as soon as the server channel gets closed.
+ * @author Giacomo Trapani.
+ */
+public class Acceptor implements Runnable
+{
+	/** Blocking channel clients are to be accepted from. */
+	private final ServerSocketChannel server;
+	/** Reactors clients are to be handed to. */
+	private final Reactor[] reactors;
+	/** Index of the reactor the next client is to be handed to. */
+	private int next = 0;
+
+	/**
+	 * Default constructor.
+	 * @param server cannot be null, it must be in blocking mode.
+	 * @param reactors cannot be null nor empty.
+	 * @throws IllegalArgumentException if server is not in blocking mode or reactors is empty.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public Acceptor(final ServerSocketChannel server, final Reactor[] reactors)
+	throws IllegalArgumentException, NullPointerException
+	{
+		this.server = Objects.requireNonNull(server, "Server channel cannot be null.");
+		this.reactors = Objects.requireNonNull(reactors, "Reactors cannot be null.").clone();
+		if (!server.isBlocking()) throw new IllegalArgumentException("Server channel must be in blocking mode.");
+		if (this.reactors.length == 0) throw new IllegalArgumentException("At least a reactor is needed.");
+		for (Reactor r : this.reactors) Objects.requireNonNull(r, "Reactors cannot be null.");
+	}
+
+	public void run()
+	{
+		while (!Thread.currentThread().isInterrupted())
+		{
+			SocketChannel client = null;
+			try { client = server.accept(); }
+			catch (ClosedChannelException shutdown) { break; }
+			catch (IOException e)
+			{
+				System.err.printf("I/O error occurred:\n%s\n", e.getMessage());
+				continue;
+			}
+			reactors[next].register(client);
+			next = (next + 1) % reactors.length;
+		}
+	}
+}
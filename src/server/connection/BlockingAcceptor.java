@@ -0,0 +1,102 @@
+package server.connection;
+
+import java.io.IOException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.function.Function;
+
+/**
+ * Task accepting new clients and serving each one of them on its own thread, with blocking reads and writes.
+ * Virtual threads are used if the JVM provides them (Java 21 onwards), platform threads otherwise.
+ * @author Giacomo Trapani.
+ */
+public class BlockingAcceptor implements Runnable
+{
+	/** Channel new clients are accepted from. */
+	private final ServerSocketChannel server;
+	/** Maps a newly accepted client to the task serving it until it disconnects. */
+	private final Function<SocketChannel, Runnable> handlerFactory;
+	/** Used to create the thread serving each client. */
+	private final ThreadFactory threadFactory;
+	/** Toggled on if clients are served by virtual threads. */
+	private final boolean virtual;
+	/** Clients currently being served. */
+	private final Set<SocketChannel> clients = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Default constructor.
+	 * @param server cannot be null, it must be in blocking mode.
+	 * @param handlerFactory cannot be null, it maps a newly accepted client to the task serving it until it disconnects.
+	 * @throws IllegalArgumentException if server is not in blocking mode.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public BlockingAcceptor(final ServerSocketChannel server, final Function<SocketChannel, Runnable> handlerFactory)
+	throws IllegalArgumentException, NullPointerException
+	{
+		this.server = Objects.requireNonNull(server, "Server channel cannot be null.");
+		this.handlerFactory = Objects.requireNonNull(handlerFactory, "Handler factory cannot be null.");
+		if (!server.isBlocking()) throw new IllegalArgumentException("Server channel must be in blocking mode.");
+		ThreadFactory factory = null;
+		try
+		{
+			// looked up reflectively as Thread.ofVirtual() is not part of the API this is compiled against:
+			final Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+			factory = (ThreadFactory) Class.forName("java.lang.Thread$Builder").getMethod("factory").invoke(builder);
+		}
+		catch (ReflectiveOperationException | ClassCastException e) { factory = null; }
+		this.virtual = factory != null;
+		this.threadFactory = virtual ? factory : Executors.defaultThreadFactory();
+	}
+
+	/** Returns true if clients are served by virtual threads, false if they are served by platform threads. */
+	public boolean usesVirtualThreads()
+	{
+		return virtual;
+	}
+
+	/** Stops accepting new clients and closes every client currently being served: the threads serving them are going to terminate. */
+	public void close()
+	{
+		try { server.close(); }
+		catch (IOException e)
+		{
+			System.err.println("I/O error occurred during shutdown:");
+			e.printStackTrace();
+		}
+		for (SocketChannel c : clients)
+		{
+			try { c.close(); }
+			catch (IOException ignored) { }
+		}
+	}
+
+	public void run()
+	{
+		while (!Thread.currentThread().isInterrupted())
+		{
+			SocketChannel client = null;
+			try { client = server.accept(); }
+			catch (ClosedChannelException shutdown) { break; }
+			catch (IOException e)
+			{
+				System.err.printf("I/O error occurred:\n%s\n", e.getMessage());
+				continue;
+			}
+			final SocketChannel accepted = client;
+			final Runnable handler = handlerFactory.apply(accepted);
+			clients.add(accepted);
+			threadFactory.newThread(() ->
+			{
+				BufferPool.disableCache(); // the thread terminates together with its client, so would its cache
+				try { handler.run(); }
+				finally { clients.remove(accepted); }
+			}).start();
+		}
+	}
+}
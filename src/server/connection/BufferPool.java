@@ -0,0 +1,184 @@
+package server.connection;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Utility class handing out direct buffers and taking them back once they are no longer needed,
+ * so that the request path does not allocate a new buffer for every read and every response.
+ * Buffers are grouped in size classes: every thread keeps a small cache for each class and falls back to
+ * a bounded pool shared by every thread. Short-lived threads, such as the ones serving a single client, are to disable their cache
+ * so that the buffers they release are not lost with them. Requests larger than the largest class are served with unpooled heap buffers.
+ * Setting the system property "winsome.buffers.debug" to true enables leak detection: every buffer handed out is tracked
+ * together with the stack trace of its acquisition, buffers released twice are reported and outstanding ones can be listed
+ * via reportLeaks.
+ * @author Giacomo Trapani.
+ */
+public class BufferPool
+{
+	/** Size of the chunks responses are built of. */
+	public static final int CHUNKSIZE = 4096;
+	/** Capacities of the size classes, in ascending order. */
+	private static final int[] SIZECLASSES = { 1024, CHUNKSIZE, 16384, 65536 };
+	/** Maximum number of bytes kept around by the shared pool for every size class. */
+	private static final int MAXIMUMPOOLEDBYTES = 1 << 24;
+	/** Maximum number of buffers kept around by every thread for every size class. */
+	private static final int THREADCACHESIZE = 32;
+	/** Toggled on if leak detection is enabled. */
+	private static final boolean DEBUG = Boolean.getBoolean("winsome.buffers.debug");
+
+	/** Buffers shared by every thread, one queue for every size class. */
+	private static final List<Queue<ByteBuffer>> shared;
+	/** Number of buffers inside every queue of shared. */
+	private static final AtomicInteger[] pooled;
+	/** Buffers cached by the current thread, one deque for every size class: it is null if the thread has disabled its cache. */
+	private static final ThreadLocal<List<ArrayDeque<ByteBuffer>>> cache = ThreadLocal.withInitial(BufferPool::newCache);
+	/** Buffers currently handed out together with where they have been acquired from, null if leak detection is disabled. */
+	private static final Map<ByteBuffer, Throwable> outstanding = DEBUG ? Collections.synchronizedMap(new IdentityHashMap<>()) : null;
+
+	static
+	{
+		final List<Queue<ByteBuffer>> queues = new ArrayList<>(SIZECLASSES.length);
+		pooled = new AtomicInteger[SIZECLASSES.length];
+		for (int i = 0; i < SIZECLASSES.length; i++)
+		{
+			queues.add(new ConcurrentLinkedQueue<>());
+			pooled[i] = new AtomicInteger(0);
+		}
+		shared = queues;
+	}
+
+	private BufferPool() { }
+
+	/**
+	 * Hands out a chunk responses are to be built of.
+	 * @return a cleared buffer whose capacity is CHUNKSIZE.
+	 */
+	public static ByteBuffer acquire()
+	{
+		return acquire(CHUNKSIZE);
+	}
+
+	/**
+	 * Hands out a buffer which can hold at least size bytes.
+	 * @param size must not be negative.
+	 * @return a buffer whose position is zero and whose limit is size.
+	 * @throws IllegalArgumentException if size is negative.
+	 */
+	public static ByteBuffer acquire(final int size)
+	throws IllegalArgumentException
+	{
+		if (size < 0) throw new IllegalArgumentException("Size cannot be negative.");
+		final int sizeClass = sizeClassOf(size);
+		if (sizeClass == -1) return ByteBuffer.allocate(size);
+
+		final List<ArrayDeque<ByteBuffer>> local = cache.get();
+		ByteBuffer buffer = local == null ? null : local.get(sizeClass).poll();
+		if (buffer == null)
+		{
+			buffer = shared.get(sizeClass).poll();
+			if (buffer != null) pooled[sizeClass].decrementAndGet();
+			else buffer = ByteBuffer.allocateDirect(SIZECLASSES[sizeClass]);
+		}
+		buffer.clear().limit(size);
+		if (DEBUG) outstanding.put(buffer, new Throwable("Buffer acquired by thread " + Thread.currentThread().getName()));
+		return buffer;
+	}
+
+	/**
+	 * Takes a buffer back. Buffers which have not been handed out by this pool are ignored.
+	 * The caller is not to use the buffer afterwards.
+	 * @param buffer buffer to be released, null is ignored.
+	 * @throws IllegalStateException if leak detection is enabled and buffer has already been released.
+	 */
+	public static void release(final ByteBuffer buffer)
+	throws IllegalStateException
+	{
+		if (buffer == null || !buffer.isDirect() || buffer.isReadOnly()) return;
+		final int sizeClass = sizeClassOf(buffer.capacity());
+		if (sizeClass == -1 || SIZECLASSES[sizeClass] != buffer.capacity()) return;
+		if (DEBUG && outstanding.remove(buffer) == null)
+			throw new IllegalStateException("Buffer has already been released or it has not been handed out by this pool.");
+
+		final List<ArrayDeque<ByteBuffer>> local = cache.get();
+		if (local != null && local.get(sizeClass).size() < THREADCACHESIZE)
+		{
+			local.get(sizeClass).push(buffer);
+			return;
+		}
+		releaseShared(sizeClass, buffer);
+	}
+
+	/**
+	 * Disables the cache of the current thread: every buffer it holds is handed to the shared pool, and so are the ones
+	 * the thread releases from now on. It is to be invoked by threads which are not going to live long.
+	 */
+	public static void disableCache()
+	{
+		final List<ArrayDeque<ByteBuffer>> local = cache.get();
+		cache.set(null);
+		if (local == null) return;
+		for (int i = 0; i < local.size(); i++)
+			for (ByteBuffer b : local.get(i)) releaseShared(i, b);
+	}
+
+	/** Hands a buffer to the shared pool, unless it already holds as many bytes of its size class as it can. */
+	private static void releaseShared(final int sizeClass, final ByteBuffer buffer)
+	{
+		if (pooled[sizeClass].incrementAndGet() > MAXIMUMPOOLEDBYTES / SIZECLASSES[sizeClass])
+		{
+			pooled[sizeClass].decrementAndGet();
+			return;
+		}
+		shared.get(sizeClass).add(buffer);
+	}
+
+	/**
+	 * Prints the stack trace of the acquisition of every buffer which has yet to be released. It does nothing if leak detection is disabled.
+	 * @param out cannot be null.
+	 * @return number of buffers which have yet to be released, 0 if leak detection is disabled.
+	 * @throws NullPointerException if out is null.
+	 */
+	public static int reportLeaks(final PrintStream out)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(out, "Stream cannot be null.");
+		if (!DEBUG) return 0;
+		synchronized (outstanding)
+		{
+			for (Throwable t : outstanding.values())
+				t.printStackTrace(out);
+			return outstanding.size();
+		}
+	}
+
+	/**
+	 * Finds the smallest size class which can hold size bytes.
+	 * @return index of the size class, -1 if size is larger than the largest class.
+	 */
+	private static int sizeClassOf(final int size)
+	{
+		for (int i = 0; i < SIZECLASSES.length; i++)
+			if (size <= SIZECLASSES[i]) return i;
+		return -1;
+	}
+
+	/** Creates the cache of a thread. */
+	private static List<ArrayDeque<ByteBuffer>> newCache()
+	{
+		final List<ArrayDeque<ByteBuffer>> result = new ArrayList<>(SIZECLASSES.length);
+		for (int i = 0; i < SIZECLASSES.length; i++)
+			result.add(new ArrayDeque<>(THREADCACHESIZE));
+		return result;
+	}
+}
@@ -0,0 +1,277 @@
+package server.connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Objects;
+
+import api.Protocol;
+
+/**
+ * Class used to group together the state the server keeps for every connected client.
+ * It is meant to be attached to the SelectionKey denoting the client.
+ * @author Giacomo Trapani.
+ */
+public class Connection
+{
+	/** States a connection can be in, each one defining the operations its key is interested in. */
+	public enum State
+	{
+		/** The connection is waiting for a request to be fully received. */
+		READING(SelectionKey.OP_READ),
+		/** The connection has as many requests being handled by workers as it is allowed to: the selector is not to read from it. */
+		PROCESSING(0),
+		/** Too many bytes are waiting to be sent: the selector is not to read from this connection until they are drained. */
+		WRITING(0);
+
+		/** Operations the key is interested in while in this state, OP_WRITE is added as long as there are bytes to be sent. */
+		public final int interestOps;
+
+		private State(final int interestOps)
+		{
+			this.interestOps = interestOps;
+		}
+	}
+
+	/** Maximum number of buffers to be written by a single gathering write. */
+	private static final int MAXIMUMGATHER = 16;
+	/** Maximum number of requests sent following the binary protocol to be handled at the same time, text ones are handled one at a time. */
+	private static final int MAXIMUMINFLIGHT = 32;
+
+	/** Channel denoting the client. */
+	public final SocketChannel channel;
+	/** Reactor this client has been handed to. */
+	public final Reactor reactor;
+	/** Used to reassemble requests across partial reads. */
+	private final FrameDecoder decoder;
+	/** Buffers waiting to be sent, in order. Every access is to be synchronized on this connection. */
+	private final ArrayDeque<ByteBuffer> outbound = new ArrayDeque<>();
+	/** Used to pass the head of the outbound queue to gathering writes. */
+	private final ByteBuffer[] gather = new ByteBuffer[MAXIMUMGATHER];
+	/** Number of bytes waiting to be sent above which the connection is not to be read from. */
+	private final int highWaterMark;
+	/** Number of bytes waiting to be sent. */
+	private long pendingBytes = 0;
+	/** Key denoting this client, it is kept for the whole lifetime of the connection. */
+	private SelectionKey key = null;
+	/** Current state of the connection. */
+	private volatile State state = State.READING;
+	/** Toggled on once the connection has been closed. */
+	private boolean closed = false;
+	/** Version of the protocol the client is currently speaking. */
+	private volatile int protocol = Protocol.TEXT;
+	/** Number of requests currently being handled by workers. */
+	private int inFlight = 0;
+	/** Time (as returned by System.nanoTime) bytes have last been read from or written to the channel at. */
+	private volatile long lastActivity = System.nanoTime();
+
+	/**
+	 * Default constructor.
+	 * @param channel cannot be null.
+	 * @param reactor cannot be null.
+	 * @param maximumFrameSize maximum size of a request, must be greater than zero.
+	 * @param highWaterMark number of bytes waiting to be sent above which the connection is not to be read from, must be greater than zero.
+	 * @throws IllegalArgumentException if any size is not greater than zero.
+	 * @throws NullPointerException if channel or reactor is null.
+	 */
+	public Connection(final SocketChannel channel, final Reactor reactor, final int maximumFrameSize, final int highWaterMark)
+	throws IllegalArgumentException, NullPointerException
+	{
+		if (highWaterMark <= 0) throw new IllegalArgumentException("High water mark must be greater than zero.");
+		this.channel = Objects.requireNonNull(channel, "Channel cannot be null.");
+		this.reactor = Objects.requireNonNull(reactor, "Reactor cannot be null.");
+		this.decoder = new FrameDecoder(maximumFrameSize);
+		this.highWaterMark = highWaterMark;
+	}
+
+	/** Getter for the current state of the connection. */
+	public State getState()
+	{
+		return state;
+	}
+
+	/** Getter for the version of the protocol the client is currently speaking. */
+	public int getProtocol()
+	{
+		return protocol;
+	}
+
+	/**
+	 * Setter for the version of the protocol the client is currently speaking. It is to be invoked only after the response
+	 * to the request asking for it has been queued, so that the response is sent following the previous version.
+	 * @param protocol either Protocol.TEXT or Protocol.BINARY.
+	 * @throws IllegalArgumentException if protocol is not a valid version.
+	 */
+	public void setProtocol(final int protocol)
+	throws IllegalArgumentException
+	{
+		if (protocol != Protocol.TEXT && protocol != Protocol.BINARY) throw new IllegalArgumentException("Protocol version is not valid.");
+		this.protocol = protocol;
+	}
+
+	/**
+	 * Reads from the channel once, without ever looping. It is to be invoked only by the thread running the reactor this client has been handed to.
+	 * @return amount of bytes read, -1 if the end of the stream has been reached or the connection has been closed.
+	 * @throws IOException Refer to ReadableByteChannel read function.
+	 */
+	public synchronized int read()
+	throws IOException
+	{
+		if (closed) return -1;
+		final int nRead = decoder.read(channel);
+		if (nRead > 0) lastActivity = System.nanoTime();
+		return nRead;
+	}
+
+	/**
+	 * Extracts the next request out of the bytes received so far. It is to be invoked only by the thread running the reactor this client has been handed to.
+	 * @return the body of the next request, null if more bytes are needed or the connection has been closed.
+	 * It has been taken from BufferPool: the caller is to release it once it has been read.
+	 * @throws InvalidFrameException Refer to FrameDecoder nextFrame function.
+	 */
+	public synchronized ByteBuffer nextFrame()
+	throws InvalidFrameException
+	{
+		if (closed) return null;
+		return decoder.nextFrame();
+	}
+
+	/**
+	 * Reserves room for a new request to be handled by a worker. Requests sent following the binary protocol may be handled
+	 * concurrently up to a fixed bound, text ones are handled one at a time.
+	 * @return true if the request can be handed out, false if the connection is not to be read from until a request is done with.
+	 */
+	public synchronized boolean beginRequest()
+	{
+		if (closed || inFlight >= (protocol == Protocol.BINARY ? MAXIMUMINFLIGHT : 1)) return false;
+		inFlight++;
+		return true;
+	}
+
+	/** Gives back the room reserved by beginRequest, it is to be invoked once the response has been queued. */
+	public synchronized void endRequest()
+	{
+		if (inFlight > 0) inFlight--;
+	}
+
+	/**
+	 * Appends buffers to the outbound queue. They are to be in read mode and they are not to be modified afterwards:
+	 * the ones taken from BufferPool are given back once sent.
+	 * @param buffers cannot be null nor contain null.
+	 * @throws NullPointerException if buffers is null or contains null.
+	 */
+	public synchronized void enqueue(final ByteBuffer ... buffers)
+	throws NullPointerException
+	{
+		for (ByteBuffer b : Objects.requireNonNull(buffers, "Buffers cannot be null."))
+		{
+			if (closed) // nobody is going to send them
+			{
+				BufferPool.release(b);
+				continue;
+			}
+			outbound.add(Objects.requireNonNull(b, "Buffers cannot be null."));
+			pendingBytes += b.remaining();
+		}
+	}
+
+	/**
+	 * Writes as many queued bytes as the channel accepts without blocking, using gathering writes.
+	 * @return true if the outbound queue has been fully drained, false otherwise.
+	 * @throws IOException Refer to GatheringByteChannel write function.
+	 */
+	public synchronized boolean flush()
+	throws IOException
+	{
+		while (!outbound.isEmpty())
+		{
+			int length = 0;
+			for (ByteBuffer b : outbound)
+			{
+				if (length == MAXIMUMGATHER) break;
+				gather[length++] = b;
+			}
+			final long written = channel.write(gather, 0, length);
+			pendingBytes -= written;
+			if (written > 0) lastActivity = System.nanoTime();
+			while (!outbound.isEmpty() && !outbound.peek().hasRemaining())
+				BufferPool.release(outbound.poll());
+			for (int i = 0; i < length; i++) gather[i] = null;
+			if (written == 0) return false; // socket send buffer is full
+		}
+		return true;
+	}
+
+	/** Returns true if the number of bytes waiting to be sent is above the high water mark. */
+	public synchronized boolean isAboveHighWaterMark()
+	{
+		return pendingBytes > highWaterMark;
+	}
+
+	/** Returns true if there are bytes waiting to be sent. */
+	public synchronized boolean hasPendingOutput()
+	{
+		return !outbound.isEmpty();
+	}
+
+	/**
+	 * Closes the channel and gives back every buffer held by this connection. Closing an already closed connection has no effect.
+	 * The decoder is not to be used afterwards.
+	 */
+	public synchronized void close()
+	{
+		if (closed) return;
+		closed = true;
+		try { channel.close(); }
+		catch (IOException ignored) { }
+		while (!outbound.isEmpty())
+			BufferPool.release(outbound.poll());
+		pendingBytes = 0;
+		decoder.release();
+	}
+
+	/** Returns true if the connection has been closed. */
+	public synchronized boolean isClosed()
+	{
+		return closed;
+	}
+
+	/** Getter for the time (as returned by System.nanoTime) bytes have last been read from or written to the channel at. */
+	long getLastActivity()
+	{
+		return lastActivity;
+	}
+
+	/**
+	 * Checks whether the client has been idle for too long. A client waiting for a request to be handled is never idle.
+	 * @param now current time, as returned by System.nanoTime.
+	 * @param timeout time (in nsec) without any activity after which the client is idle.
+	 * @return true if the client has been idle for at least timeout, false otherwise.
+	 */
+	synchronized boolean isIdle(final long now, final long timeout)
+	{
+		return !closed && inFlight == 0 && now - lastActivity >= timeout;
+	}
+
+	/** Sets the key denoting this client. It is to be invoked exactly once, by the reactor registering the client. */
+	void setKey(final SelectionKey key)
+	{
+		this.key = key;
+	}
+
+	/**
+	 * Moves the connection to a new state, updating the operations its key is interested in.
+	 * It is to be invoked only by the thread running the reactor this client has been handed to.
+	 * @param state cannot be null.
+	 * @return true if the transition has been performed, false if the key is no longer valid.
+	 */
+	boolean transition(final State state)
+	{
+		this.state = Objects.requireNonNull(state, "State cannot be null.");
+		if (key == null || !key.isValid()) return false;
+		key.interestOps(state.interestOps | (hasPendingOutput() ? SelectionKey.OP_WRITE : 0));
+		return true;
+	}
+}
@@ -0,0 +1,101 @@
+package server.connection;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.Objects;
+
+/**
+ * Stateful decoder for messages following the syntax CONCAT(LENGTH, BYTES) with LENGTH representing the number of bytes to be read
+ * and BYTES the message. Partial reads are accumulated across calls, hence the channel is never to be read in a loop:
+ * it is to be read once per readiness event and a frame is to be asked for afterwards.
+ * This class is not thread-safe: it is meant to be used by the thread currently owning the connection.
+ * @author Giacomo Trapani.
+ */
+public class FrameDecoder
+{
+	/** Default size for the receive buffer. */
+	private static final int BUFFERSIZE = 1024;
+
+	/** Used to receive bytes from the channel. It is always kept in write mode. */
+	private final ByteBuffer in;
+	/** Upper bound to a frame's length. */
+	private final int maximumFrameSize;
+	/** Length of the frame currently being reassembled, -1 if its header has yet to be read. */
+	private int expected = -1;
+	/** Body of the frame currently being reassembled, null if its header has yet to be read. */
+	private ByteBuffer body = null;
+
+	/**
+	 * Default constructor.
+	 * @param maximumFrameSize must be greater than zero.
+	 * @throws IllegalArgumentException if maximumFrameSize is not greater than zero.
+	 */
+	public FrameDecoder(final int maximumFrameSize)
+	throws IllegalArgumentException
+	{
+		if (maximumFrameSize <= 0) throw new IllegalArgumentException("Maximum frame size must be greater than zero.");
+		this.in = BufferPool.acquire(BUFFERSIZE);
+		this.maximumFrameSize = maximumFrameSize;
+	}
+
+	/**
+	 * Reads from the channel once, without ever looping.
+	 * @param src cannot be null.
+	 * @return amount of bytes read, -1 if the end of the stream has been reached.
+	 * @throws IOException Refer to ReadableByteChannel read function.
+	 * @throws NullPointerException if src is null.
+	 */
+	public int read(ReadableByteChannel src)
+	throws IOException, NullPointerException
+	{
+		return Objects.requireNonNull(src, "Source cannot be null.").read(in);
+	}
+
+	/**
+	 * Extracts the next frame out of the bytes received so far.
+	 * @return the body of the next frame ready to be read, null if more bytes are needed.
+	 * It has been taken from BufferPool: the caller is to release it once it has been read.
+	 * @throws InvalidFrameException if the length declared by the client is negative or greater than the maximum frame size.
+	 */
+	public ByteBuffer nextFrame()
+	throws InvalidFrameException
+	{
+		ByteBuffer frame = null;
+
+		in.flip();
+		try
+		{
+			if (expected == -1)
+			{
+				if (in.remaining() < Integer.BYTES) return null;
+				expected = in.getInt();
+				if (expected < 0 || expected > maximumFrameSize)
+					throw new InvalidFrameException(String.format("Frame length %d is not in range [0; %d].", expected, maximumFrameSize));
+				body = BufferPool.acquire(expected);
+			}
+			if (in.remaining() <= body.remaining()) body.put(in);
+			else
+			{
+				final int limit = in.limit();
+				in.limit(in.position() + body.remaining());
+				body.put(in);
+				in.limit(limit);
+			}
+			if (body.hasRemaining()) return null;
+			frame = body.flip();
+			body = null;
+			expected = -1;
+			return frame;
+		}
+		finally { in.compact(); }
+	}
+
+	/** Gives back every buffer held by this decoder. It cannot be used afterwards. */
+	public void release()
+	{
+		BufferPool.release(in);
+		BufferPool.release(body);
+		body = null;
+	}
+}
@@ -0,0 +1,14 @@
+package server.connection;
+
+import java.io.IOException;
+
+/**
+ * Exception to be thrown whenever a client sends a frame whose declared length is not valid.
+ * @author Giacomo Trapani.
+ */
+public class InvalidFrameException extends IOException
+{
+	public InvalidFrameException(final String s) { super(s); }
+
+	public InvalidFrameException() { super(); }
+}
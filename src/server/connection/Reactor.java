@@ -0,0 +1,179 @@
+package server.connection;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import server.connection.Connection.State;
+
+/**
+ * Task running a selector loop over the subset of the clients it has been handed by the acceptor.
+ * Other threads are never to touch the selector directly: they are to submit a task via execute,
+ * which is going to be run by the reactor's thread right after it wakes up.
+ * Every client is registered once and its key is kept until it disconnects: switching between reading and writing
+ * is done by updating the key's interest set.
+ * @author Giacomo Trapani.
+ */
+public class Reactor implements Runnable
+{
+	/** Part of the error message when NPE is thrown. */
+	private static final String NULL_ERROR = " cannot be null.";
+
+	/** Selector owned by this reactor. */
+	private final Selector selector;
+	/** Tasks to be run by this reactor's thread on its next wake up. */
+	private final Queue<Runnable> pendingTasks = new ConcurrentLinkedQueue<>();
+	/** Logic to be run whenever a client is ready for I/O. */
+	private final ReadinessHandler handler;
+	/** Number of bytes waiting to be sent above which a connection is not to be read from. */
+	private final int highWaterMark;
+	/** Upper bound to the size of a request. */
+	private final int maximumFrameSize;
+	/** Used to find the clients which have been idle for too long, null if they are never to be disconnected. */
+	private final TimingWheel idleWheel;
+	/** Thread running this reactor, null if it has yet to be started. */
+	private volatile Thread thread = null;
+
+	/**
+	 * Default constructor.
+	 * @param handler cannot be null.
+	 * @param maximumFrameSize upper bound to the size of a request, must be greater than zero.
+	 * @param highWaterMark number of bytes waiting to be sent above which a connection is not to be read from, must be greater than zero.
+	 * @param idleTimeout time (in msec) without any activity after which a client is handed to handler's onIdle, 0 if clients are never idle.
+	 * @throws IOException if an I/O error occurs while opening the selector.
+	 * @throws IllegalArgumentException if any size is not greater than zero or idleTimeout is negative.
+	 * @throws NullPointerException if handler is null.
+	 */
+	public Reactor(final ReadinessHandler handler, final int maximumFrameSize, final int highWaterMark, final int idleTimeout)
+	throws IOException, IllegalArgumentException, NullPointerException
+	{
+		if (maximumFrameSize <= 0 || highWaterMark <= 0) throw new IllegalArgumentException("Sizes must be greater than zero.");
+		if (idleTimeout < 0) throw new IllegalArgumentException("Idle timeout cannot be negative.");
+		this.idleWheel = idleTimeout == 0 ? null : new TimingWheel(idleTimeout);
+		this.handler = Objects.requireNonNull(handler, "Handler" + NULL_ERROR);
+		this.maximumFrameSize = maximumFrameSize;
+		this.highWaterMark = highWaterMark;
+		this.selector = Selector.open();
+	}
+
+	/**
+	 * Submits a task to be run by this reactor's thread and wakes it up.
+	 * @param task cannot be null.
+	 * @throws NullPointerException if task is null.
+	 */
+	public void execute(final Runnable task)
+	throws NullPointerException
+	{
+		pendingTasks.add(Objects.requireNonNull(task, "Task" + NULL_ERROR));
+		selector.wakeup();
+	}
+
+	/**
+	 * Hands a newly accepted client to this reactor: it is going to be registered for reading.
+	 * @param client cannot be null.
+	 * @throws NullPointerException if client is null.
+	 */
+	public void register(final SocketChannel client)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(client, "Client" + NULL_ERROR);
+		execute(() ->
+		{
+			final Connection connection = new Connection(client, this, maximumFrameSize, highWaterMark);
+			try
+			{
+				client.configureBlocking(false);
+				connection.setKey(client.register(selector, State.READING.interestOps, connection));
+				if (idleWheel != null) idleWheel.schedule(connection);
+			}
+			catch (ClosedChannelException clientDisconnected) { connection.close(); }
+			catch (IOException e)
+			{
+				System.err.printf("I/O error occurred:\n%s\n", e.getMessage());
+				connection.close();
+			}
+		});
+	}
+
+	/**
+	 * Moves a connection handed to this reactor to a new state. If the caller is not this reactor's thread,
+	 * the transition is submitted as a task and the selector is woken up.
+	 * @param connection cannot be null.
+	 * @param state cannot be null.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public void transition(final Connection connection, final State state)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(connection, "Connection" + NULL_ERROR);
+		Objects.requireNonNull(state, "State" + NULL_ERROR);
+		if (Thread.currentThread() == thread) connection.transition(state);
+		else execute(() -> connection.transition(state));
+	}
+
+	/** Closes every connection handed to this reactor and its selector: its thread is going to terminate. */
+	public void close()
+	{
+		execute(() ->
+		{
+			for (SelectionKey k : selector.keys())
+				if (k.attachment() instanceof Connection) ((Connection) k.attachment()).close();
+			try { selector.close(); }
+			catch (IOException e)
+			{
+				System.err.println("I/O error occurred during shutdown:");
+				e.printStackTrace();
+			}
+		});
+	}
+
+	public void run()
+	{
+		thread = Thread.currentThread();
+		while (true)
+		{
+			// the selector is to be woken up at every tick of the wheel:
+			try
+			{
+				if (idleWheel == null) selector.select();
+				else selector.select(idleWheel.getTickMillis());
+			}
+			catch (IOException e)
+			{
+				System.err.println("Fatal I/O error occurred during select: now aborting...");
+				e.printStackTrace();
+				System.exit(1);
+			}
+			catch (ClosedSelectorException e) { break; }
+			if (!selector.isOpen()) break;
+			// running the tasks submitted by other threads:
+			Runnable task = null;
+			while ((task = pendingTasks.poll()) != null)
+				task.run();
+			if (!selector.isOpen()) break;
+			final Iterator<SelectionKey> keys;
+			try { keys = selector.selectedKeys().iterator(); }
+			catch (ClosedSelectorException e) { break; }
+			while (keys.hasNext())
+			{
+				final SelectionKey k = keys.next();
+				keys.remove(); // remove from selected set
+				try
+				{
+					if (k.isReadable()) handler.onReadable(k);
+					if (k.isValid() && k.isWritable()) handler.onWritable(k);
+				}
+				catch (CancelledKeyException e) { continue; }
+			}
+			if (idleWheel != null) idleWheel.advance(System.nanoTime(), handler::onIdle);
+		}
+	}
+}
@@ -0,0 +1,30 @@
+package server.connection;
+
+import java.nio.channels.SelectionKey;
+
+/**
+ * Interface defining the logic a reactor delegates to whenever one of its clients is ready for I/O or has been idle for too long.
+ * Every method is invoked by the reactor's own thread, hence it is not to block.
+ * @author Giacomo Trapani.
+ */
+public interface ReadinessHandler
+{
+	/**
+	 * Invoked whenever the client denoted by key is ready to be read from.
+	 * @param key key denoting the client, its attachment is the client's Connection.
+	 */
+	public void onReadable(final SelectionKey key);
+
+	/**
+	 * Invoked whenever the client denoted by key is ready to be written to.
+	 * @param key key denoting the client, its attachment is the client's Connection.
+	 */
+	public void onWritable(final SelectionKey key);
+
+	/**
+	 * Invoked whenever a client has not sent nor received anything for longer than the reactor's idle timeout.
+	 * The reactor stops tracking it: the handler is expected to close it.
+	 * @param connection the client's Connection.
+	 */
+	public void onIdle(final Connection connection);
+}
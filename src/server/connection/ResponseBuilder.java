@@ -0,0 +1,165 @@
+package server.connection;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Stream used to build up a response as a chain of chunks taken from BufferPool: growing it never copies what has already been written.
+ * The resulting frame follows the syntax CONCAT(LENGTH, BYTES) with LENGTH representing the number of bytes making up BYTES.
+ * This class is not thread-safe.
+ * @author Giacomo Trapani.
+ */
+public class ResponseBuilder extends OutputStream
+{
+	/** Chunks making up the response, the first one starts with the room left for LENGTH. */
+	private final List<ByteBuffer> chunks = new ArrayList<>();
+	/** Chunk currently being written to. */
+	private ByteBuffer current = null;
+	/** Number of bytes making up the body. */
+	private int size = 0;
+	/** Toggled on once the response has been handed out. */
+	private boolean finished = false;
+
+	/** Default constructor. */
+	public ResponseBuilder()
+	{
+		current = BufferPool.acquire();
+		current.position(Integer.BYTES);
+		chunks.add(current);
+	}
+
+	public void write(final int b)
+	{
+		ensureOpen();
+		if (!current.hasRemaining()) nextChunk();
+		current.put((byte) b);
+		size++;
+	}
+
+	public void write(final byte[] b, int off, int len)
+	{
+		ensureOpen();
+		Objects.checkFromIndexSize(off, len, Objects.requireNonNull(b, "Array cannot be null.").length);
+		size += len;
+		while (len > 0)
+		{
+			if (!current.hasRemaining()) nextChunk();
+			final int n = Math.min(len, current.remaining());
+			current.put(b, off, n);
+			off += n;
+			len -= n;
+		}
+	}
+
+	/**
+	 * Appends an int in big-endian order.
+	 * @param value int to be appended.
+	 */
+	public void putInt(final int value)
+	{
+		write(value >>> 24);
+		write(value >>> 16);
+		write(value >>> 8);
+		write(value);
+	}
+
+	/**
+	 * Appends a string encoded with US ASCII, without copying it into an intermediate array when it is plain ASCII.
+	 * @param s cannot be null.
+	 * @return number of bytes appended.
+	 * @throws NullPointerException if s is null.
+	 */
+	public int putASCII(final String s)
+	throws NullPointerException
+	{
+		final int length = Objects.requireNonNull(s, "String cannot be null.").length();
+		for (int i = 0; i < length; i++)
+		{
+			if (s.charAt(i) > 0x7F) // falling back to the encoder to replace every code point exactly as String.getBytes does
+			{
+				final byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+				write(bytes, 0, bytes.length);
+				return bytes.length;
+			}
+		}
+		for (int i = 0; i < length; i++)
+			write(s.charAt(i));
+		return length;
+	}
+
+	/**
+	 * Appends a record following the syntax CONCAT(LENGTH, STRING) with STRING encoded with US ASCII and LENGTH its length.
+	 * @param s cannot be null.
+	 * @throws NullPointerException if s is null.
+	 */
+	public void putRecord(final String s)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(s, "String cannot be null.");
+		boolean ascii = true;
+		for (int i = 0; i < s.length() && ascii; i++)
+			ascii = s.charAt(i) <= 0x7F;
+		if (ascii)
+		{
+			putInt(s.length());
+			putASCII(s);
+		}
+		else
+		{
+			final byte[] bytes = s.getBytes(StandardCharsets.US_ASCII);
+			putInt(bytes.length);
+			write(bytes, 0, bytes.length);
+		}
+	}
+
+	/** Returns the number of bytes making up the body. */
+	public int size()
+	{
+		return size;
+	}
+
+	/**
+	 * Completes the frame and hands out its chunks, ready to be read from. They are to be given back to BufferPool once sent:
+	 * Connection takes care of it. The builder cannot be used afterwards.
+	 * @return the chunks making up the frame, in order.
+	 */
+	public ByteBuffer[] finish()
+	{
+		ensureOpen();
+		finished = true;
+		chunks.get(0).putInt(0, size);
+		final ByteBuffer[] result = new ByteBuffer[chunks.size()];
+		for (int i = 0; i < result.length; i++)
+			result[i] = chunks.get(i).flip();
+		chunks.clear();
+		current = null;
+		return result;
+	}
+
+	/** Gives back every chunk without handing them out. The builder cannot be used afterwards. */
+	public void close()
+	{
+		if (finished) return;
+		finished = true;
+		for (ByteBuffer chunk : chunks) BufferPool.release(chunk);
+		chunks.clear();
+		current = null;
+	}
+
+	/** Appends a new chunk to the chain. */
+	private void nextChunk()
+	{
+		current = BufferPool.acquire();
+		chunks.add(current);
+	}
+
+	/** Throws IllegalStateException if the response has already been handed out. */
+	private void ensureOpen()
+	{
+		if (finished) throw new IllegalStateException("Response has already been built.");
+	}
+}
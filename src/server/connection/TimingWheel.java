@@ -0,0 +1,92 @@
+package server.connection;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel used by a reactor to find the connections which have been idle for too long.
+ * Every connection sits in the slot of the tick it may expire at. Activity on a connection does not move it around:
+ * it is only looked at again once its slot comes up, and then either expired or moved to the slot of its new deadline.
+ * Scheduling and expiring cost O(1). It is to be used only by the thread running the reactor owning it.
+ * @author Giacomo Trapani.
+ */
+class TimingWheel
+{
+	/** Number of slots in the wheel. */
+	private static final int WHEELSIZE = 256;
+
+	/** Connections waiting for their slot to come up, indexed by tick modulo the number of slots. */
+	private final List<ArrayDeque<Connection>> slots;
+	/** Time (in nsec) without any activity after which a connection is idle. */
+	private final long timeout;
+	/** Time (in nsec) between two ticks. */
+	private final long tick;
+	/** Time (as returned by System.nanoTime) tick 0 took place at. */
+	private final long origin = System.nanoTime();
+	/** Next tick to be processed. */
+	private long cursor = 0;
+
+	/**
+	 * Default constructor.
+	 * @param timeout time (in msec) without any activity after which a connection is idle, must be greater than zero.
+	 * @throws IllegalArgumentException if timeout is not greater than zero.
+	 */
+	TimingWheel(final long timeout)
+	throws IllegalArgumentException
+	{
+		if (timeout <= 0) throw new IllegalArgumentException("Timeout must be greater than zero.");
+		this.timeout = timeout * 1000000;
+		// a whole revolution spans the timeout, so that a connection is usually looked at only once before expiring:
+		this.tick = Math.max(1000000, this.timeout / WHEELSIZE);
+		this.slots = new ArrayList<>(WHEELSIZE);
+		for (int i = 0; i < WHEELSIZE; i++) slots.add(new ArrayDeque<>());
+	}
+
+	/** Returns the time (in msec) between two ticks, i.e. how long the reactor may wait without checking the wheel. */
+	long getTickMillis()
+	{
+		return tick / 1000000;
+	}
+
+	/**
+	 * Starts tracking a connection.
+	 * @param connection cannot be null.
+	 */
+	void schedule(final Connection connection)
+	{
+		add(connection, connection.getLastActivity() + timeout);
+	}
+
+	/**
+	 * Processes every tick which has taken place up to now.
+	 * @param now current time, as returned by System.nanoTime.
+	 * @param onIdle invoked for every connection which has been idle for too long, it is no longer tracked afterwards.
+	 */
+	void advance(final long now, final Consumer<Connection> onIdle)
+	{
+		final long last = (now - origin) / tick;
+		// going around more than once would only look at the same slots again:
+		if (last - cursor >= WHEELSIZE) cursor = last - WHEELSIZE + 1;
+		for (; cursor <= last; cursor++)
+		{
+			final ArrayDeque<Connection> slot = slots.get((int) (cursor % WHEELSIZE));
+			// connections moved back into this slot are not to be looked at again until its next turn:
+			for (int n = slot.size(); n > 0; n--)
+			{
+				final Connection c = slot.poll();
+				if (c.isClosed()) continue;
+				if (c.isIdle(now, timeout)) onIdle.accept(c);
+				else add(c, c.getLastActivity() + timeout);
+			}
+		}
+	}
+
+	/** Puts a connection in the slot of the first tick following deadline which has yet to be processed. */
+	private void add(final Connection connection, final long deadline)
+	{
+		final long due = Math.max((deadline - origin + tick - 1) / tick, cursor + 1);
+		slots.get((int) (due % WHEELSIZE)).add(connection);
+	}
+}
@@ -1,9 +1,13 @@
 package server.post;
 
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * Abstract class defining a post in WINSOME.
@@ -110,6 +114,18 @@ public abstract class Post
 		generatorID = new AtomicInteger(value);
 	}
 
+	/**
+	 * Has the generator skip every ID up to a given value, if it has not done so yet. This method is thread-safe.
+	 * @throws InvalidGeneratorException if ID has yet to be generated.
+	*/
+	public static void skipIDs(final int value)
+	throws InvalidGeneratorException
+	{
+		if (generatorID == null)
+			throw new InvalidGeneratorException("ID has yet to be generated.");
+		generatorID.accumulateAndGet(value, Math::max);
+	}
+
 	/**
 	 * Getter for next valid ID. This method is thread-safe.
 	 * @throws InvalidGeneratorException if ID has yet to be generated.
@@ -137,17 +153,38 @@ public abstract class Post
 	/** Getter for this post's rewinners' names. */
 	public abstract Set<String> getRewinnersNames();
 
+	/**
+	 * Checks whether this post has been shared, i.e. written or rewon, by any user satisfying a condition. Rewinners are not copied.
+	 * @param users cannot be null, it is tested against usernames.
+	 * @return true if the author or any rewinner satisfies users, false otherwise.
+	 * @throws NullPointerException if users is null.
+	 */
+	public abstract boolean isSharedByAny(final Predicate<String> users)
+	throws NullPointerException;
+
 	/** Getter for this post's comments. */
 	public abstract List<String> getComments();
 
+	/** Getter for this post's number of comments. */
+	public abstract int getCommentsNo();
+
 	/** Getter for this post's number of upvotes. */
 	public abstract int getUpvotesNo();
 
 	/** Getter for this post's number of downvotes. */
 	public abstract int getDownvotesNo();
 
-	/** Getter for this post's gain and curators as a couple. */
-	public abstract GainAndCurators getGainAndCurators();
+	/** Getter for the number of the last cycle this post's gain has been calculated in, 0 if it has never been. */
+	public abstract int getLastCycle();
+
+	/** Checks whether this post has received any votes or comments since its gain has last been calculated. */
+	public abstract boolean hasNewInteractions();
+
+	/**
+	 * Getter for this post's gain and curators as a couple, the interactions they are calculated on are reset afterwards.
+	 * @param cycle number of the cycle of the Gain formula being run, the gain is divided by the number of cycles run since this post has been created.
+	 */
+	public abstract GainAndCurators getGainAndCurators(final int cycle);
 
 	/**
 	 * Adds a rewin from given user to this post. This method is thread-safe.
@@ -179,4 +216,14 @@ public abstract class Post
 	public abstract void addVote(final String username, final Vote vote)
 	throws InvalidVoteException, NullPointerException;
 
+	/**
+	 * Writes down every field of this post, strings are written down as their index inside a dictionary.
+	 * @param out cannot be null.
+	 * @param strings cannot be null, it maps a string to its index.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public abstract void writeTo(final DataOutput out, final ToIntFunction<String> strings)
+	throws IOException, NullPointerException;
+
 }
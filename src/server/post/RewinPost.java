@@ -1,5 +1,9 @@
 package server.post;
 
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -10,6 +14,9 @@ import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.IntFunction;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
 
 /**
  * Class used to represent a Post in WINSOME.
@@ -73,15 +80,17 @@ public class RewinPost extends Post
 	private Map<String, Integer> newCommentsBy = new HashMap<>();
 	/** Collects the usernames of each and every user who's now become a curator for this post. */
 	private Set<String> newCurators = new HashSet<>();
-	/** Number of iterations of the Gain formula this post has been run against. */
-	private int iterations = 0;
+	/** Number of cycles of the Gain formula run before this post has been created. */
+	private int created = 0;
+	/** Number of the last cycle of the Gain formula this post has been run against, 0 if it has never been. */
+	private int lastCycle = 0;
 
 	/** Part of the exception message when an attempt is made to submit a post with an empty title. */
 	private static final String EMPTY_ERROR = " cannot be empty.";
 	/** Part of the exception message when NPE is thrown. */
 	private static final String NULL_ERROR = " cannot be null.";
 
-	public RewinPost(final String author, final String title, final String contents)
+	public RewinPost(final String author, final String title, final String contents, final int created)
 	throws InvalidPostException, InvalidGeneratorException, NullPointerException
 	{
 		if (Objects.requireNonNull(author, "Author" + NULL_ERROR).isEmpty())
@@ -100,8 +109,12 @@ public class RewinPost extends Post
 		this.author = author;
 		this.title = title;
 		this.contents = contents;
+		this.created = created;
 	}
 
+	/** Constructor used to recover a post, its fields are filled up afterwards. */
+	private RewinPost() { }
+
 	public int getID()
 	{
 		return id;
@@ -127,6 +140,14 @@ public class RewinPost extends Post
 		return new HashSet<>(rewonBy);
 	}
 
+	public boolean isSharedByAny(final Predicate<String> users)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(users, "Users" + NULL_ERROR);
+		// rewonBy is a concurrent data structure
+		return users.test(author) || rewonBy.stream().anyMatch(users);
+	}
+
 	public List<String> getComments()
 	{
 		List<String> res = new ArrayList<>();
@@ -135,6 +156,11 @@ public class RewinPost extends Post
 		return res;
 	}
 
+	public int getCommentsNo()
+	{
+		return comments.size();
+	}
+
 	public int getUpvotesNo()
 	{
 		return upvotedBy.size();
@@ -145,12 +171,24 @@ public class RewinPost extends Post
 		return downvotedBy.size();
 	}
 
+	public synchronized int getLastCycle()
+	{
+		return lastCycle;
+	}
+
+	public synchronized boolean hasNewInteractions()
+	{
+		return newVotes != 0 || !newCommentsBy.isEmpty() || !newCurators.isEmpty();
+	}
+
 	// synchronized is required to avoid having the post in a non-consistent state.
-	public synchronized GainAndCurators getGainAndCurators()
+	public synchronized GainAndCurators getGainAndCurators(final int cycle)
 	{
 		Objects.requireNonNull("Curators" + NULL_ERROR);
 
-		iterations++;
+		// a post created while a cycle is running is counted as if it had been created right before it:
+		final int iterations = Math.max(cycle - created, 1);
+		lastCycle = cycle;
 
 		double tmp = 0;
 		for (Integer cp : newCommentsBy.values()) tmp += (2 / (1 + Math.pow(Math.E, -(cp - 1))));
@@ -213,6 +251,73 @@ public class RewinPost extends Post
 		return;
 	}
 
+	// synchronized is required to avoid having the post written down in a non-consistent state
+	public synchronized void writeTo(final DataOutput out, final ToIntFunction<String> strings)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(out, "Output" + NULL_ERROR);
+		Objects.requireNonNull(strings, "Dictionary" + NULL_ERROR);
+
+		out.writeInt(id);
+		out.writeInt(strings.applyAsInt(author));
+		out.writeInt(strings.applyAsInt(title));
+		out.writeInt(strings.applyAsInt(contents));
+		writeStrings(out, strings, rewonBy);
+		writeStrings(out, strings, upvotedBy);
+		writeStrings(out, strings, downvotedBy);
+		final List<Comment> c = new ArrayList<>(comments);
+		out.writeInt(c.size());
+		for (Comment comment : c)
+		{
+			out.writeInt(strings.applyAsInt(comment.author));
+			out.writeInt(strings.applyAsInt(comment.contents));
+		}
+		out.writeInt(newVotes);
+		out.writeInt(newCommentsBy.size());
+		for (Map.Entry<String, Integer> entry : newCommentsBy.entrySet())
+		{
+			out.writeInt(strings.applyAsInt(entry.getKey()));
+			out.writeInt(entry.getValue());
+		}
+		writeStrings(out, strings, newCurators);
+		out.writeInt(created);
+		out.writeInt(lastCycle);
+	}
+
+	/**
+	 * Recovers a post written down by writeTo.
+	 * @param in cannot be null, the post is read starting from its position.
+	 * @param strings cannot be null, it maps an index to its string.
+	 * @return the recovered post.
+	 * @throws BufferUnderflowException if in ends before the post does.
+	 * @throws InvalidCommentException if any comment is not valid.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public static RewinPost readFrom(final ByteBuffer in, final IntFunction<String> strings)
+	throws BufferUnderflowException, InvalidCommentException, NullPointerException
+	{
+		Objects.requireNonNull(in, "Input" + NULL_ERROR);
+		Objects.requireNonNull(strings, "Dictionary" + NULL_ERROR);
+
+		final RewinPost p = new RewinPost();
+		p.id = in.getInt();
+		p.author = strings.apply(in.getInt());
+		p.title = strings.apply(in.getInt());
+		p.contents = strings.apply(in.getInt());
+		readStrings(in, strings, p.rewonBy);
+		readStrings(in, strings, p.upvotedBy);
+		readStrings(in, strings, p.downvotedBy);
+		for (int i = in.getInt(); i > 0; i--)
+			p.comments.add(new Comment(strings.apply(in.getInt()), strings.apply(in.getInt())));
+		p.newVotes = in.getInt();
+		for (int i = in.getInt(); i > 0; i--)
+			p.newCommentsBy.put(strings.apply(in.getInt()), in.getInt());
+		readStrings(in, strings, p.newCurators);
+		p.created = in.getInt();
+		p.lastCycle = in.getInt();
+		return p;
+	}
+
 	public boolean equals(Object o)
 	{
 		return o instanceof RewinPost && this.id == ((RewinPost) o).id;
@@ -222,4 +327,19 @@ public class RewinPost extends Post
 	{
 		return Integer.valueOf(id).hashCode();
 	}
+
+	/** Writes down a set of strings as their number followed by their indexes. */
+	private static void writeStrings(final DataOutput out, final ToIntFunction<String> strings, final Set<String> set)
+	throws IOException
+	{
+		final String[] a = set.toArray(new String[0]);
+		out.writeInt(a.length);
+		for (String s : a) out.writeInt(strings.applyAsInt(s));
+	}
+
+	/** Reads a set of strings written down by writeStrings and adds them to the given one. */
+	private static void readStrings(final ByteBuffer in, final IntFunction<String> strings, final Set<String> set)
+	{
+		for (int i = in.getInt(); i > 0; i--) set.add(strings.apply(in.getInt()));
+	}
 }
@@ -0,0 +1,248 @@
+package server.storage;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
+/**
+ * Compact binary snapshot of a storage, loaded by mapping it in memory rather than by parsing it.
+ * A snapshot starts with its magic number and its version, followed by a record for each entity prefixed by its length, by the dictionary
+ * of the strings the records refer to by index and by a trailer holding the position of the dictionary, the number of records and the magic
+ * number again, so that a snapshot which has not been written down completely is detected.
+ * Every instance builds up the dictionary of a single snapshot while it is being written: its strings are assigned their index the first
+ * time they are encoded, even by threads preserving an entity, so that records can be encoded before the snapshot is written down.
+ * @author Giacomo Trapani.
+ */
+class BinarySnapshot
+{
+	/** Used to encode the fields of an entity. */
+	@FunctionalInterface
+	interface Encoder
+	{
+		/**
+		 * Writes down the fields of an entity.
+		 * @param out cannot be null.
+		 * @throws IOException if I/O error(s) occur.
+		 */
+		void encode(final DataOutputStream out)
+		throws IOException;
+	}
+
+	/** Used to load the records of a snapshot. */
+	@FunctionalInterface
+	interface Loader
+	{
+		/**
+		 * Loads a record.
+		 * @param record fields of the record, in the same order they have been encoded in.
+		 * @param strings dictionary of the snapshot, indexed the same way the record refers to it.
+		 * @throws IllegalArchiveException if the record is not valid.
+		 */
+		void load(final ByteBuffer record, final String[] strings)
+		throws IllegalArchiveException;
+	}
+
+	/** Magic number of the snapshots written by this instance. */
+	private final int magic;
+	/** Maps every string of the dictionary to its index. */
+	private final Map<String, Integer> indexes = new HashMap<>();
+	/** Strings of the dictionary, sorted by index. */
+	private final List<String> strings = new ArrayList<>();
+
+	/** Version of the format. */
+	private static final int VERSION = 1;
+	/** Number of bytes of the header: the magic number and the version. */
+	private static final int HEADERSIZE = 2 * Integer.BYTES;
+	/** Number of bytes of the trailer: the position of the dictionary, the number of records and the magic number. */
+	private static final int TRAILERSIZE = Long.BYTES + 2 * Integer.BYTES;
+	/** Size of the buffer snapshots are written down through. */
+	private static final int BUFFERSIZE = 1 << 16;
+	/** Part of the exception message when NPE is thrown. */
+	private static final String NULL_ERROR = " cannot be null.";
+	/** Exception message when a snapshot cannot be loaded. */
+	private static final String INVALID_SNAPSHOT = "The file to be loaded is not a valid snapshot.";
+
+	/**
+	 * Default constructor.
+	 * @param magic magic number of the snapshot, it tells the snapshots of different storages apart.
+	 */
+	BinarySnapshot(final int magic)
+	{
+		this.magic = magic;
+	}
+
+	/**
+	 * Getter for the index of a string, it is added to the dictionary if it is not part of it yet.
+	 * @param s cannot be null.
+	 * @return the index.
+	 * @throws NullPointerException if s is null.
+	 */
+	synchronized int indexOf(final String s)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(s, "String" + NULL_ERROR);
+		return indexes.computeIfAbsent(s, k ->
+		{
+			strings.add(k);
+			return strings.size() - 1;
+		});
+	}
+
+	/**
+	 * Encodes the record of an entity, the strings it refers to are to be added to this dictionary by the encoder.
+	 * @param encoder cannot be null.
+	 * @return the record.
+	 * @throws NullPointerException if encoder is null.
+	 */
+	byte[] encode(final Encoder encoder)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(encoder, "Encoder" + NULL_ERROR);
+
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try { encoder.encode(new DataOutputStream(bytes)); }
+		catch (IOException shouldNeverBeThrown) { throw new UncheckedIOException(shouldNeverBeThrown); }
+		return bytes.toByteArray();
+	}
+
+	/**
+	 * Writes down a snapshot of the entities of a data structure as they were when it has been taken. The file is replaced all at once
+	 * once the snapshot has been written down and forced to the storage device, so that it always holds a complete snapshot.
+	 * Every entity is read while holding its monitor.
+	 * @param <K> type of the keys of the data Map.
+	 * @param <V> type of the values of the data Map.
+	 * @param snapshot cannot be null, its only view is to be encoded by this instance.
+	 * @param data cannot be null, it must hold every entity which is part of the snapshot and no others.
+	 * @param fileToBeStoredIn cannot be null.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	<K, V> void write(final Snapshot<K, V, byte[]> snapshot, final Map<K, V> data, final File fileToBeStoredIn)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(snapshot, "Snapshot" + NULL_ERROR);
+		Objects.requireNonNull(data, "Map" + NULL_ERROR);
+		Objects.requireNonNull(fileToBeStoredIn, "File" + NULL_ERROR);
+
+		final File tmp = new File(fileToBeStoredIn.getPath() + ".tmp");
+		long position = HEADERSIZE;
+		int records = 0;
+
+		fileToBeStoredIn.getAbsoluteFile().getParentFile().mkdirs();
+		try (final FileOutputStream fos = new FileOutputStream(tmp, false);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos, BUFFERSIZE)))
+		{
+			out.writeInt(magic);
+			out.writeInt(VERSION);
+			for (Entry<K, V> entry : data.entrySet())
+			{
+				final byte[] record;
+				synchronized (entry.getValue()) { record = snapshot.recordOf(entry.getKey(), entry.getValue(), 0); }
+				out.writeInt(record.length);
+				out.write(record);
+				position += Integer.BYTES + record.length;
+				records++;
+			}
+			final String[] dictionary;
+			synchronized (this) { dictionary = strings.toArray(new String[0]); } // every string the records refer to has been added by now
+			out.writeInt(dictionary.length);
+			for (String s : dictionary)
+			{
+				final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+				out.writeInt(bytes.length);
+				out.write(bytes);
+			}
+			out.writeLong(position);
+			out.writeInt(records);
+			out.writeInt(magic);
+			out.flush();
+			fos.getFD().sync();
+		}
+		Files.move(tmp.toPath(), fileToBeStoredIn.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Loads a snapshot by mapping it in memory and handing every record to a loader, in the same order they have been written down in.
+	 * @param fileToBeLoaded cannot be null.
+	 * @param magic magic number the snapshot must start with.
+	 * @param loader cannot be null.
+	 * @return the number of records loaded.
+	 * @throws IOException if I/O error(s) occur or if the snapshot is too large to be mapped in memory.
+	 * @throws IllegalArchiveException if the file is not a complete snapshot with the given magic number or any record is not valid.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	static int load(final File fileToBeLoaded, final int magic, final Loader loader)
+	throws IOException, IllegalArchiveException, NullPointerException
+	{
+		Objects.requireNonNull(fileToBeLoaded, "File" + NULL_ERROR);
+		Objects.requireNonNull(loader, "Loader" + NULL_ERROR);
+
+		final ByteBuffer buffer;
+
+		try (final FileChannel c = FileChannel.open(fileToBeLoaded.toPath(), StandardOpenOption.READ))
+		{
+			final long size = c.size();
+			if (size > Integer.MAX_VALUE) throw new IOException(fileToBeLoaded + " is too large to be mapped in memory.");
+			if (size < HEADERSIZE + Integer.BYTES + TRAILERSIZE) throw new IllegalArchiveException(INVALID_SNAPSHOT);
+			buffer = c.map(FileChannel.MapMode.READ_ONLY, 0, size); // the mapping outlives the channel
+		}
+
+		try
+		{
+			final int size = buffer.capacity();
+			if (buffer.getInt(0) != magic || buffer.getInt(Integer.BYTES) != VERSION || buffer.getInt(size - Integer.BYTES) != magic)
+				throw new IllegalArchiveException(INVALID_SNAPSHOT);
+			final long dictionaryPosition = buffer.getLong(size - TRAILERSIZE);
+			final int records = buffer.getInt(size - TRAILERSIZE + Long.BYTES);
+			if (dictionaryPosition < HEADERSIZE || dictionaryPosition > size - TRAILERSIZE || records < 0)
+				throw new IllegalArchiveException(INVALID_SNAPSHOT);
+
+			// the dictionary is decoded first, as records refer to it:
+			buffer.position((int) dictionaryPosition);
+			final int n = buffer.getInt();
+			if (n < 0 || n > buffer.remaining() / Integer.BYTES) throw new IllegalArchiveException(INVALID_SNAPSHOT);
+			final String[] dictionary = new String[n];
+			for (int i = 0; i < dictionary.length; i++)
+			{
+				final int length = buffer.getInt();
+				if (length < 0 || length > buffer.remaining()) throw new IllegalArchiveException(INVALID_SNAPSHOT);
+				final byte[] bytes = new byte[length];
+				buffer.get(bytes);
+				dictionary[i] = new String(bytes, StandardCharsets.UTF_8);
+			}
+
+			buffer.position(HEADERSIZE);
+			for (int i = 0; i < records; i++)
+			{
+				final int length = buffer.getInt();
+				if (length < 0 || length > dictionaryPosition - buffer.position()) throw new IllegalArchiveException(INVALID_SNAPSHOT);
+				final ByteBuffer record = buffer.slice();
+				record.limit(length);
+				loader.load(record, dictionary);
+				buffer.position(buffer.position() + length);
+			}
+			return records;
+		}
+		catch (BufferUnderflowException | IndexOutOfBoundsException | IllegalArgumentException illegalSnapshot)
+		{
+			throw new IllegalArchiveException(INVALID_SNAPSHOT);
+		}
+	}
+}
@@ -0,0 +1,67 @@
+package server.storage;
+
+import java.util.Iterator;
+import java.util.TreeSet;
+
+/**
+ * Materialized feed of a single user: a bounded set holding the IDs of the posts pushed to them, ordered by ID i.e. by recency.
+ * Once the inbox is full, pushing a post drops the oldest one: it still holds every post of the feed newer than its oldest one,
+ * the older ones are to be pulled. IDs are only removed otherwise once the posts are no longer shared by anybody the user follows:
+ * deleted posts are to be skipped by readers.
+ * This class is not thread-safe, PostMap holds the monitor of an inbox whenever it is using it.
+ * @author Giacomo Trapani.
+ */
+class FeedInbox
+{
+	/** Maximum number of posts an inbox holds. */
+	static final int CAPACITY = 1024;
+
+	/** IDs of the posts pushed to this inbox. */
+	private final TreeSet<Integer> ids = new TreeSet<>();
+	/** Toggled on once a post has been dropped. */
+	private boolean truncated = false;
+
+	/**
+	 * Pushes a post to this inbox, dropping the oldest one if it is full.
+	 * @param id ID of the post.
+	 */
+	void push(final int id)
+	{
+		if (ids.add(id) && ids.size() > CAPACITY)
+		{
+			ids.pollFirst();
+			truncated = true;
+		}
+	}
+
+	/**
+	 * Removes a post from this inbox, if it holds it.
+	 * @param id ID of the post.
+	 */
+	void remove(final int id)
+	{
+		ids.remove(id);
+	}
+
+	/** Returns true if posts older than the oldest one held have been dropped. */
+	boolean isTruncated()
+	{
+		return truncated;
+	}
+
+	/** Returns the ID of the oldest post held, Integer.MAX_VALUE if there are none. */
+	int oldest()
+	{
+		return ids.isEmpty() ? Integer.MAX_VALUE : ids.first();
+	}
+
+	/**
+	 * Iterates over the IDs held which are lower than a certain one, from the newest.
+	 * @param before every ID returned is lower than this one.
+	 * @return an iterator which is not to be used once this inbox has been modified.
+	 */
+	Iterator<Integer> newestBefore(final int before)
+	{
+		return ids.headSet(before, false).descendingIterator();
+	}
+}
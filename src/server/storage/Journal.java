@@ -0,0 +1,383 @@
+package server.storage;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only write-ahead journal of the mutations of a storage, split into segments named after the journal followed by their sequence number.
+ * Every record is framed by its length and its CRC32 checksum, so that a record torn by a crash is detected and left out while replaying.
+ * Records are buffered as they are appended and group committed: whoever commits first writes down and fsyncs every record appended so far,
+ * the ones committing meanwhile find theirs already durable.
+ * A new segment is started whenever the storage takes a snapshot, without any I/O as it is opened in advance: the previous one is written down,
+ * fsynced and closed once requests have been resumed, and the ones before the new segment are deleted once the snapshot has been written:
+ * should the server crash in between, they are replayed once more on top of the snapshot. Replaying a record which is already part of the
+ * snapshot must leave the storage as it is: records which are not idempotent carry the sequence number of the mutation they journal,
+ * e.g. the number of comments of a post before it has been commented, so that the replayer can tell whether it has already been applied.
+ * This class is thread-safe.
+ * @author Giacomo Trapani.
+ */
+class Journal
+{
+	/** Used to apply the records of a journal while replaying it. */
+	@FunctionalInterface
+	interface Replayer
+	{
+		/**
+		 * Applies a record.
+		 * @param type type of the record.
+		 * @param record fields of the record, in the same order they have been appended in.
+		 * @return true if the record has been applied, false if it could not be.
+		 * @throws IOException if the record is shorter than expected.
+		 */
+		boolean replay(final byte type, final DataInputStream record)
+		throws IOException;
+	}
+
+	/** Directory segments are stored in. */
+	private final File directory;
+	/** Name of the journal, shared by every segment. */
+	private final String name;
+	/** Sequence number of the segment records are written to, it is guarded by this journal's monitor. */
+	private long segment;
+	/** Channel of the segment records are written to, it is guarded by this journal's monitor and only written to while holding flushLock. */
+	private FileChannel channel;
+	/** Channel of the segment before the current one until it has been sealed, null if it has been: it is guarded by this journal's monitor. */
+	private FileChannel retired = null;
+	/** Frames appended to the retired segment but not written down yet, it is guarded by this journal's monitor. */
+	private byte[] retiredPending = null;
+	/** Position right after the last frame appended to the retired segment, it is guarded by this journal's monitor. */
+	private long retiredEnd = 0;
+	/** Channel of the segment after the current one, opened in advance so that rotate does not have to: it is guarded by this journal's monitor. */
+	private FileChannel next = null;
+	/** Sequence number of the segment next has been opened for. */
+	private long nextSegment = -1;
+	/** Frames appended but not written down yet, it is guarded by this journal's monitor. */
+	private ByteArrayOutputStream pending = new ByteArrayOutputStream();
+	/** Position right after the last frame appended, it is guarded by this journal's monitor. */
+	private long appended = 0;
+	/** Position right after the last frame which has been fsynced. */
+	private volatile long durable = 0;
+	/** Held while writing frames down, so that a single thread at a time does it on behalf of every other one. */
+	private final Object flushLock = new Object();
+	/** Number of records which could not be applied while replaying this journal. */
+	private int skipped = 0;
+
+	/** Number of bytes framing every record: its length and its checksum. */
+	private static final int FRAMESIZE = 2 * Integer.BYTES;
+	/** Part of the exception message when NPE is thrown. */
+	private static final String NULL_ERROR = " cannot be null.";
+
+	/**
+	 * Replays every segment of a journal, from the oldest, and opens it for new records to be appended to a new segment.
+	 * Every segment is replayed up to its first record which is torn or whose checksum does not match.
+	 * @param directory cannot be null, it is created if it does not exist.
+	 * @param name cannot be null.
+	 * @param replayer cannot be null, it is handed every record.
+	 * @return the opened journal.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	static Journal open(final File directory, final String name, final Replayer replayer)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(directory, "Directory" + NULL_ERROR);
+		Objects.requireNonNull(name, "Name" + NULL_ERROR);
+		Objects.requireNonNull(replayer, "Replayer" + NULL_ERROR);
+
+		final Journal journal = new Journal(directory, name);
+		final List<Long> segments = journal.segments();
+		for (long s : segments)
+			journal.skipped += replay(journal.segmentFile(s), replayer);
+		journal.segment = segments.isEmpty() ? 0 : segments.get(segments.size() - 1) + 1;
+		journal.channel = journal.openSegment(journal.segment);
+		journal.openNext();
+		return journal;
+	}
+
+	/** Default constructor. */
+	private Journal(final File directory, final String name)
+	{
+		this.directory = directory;
+		this.name = name;
+	}
+
+	/** Getter for the number of records which could not be applied while replaying this journal. */
+	int getSkipped()
+	{
+		return skipped;
+	}
+
+	/**
+	 * Appends a record to this journal, it is not durable until it has been committed.
+	 * @param type type of the record.
+	 * @param fields cannot be null, each one must be either a String, an Integer or a Double.
+	 * @return the position to be committed for the record to be durable.
+	 * @throws IllegalArgumentException if any field is neither a String, an Integer nor a Double.
+	 * @throws NullPointerException if any field is null.
+	 */
+	long append(final byte type, final Object... fields)
+	throws IllegalArgumentException, NullPointerException
+	{
+		final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		final DataOutputStream out = new DataOutputStream(bytes);
+		final CRC32 checksum = new CRC32();
+
+		try
+		{
+			out.writeByte(type);
+			for (Object f : fields)
+			{
+				if (f instanceof String) out.writeUTF((String) f);
+				else if (f instanceof Integer) out.writeInt((Integer) f);
+				else if (f instanceof Double) out.writeDouble((Double) f);
+				else throw new IllegalArgumentException("Field " + Objects.requireNonNull(f, "Field" + NULL_ERROR) + " cannot be journaled.");
+			}
+		}
+		catch (IOException shouldNeverBeThrown) { throw new UncheckedIOException(shouldNeverBeThrown); }
+		final byte[] record = bytes.toByteArray();
+		checksum.update(record);
+
+		synchronized (this)
+		{
+			final DataOutputStream frame = new DataOutputStream(pending);
+			try
+			{
+				frame.writeInt(record.length);
+				frame.writeInt((int) checksum.getValue());
+				frame.write(record);
+			}
+			catch (IOException shouldNeverBeThrown) { throw new UncheckedIOException(shouldNeverBeThrown); }
+			appended += FRAMESIZE + record.length;
+			return appended;
+		}
+	}
+
+	/**
+	 * Blocks until every record up to the given position is durable.
+	 * @param position returned by append.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	void commit(final long position)
+	throws IOException
+	{
+		if (durable >= position) return;
+		synchronized (flushLock)
+		{
+			if (durable >= position) return; // committed by whoever held the lock before
+			flush();
+		}
+	}
+
+	/**
+	 * Starts a new segment: every record appended so far belongs to the current one, which is retired. It does not perform any I/O
+	 * as long as the previous segment has been sealed, as the new segment has been opened in advance: it is meant to be invoked while
+	 * requests are stopped, seal is to be invoked afterwards.
+	 * It is to be invoked while no records are being appended.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	void rotate()
+	throws IOException
+	{
+		final boolean unsealed;
+		synchronized (this) { unsealed = retired != null; }
+		if (unsealed) seal(); // the backup which has retired it has failed before sealing it
+
+		synchronized (this)
+		{
+			retired = channel;
+			retiredPending = pending.toByteArray();
+			retiredEnd = appended;
+			pending.reset();
+			segment++;
+			if (next != null && nextSegment == segment) channel = next;
+			else
+			{
+				if (next != null) next.close();
+				channel = openSegment(segment);
+			}
+			next = null;
+		}
+	}
+
+	/**
+	 * Writes down, fsyncs and closes the segment retired by rotate, then opens the one after the current segment in advance.
+	 * Sealing a journal with no retired segment has no effect.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	void seal()
+	throws IOException
+	{
+		synchronized (flushLock) { sealRetired(); }
+	}
+
+	/**
+	 * Deletes every segment before the current one, it is to be invoked once the snapshot taken when it has been started has been written.
+	 * The retired segment is sealed first, if it has not been yet.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	void truncate()
+	throws IOException
+	{
+		final long current;
+		seal();
+		synchronized (this) { current = segment; }
+		for (long s : segments())
+			if (s < current && !segmentFile(s).delete()) throw new IOException("Journal segment " + segmentFile(s) + " could not be deleted.");
+	}
+
+	/** Writes down and fsyncs every frame appended so far, it is to be invoked while holding flushLock. */
+	private void flush()
+	throws IOException
+	{
+		final byte[] batch;
+		final long end;
+		final FileChannel c;
+
+		sealRetired(); // its frames come before any other
+		synchronized (this)
+		{
+			batch = pending.toByteArray();
+			pending.reset();
+			end = appended;
+			c = channel;
+		}
+		final ByteBuffer buffer = ByteBuffer.wrap(batch);
+		while (buffer.hasRemaining()) c.write(buffer);
+		c.force(false);
+		if (end > durable) durable = end;
+	}
+
+	/** Seals the retired segment, if any: it is to be invoked while holding flushLock. */
+	private void sealRetired()
+	throws IOException
+	{
+		final FileChannel c;
+		final byte[] batch;
+		final long end;
+
+		synchronized (this)
+		{
+			c = retired;
+			batch = retiredPending;
+			end = retiredEnd;
+		}
+		if (c == null) return;
+		final ByteBuffer buffer = ByteBuffer.wrap(batch);
+		while (buffer.hasRemaining()) c.write(buffer);
+		c.force(false);
+		c.close();
+		synchronized (this)
+		{
+			retired = null;
+			retiredPending = null;
+		}
+		if (end > durable) durable = end;
+		openNext();
+	}
+
+	/** Opens the segment after the current one in advance, unless it has already been. */
+	private void openNext()
+	throws IOException
+	{
+		final long s;
+		synchronized (this)
+		{
+			if (next != null && nextSegment == segment + 1) return;
+			s = segment + 1;
+		}
+		final FileChannel n = openSegment(s);
+		synchronized (this)
+		{
+			if (next == null && segment + 1 == s)
+			{
+				next = n;
+				nextSegment = s;
+				return;
+			}
+		}
+		n.close(); // rotated meanwhile
+	}
+
+	/** Returns the sequence numbers of the segments of this journal, sorted from the oldest. */
+	private List<Long> segments()
+	{
+		final List<Long> r = new ArrayList<>();
+		final String[] files = directory.list();
+
+		if (files == null) return r;
+		for (String f : files)
+		{
+			if (!f.startsWith(name + ".")) continue;
+			try { r.add(Long.parseLong(f.substring(name.length() + 1))); }
+			catch (NumberFormatException notASegment) { continue; }
+		}
+		r.sort(null);
+		return r;
+	}
+
+	/** Returns the file the segment with the given sequence number is stored in. */
+	private File segmentFile(final long s)
+	{
+		return new File(directory, name + "." + s);
+	}
+
+	/** Opens the segment with the given sequence number for records to be appended to it. */
+	private FileChannel openSegment(final long s)
+	throws IOException
+	{
+		directory.mkdirs();
+		return FileChannel.open(segmentFile(s).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+	}
+
+	/**
+	 * Replays a segment up to its first record which is torn or whose checksum does not match.
+	 * @return the number of records which could not be applied.
+	 */
+	private static int replay(final File segmentFile, final Replayer replayer)
+	throws IOException
+	{
+		final long size = segmentFile.length();
+		int skipped = 0;
+
+		try (final InputStream is = new BufferedInputStream(new FileInputStream(segmentFile)); final DataInputStream in = new DataInputStream(is))
+		{
+			while (true)
+			{
+				final int length;
+				final int expected;
+				final byte[] record;
+				final CRC32 checksum = new CRC32();
+				try
+				{
+					length = in.readInt();
+					expected = in.readInt();
+					if (length <= 0 || length > size) return skipped;
+					record = new byte[length];
+					in.readFully(record);
+				}
+				catch (EOFException tornOrOver) { return skipped; }
+				checksum.update(record);
+				if ((int) checksum.getValue() != expected) return skipped;
+				final DataInputStream fields = new DataInputStream(new ByteArrayInputStream(record));
+				try { if (!replayer.replay(fields.readByte(), fields)) skipped++; }
+				catch (EOFException malformed) { skipped++; }
+			}
+		}
+	}
+}
@@ -1,5 +1,6 @@
 package server.storage;
 
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -9,19 +10,25 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.channels.FileChannel;
 import java.nio.file.StandardOpenOption;
+import java.util.AbstractMap.SimpleEntry;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.ConcurrentModificationException;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
+import java.util.NavigableSet;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.PriorityQueue;
 import java.util.Set;
 import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
@@ -30,6 +37,7 @@ import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
 
+import api.PostPreview;
 import server.post.InvalidCommentException;
 import server.post.InvalidGeneratorException;
 import server.post.InvalidPostException;
@@ -40,7 +48,10 @@ import server.post.Post.GainAndCurators;
 import server.post.Post.Vote;
 
 /**
- * Post storage backed by a hashmap. This class is thread-safe.
+ * Post storage backed by a hashmap. This class is thread-safe: its indexes are concurrent maps and sets, a feed is locked only while
+ * it is being read or written and a post only while it is being modified or deleted, so that writers on different entities never contend.
+ * Backups only stop requests while taking a snapshot of the storage, the posts making it up are copied right before being modified.
+ * The number of cycles of the Gain formula run so far is backed up on its own, next to the file the posts' mutable data or snapshot is stored in.
  * @author Giacomo Trapani.
  */
 public class PostMap extends Storage implements PostStorage
@@ -51,20 +62,84 @@ public class PostMap extends Storage implements PostStorage
 	private Map<Integer, Post> postsToBeBackedUp = null;
 	/** Toggled on if this is the first backup and the storage has been recovered from a JSON file. */
 	private boolean flag = false;
-	/** Toggled on if a post has been deleted since the last backup. */
-	private boolean flush = false;
-	/** Maps an username to the IDs of each and every post they are the author of. */
-	private Map<String, Set<Integer>> postsByAuthor = null;
-
-	/** Used to allow for every method to run concurrently as long as a backup is not occurring. */
+	/** Toggled on if a post has been deleted since the last backup or if an append to the file posts are stored in has been interrupted. */
+	private volatile boolean flush = false;
+	/** IDs of the posts modified since the last backup, it is only replaced while holding backupLock's write lock. */
+	private Set<Integer> modified = ConcurrentHashMap.newKeySet();
+	/** Number of records stored inside the file posts' mutable data is stored in, it is only accessed by backups. */
+	private int interactionsRecords = 0;
+	/** Maps an username to the IDs of each and every post on their blog, sorted by recency. */
+	private Map<String, NavigableSet<Integer>> postsByAuthor = null;
+	/** Maps an username to their materialized feed, it is missing if it has yet to be built or it has been invalidated. */
+	private Map<String, FeedInbox> feeds = new ConcurrentHashMap<>();
+	/** Authors with too many followers for their posts to be pushed to their feeds: they are pulled whenever a feed is read instead. */
+	private Set<String> pulledAuthors = ConcurrentHashMap.newKeySet();
+	/** Number of cycles of the Gain formula run so far, a post is run against the ones started after it has been created. */
+	private final AtomicInteger cycles = new AtomicInteger(0);
+
+	/** Snapshot of the posts being backed up, it is null if no backup is in progress. It is only replaced while holding backupLock's write lock. */
+	private volatile Snapshot<Integer, Post, ?> snapshot = null;
+
+	/** Used to allow for every method to run concurrently as long as a backup is not taking a snapshot of the storage. */
 	private ReentrantReadWriteLock backupLock = new ReentrantReadWriteLock(true);
-	/** Used to allow for every method not directly editing this class' fields to run concurrently. */
-	private ReentrantReadWriteLock dataAccessLock = new ReentrantReadWriteLock(true);
 
 	/** Part of the exception message when NPE is thrown. */
 	private static final String NULL_ERROR = " cannot be null.";
 	/** Part of the exception message when no posts could be found for a certain id. */
 	private static final String INVALID_ID_ERROR = "There are no posts with id ";
+	/** Number of followers above which an author's posts are no longer pushed to their followers' feeds. */
+	private static final int FANOUTLIMIT = 1000;
+	/** Name of the journal of this storage. */
+	private static final String JOURNAL_NAME = "posts";
+	/** Type of the records journaling a new post. */
+	private static final byte POST = 0;
+	/** Type of the records journaling a vote. */
+	private static final byte RATE = 1;
+	/** Type of the records journaling a comment. */
+	private static final byte COMMENT = 2;
+	/** Type of the records journaling a rewin. */
+	private static final byte REWIN = 3;
+	/** Type of the records journaling a deletion. */
+	private static final byte DELETE = 4;
+	/** Type of the records journaling the calculation of a post's gain, which resets its recent interactions. */
+	private static final byte GAIN = 5;
+	/** Type of the records journaling the start of a cycle of the Gain formula. */
+	private static final byte CYCLE = 6;
+	/** Magic number of the binary snapshots of this storage. */
+	private static final int SNAPSHOT_MAGIC = 0x57535053;
+	/** Strategy used to back up posts' immutable data. CAVEAT: this strategy excludes every non-immutable field. */
+	private static final ExclusionStrategy IMMUTABLE_DATA = new ExclusionStrategy()
+	{
+		public boolean shouldSkipField(FieldAttributes f)
+		{
+			// skips everything but "id", "author", "title", "contents" and "created" fields specified inside RewinPost class.
+			return f.getDeclaringClass() == RewinPost.class && !f.getName().equals("id") && !f.getName().equals("author") &&
+				!f.getName().equals("title") && !f.getName().equals("contents") && !f.getName().equals("created");
+		}
+
+		public boolean shouldSkipClass(Class<?> clazz)
+		{
+			return false;
+		}
+	};
+	/** Strategy used to back up posts' mutable data. */
+	private static final ExclusionStrategy MUTABLE_DATA = new ExclusionStrategy()
+	{
+		public boolean shouldSkipField(FieldAttributes f)
+		{
+			// skips everything but "id", "comments", "rewonBy", "upvotedBy", "downvotedBy", "lastCycle", "newVotes", "newCommentsBy"
+			// and "newCurators" fields specified inside RewinPost class.
+			return f.getDeclaringClass() == RewinPost.class && !f.getName().equals("id") && !f.getName().equals("comments")
+					&& !f.getName().equals("rewonBy") && !f.getName().equals("upvotedBy") && !f.getName().equals("downvotedBy")
+					&& !f.getName().equals("lastCycle")  && !f.getName().equals("newVotes")
+					&& !f.getName().equals("newCommentsBy") && !f.getName().equals("newCurators");
+		}
+
+		public boolean shouldSkipClass(Class<?> clazz)
+		{
+			return false;
+		}
+	};
 
 	/** Default constructor. */
 	public PostMap()
@@ -72,9 +147,9 @@ public class PostMap extends Storage implements PostStorage
 		if (!Post.isIDGenerated())
 		try { Post.generateID(); }
 		catch (InvalidGeneratorException concurrentCreation) { throw new ConcurrentModificationException(concurrentCreation); }
-		postsBackedUp = new HashMap<>();
-		postsToBeBackedUp = new HashMap<>();
-		postsByAuthor = new HashMap<>();
+		postsBackedUp = new ConcurrentHashMap<>();
+		postsToBeBackedUp = new ConcurrentHashMap<>();
+		postsByAuthor = new ConcurrentHashMap<>();
 		flag = false;
 	}
 
@@ -85,116 +160,124 @@ public class PostMap extends Storage implements PostStorage
 		if (!Post.isIDGenerated())
 		try { Post.generateID(value); }
 		catch (InvalidGeneratorException concurrentCreation) { throw new ConcurrentModificationException(concurrentCreation); }
-		postsBackedUp = new HashMap<>();
-		postsToBeBackedUp = new HashMap<>();
-		postsByAuthor = new HashMap<>();
+		postsBackedUp = new ConcurrentHashMap<>();
+		postsToBeBackedUp = new ConcurrentHashMap<>();
+		postsByAuthor = new ConcurrentHashMap<>();
 		flag = false;
 	}
 
 	public Map<String, GainAndCurators> calculateGains()
 	{
 		Map<String, GainAndCurators> map = new HashMap<>();
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			final int cycle = cycles.incrementAndGet();
+			position = append(CYCLE, cycle);
+			// posts with no new interactions are worth nothing and are left untouched, so that they are neither journaled nor backed up again:
+			for (Post p: postsBackedUp.values())
 			{
-				dataAccessLock.readLock().lock();
-				for (Post p: postsBackedUp.values())
-				map.put(p.getAuthor(), p.getGainAndCurators());
-				for (Post p: postsToBeBackedUp.values())
-				map.put(p.getAuthor(), p.getGainAndCurators());
-				return map;
+				if (getPostByID(p.getID()) == null) continue; // deleted while being backed up
+				synchronized (p)
+				{
+					if (!p.hasNewInteractions()) continue;
+					preserve(p);
+					map.put(p.getAuthor(), p.getGainAndCurators(cycle));
+					position = append(GAIN, p.getID(), cycle);
+				}
 			}
-			finally { dataAccessLock.readLock().unlock(); }
+			for (Post p: postsToBeBackedUp.values())
+			synchronized (p)
+			{
+				if (!p.hasNewInteractions()) continue;
+				map.put(p.getAuthor(), p.getGainAndCurators(cycle));
+				position = append(GAIN, p.getID(), cycle);
+			}
+			return map;
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
 		}
-		finally { backupLock.readLock().unlock(); }
 	}
 
-	public int handleCreatePost(final String author, final String title, final String contents)
+	public int handleCreatePost(final String author, final UserStorage users, final String title, final String contents)
 	throws InvalidPostException, InvalidGeneratorException, NullPointerException
 	{
+		Objects.requireNonNull(users, "User storage" + NULL_ERROR);
+
 		Post p = null;
 		int postID = -1;
+		final int created = cycles.get();
 		
 		p = new RewinPost(Objects.requireNonNull(author, "Author" + NULL_ERROR),
 				Objects.requireNonNull(title, "Title" + NULL_ERROR),
-				Objects.requireNonNull(contents, "Contents" + NULL_ERROR));
-		Set<Integer> tmp = new HashSet<>();
-
+				Objects.requireNonNull(contents, "Contents" + NULL_ERROR), created);
 		postID = p.getID();
-		tmp.add(postID);
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			// locked until it has been journaled, so that no records about it can be appended before:
+			synchronized (p)
 			{
-				dataAccessLock.writeLock().lock();
-				postsToBeBackedUp.put(postID, p);
-				postsByAuthor.compute(author, (k, v) -> v == null ? tmp : Stream.concat(tmp.stream(), v.stream()).collect(Collectors.toSet()));
-				return postID;
+				add(p);
+				position = append(POST, postID, author, title, contents, created);
 			}
-			finally { dataAccessLock.writeLock().unlock(); }
+			fanOut(author, users, postID);
+			return postID;
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
 		}
-		finally { backupLock.readLock().unlock(); }
 	}
 
-	public Set<String> handleBlog(final String author)
-	throws NullPointerException
+	public List<PostPreview> handleBlog(final String author, final int before, final int limit)
+	throws IllegalArgumentException, NullPointerException
 	{
 		Objects.requireNonNull(author, "Author" + NULL_ERROR);
-
-		Set<String> r = new HashSet<>();
-		Set<Integer> postsIDs = null;
+		if (limit <= 0) throw new IllegalArgumentException("Limit must be greater than zero.");
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				postsIDs = postsByAuthor.get(author);
-				if (postsIDs == null) return r;
-				postsIDs.forEach(id ->
-				{
-					final Post p;
-					if ((p = getPostByID(id)) == null) throw new IllegalStateException("Posts' storage is not in a consistent state."); // should never happen
-					r.add(postToPreview(p));
-				});
-
-				return r;
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			return mergeNewestFirst(Collections.singletonList(newestBefore(author, before)), limit);
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
 
-	public Set<String> handleShowFeed(final String username, final UserStorage users)
-	throws NoSuchUserException, NullPointerException
+	public List<PostPreview> handleShowFeed(final String username, final UserStorage users, final int before, final int limit)
+	throws IllegalArgumentException, NoSuchUserException, NullPointerException
 	{
 		Objects.requireNonNull(username, "Username" + NULL_ERROR);
 		Objects.requireNonNull(users, "User storage" + NULL_ERROR);
+		if (limit <= 0) throw new IllegalArgumentException("Limit must be greater than zero.");
 
-		Set<String> r = new HashSet<>();
+		final List<Iterator<Integer>> sources = new ArrayList<>();
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			FeedInbox inbox = feeds.get(username);
+			if (inbox == null) inbox = buildFeed(username, users); // pulling every post once, the feed is kept up to date afterwards
+			synchronized (inbox)
 			{
-				dataAccessLock.readLock().lock();
-				users.handleListFollowing(username)
-					.stream()
-					.map(s -> new Gson().fromJson(s, JsonObject.class).get("username").getAsString())
-					.forEach(followingUsername ->
-						Optional.ofNullable(postsByAuthor.get(followingUsername)).orElseGet(HashSet<Integer>::new)
-						.forEach(id -> r.add(postToPreview(getPostByID(id))))
-					);
-				return r;
+				sources.add(inbox.newestBefore(before));
+				// posts by pulled authors never make it to the inbox, the ones older than those it holds may have been dropped:
+				if (!pulledAuthors.isEmpty() || inbox.isTruncated())
+					for (String followingUsername : users.getFollowing(username))
+					{
+						if (pulledAuthors.contains(followingUsername)) sources.add(newestBefore(followingUsername, before));
+						else if (inbox.isTruncated()) sources.add(newestBefore(followingUsername, Math.min(before, inbox.oldest())));
+					}
+				return mergeNewestFirst(sources, limit);
 			}
-			finally { dataAccessLock.readLock().unlock(); }
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -207,13 +290,8 @@ public class PostMap extends Storage implements PostStorage
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
-				return postToShow(p);
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
+			return postToShow(p);
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -224,28 +302,31 @@ public class PostMap extends Storage implements PostStorage
 		Objects.requireNonNull(username, "Username" + NULL_ERROR);
 
 		final Post p;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.writeLock().lock();
-				if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
+			if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
 
-				if (username.equals(p.getAuthor()))
+			if (username.equals(p.getAuthor()))
+			{
+				// locked so that it is not rewon while it is being removed from its rewinners' blogs:
+				synchronized (p)
 				{
-					postsToBeBackedUp.remove(p.getID());
-					postsBackedUp.remove(p.getID());
-					postsByAuthor.get(p.getAuthor()).remove(p.getID());
-					flush = true;
-					return true;
+					if (getPostByID(id) != p) throw new NoSuchPostException(INVALID_ID_ERROR + id); // deleted concurrently
+					remove(p);
+					position = append(DELETE, id);
 				}
-				return false;
+				return true;
 			}
-			finally { dataAccessLock.writeLock().unlock(); }
+			return false;
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
 		}
-		finally { backupLock.readLock().unlock(); }
 	}
 
 	public boolean handleRewin(final String username, final UserStorage users, final int id)
@@ -255,28 +336,32 @@ public class PostMap extends Storage implements PostStorage
 		Objects.requireNonNull(users, "User storage" + NULL_ERROR);
 
 		final Post p;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
+			if (feedContainsPost(username, users, p))
 			{
-				dataAccessLock.writeLock().lock();
-				if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
-				if (feedContainsPost(username, users, p))
+				synchronized (p)
 				{
-					if (p.addRewin(username))
-					{
-						Set<Integer> tmp = new HashSet<>(); tmp.add(id);
-						postsByAuthor.compute(username, (k, v) -> v == null ? tmp : Stream.concat(v.stream(), tmp.stream()).collect(Collectors.toSet()));
-						return true;
-					}
+					if (getPostByID(id) != p) throw new NoSuchPostException(INVALID_ID_ERROR + id); // deleted concurrently
+					preserve(p);
+					if (!p.addRewin(username)) return false;
+					postsByAuthor.computeIfAbsent(username, k -> new ConcurrentSkipListSet<>()).add(id);
+					position = append(REWIN, id, username);
 				}
-				return false;
+				fanOut(username, users, id);
+				return true;
 			}
-			finally { dataAccessLock.writeLock().unlock(); }
+			return false;
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
 		}
-		finally { backupLock.readLock().unlock(); }
 	}
 
 	public void handleRate(final String username, final UserStorage users, final int id, final Vote vote)
@@ -286,21 +371,26 @@ public class PostMap extends Storage implements PostStorage
 		Objects.requireNonNull(users, "User storage" + NULL_ERROR);
 
 		final Post p;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
+			if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
 
-				if (feedContainsPost(username, users, p)) p.addVote(username, vote);
-				else throw new InvalidVoteException("Post does not belong to specified user's feed.");
+			if (feedContainsPost(username, users, p)) synchronized (p)
+			{
+				preserve(p);
+				p.addVote(username, vote);
+				position = append(RATE, id, username, vote.name());
 			}
-			finally { dataAccessLock.readLock().unlock(); }
+			else throw new InvalidVoteException("Post does not belong to specified user's feed.");
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
 		}
-		finally { backupLock.readLock().unlock(); }
 	}
 
 	public void handleAddComment(final String author, final UserStorage users, final int id, final String contents)
@@ -311,87 +401,229 @@ public class PostMap extends Storage implements PostStorage
 		Objects.requireNonNull(contents, "Comment's contents" + NULL_ERROR);
 
 		final Post p;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
+			if (feedContainsPost(author, users, p)) synchronized (p)
 			{
-				dataAccessLock.readLock().lock();
-				if ((p = getPostByID(id)) == null) throw new NoSuchPostException(INVALID_ID_ERROR + id);
-				if (feedContainsPost(author, users, p))
+				preserve(p);
+				final int index = p.getCommentsNo();
+				p.addComment(author, contents);
+				position = append(COMMENT, id, index, author, contents);
+				return;
+			}
+			else throw new InvalidCommentException("Post does not belong to specified user's feed.");
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
+		}
+	}
+
+	public void updateFeedOnFollow(final String followerUsername, final String followedUsername)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(followerUsername, "Follower user's username" + NULL_ERROR);
+		Objects.requireNonNull(followedUsername, "Followed user's username" + NULL_ERROR);
+
+		try
+		{
+			backupLock.readLock().lock();
+			final FeedInbox inbox = feeds.get(followerUsername);
+			// feeds yet to be built are going to pull these posts anyway:
+			if (inbox == null || pulledAuthors.contains(followedUsername)) return;
+			synchronized (inbox) { postsByAuthor.getOrDefault(followedUsername, Collections.emptyNavigableSet()).forEach(inbox::push); }
+		}
+		finally { backupLock.readLock().unlock(); }
+	}
+
+	public void updateFeedOnUnfollow(final String followerUsername, final String followedUsername, final UserStorage users)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(followerUsername, "Follower user's username" + NULL_ERROR);
+		Objects.requireNonNull(followedUsername, "Followed user's username" + NULL_ERROR);
+		Objects.requireNonNull(users, "User storage" + NULL_ERROR);
+
+		try
+		{
+			backupLock.readLock().lock();
+			final FeedInbox inbox = feeds.get(followerUsername);
+			if (inbox != null)
+			{
+				final Set<String> following = users.getFollowing(followerUsername);
+				// the posts on the unfollowed user's blog may have been pushed by other users as well: those are kept.
+				synchronized (inbox)
 				{
-					p.addComment(author, contents);
-					return;
+					for (int id : postsByAuthor.getOrDefault(followedUsername, Collections.emptyNavigableSet()))
+					{
+						final Post p = getPostByID(id);
+						if (p == null || !p.isSharedByAny(following::contains)) inbox.remove(id);
+					}
 				}
-				else throw new InvalidCommentException("Post does not belong to specified user's feed.");
 			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if (pulledAuthors.contains(followedUsername)) pushAgain(followedUsername, users);
 		}
+		catch (NoSuchUserException e) { feeds.remove(followerUsername); } // nobody is going to read it
 		finally { backupLock.readLock().unlock(); }
 	}
 
+	public int openJournal(final File directory)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(directory, "Directory" + NULL_ERROR);
+
+		final Journal j = Journal.open(directory, JOURNAL_NAME, this::replay);
+		journal = j;
+		return j.getSkipped();
+	}
+
 	public void backupPosts(final File backupPostsImmutableDataFile, final File backupPostsMutableDataFile)
 	throws FileNotFoundException, IOException, NullPointerException
 	{
 		Objects.requireNonNull(backupPostsImmutableDataFile, "File" + NULL_ERROR);
 		Objects.requireNonNull(backupPostsMutableDataFile, "File" + NULL_ERROR);
 
-		ExclusionStrategy strat = null;
+		final Map<Integer, Post> newPosts;
+		final Set<Integer> changed;
+		final boolean nonEmptyFile;
+		final boolean rewrite;
+		final int c;
+		final Snapshot<Integer, Post, String> s = new Snapshot<>(List.of(viewOf(MUTABLE_DATA)));
+		final Journal j = journal;
 
-		strat = new ExclusionStrategy() // CAVEAT: this strategy excludes every non-immutable field
+		try
 		{
-			public boolean shouldSkipField(FieldAttributes f)
-			{
-				// skips everything but "id", "author", "title" and "contents" fields specified inside RewinPost class.
-				return f.getDeclaringClass() == RewinPost.class && !f.getName().equals("id") && !f.getName().equals("author") &&
-					!f.getName().equals("title") && !f.getName().equals("contents");
-			}
+			// requests are only stopped while the snapshot is being taken: posts are copied lazily, right before being modified.
+			backupLock.writeLock().lock();
+			newPosts = postsToBeBackedUp;
+			postsToBeBackedUp = new ConcurrentHashMap<>();
+			nonEmptyFile = !postsBackedUp.isEmpty() || flag;
+			postsBackedUp.putAll(newPosts);
+			rewrite = flush;
+			flush = false;
+			changed = modified;
+			modified = ConcurrentHashMap.newKeySet();
+			changed.addAll(newPosts.keySet());
+			flag = false; // this is not the first backup anymore
+			c = cycles.get();
+			if (j != null) j.rotate(); // records appended from now on are the ones missing from the snapshot
+			snapshot = s;
+		}
+		finally { backupLock.writeLock().unlock(); }
 
-			public boolean shouldSkipClass(Class<?> clazz)
+		try
+		{
+			if (j != null) j.seal(); // the segment retired while requests were stopped is fsynced now that they are not
+			// posts stored inside postsBackedUp are the ones making up the snapshot: new ones are added to postsToBeBackedUp
+			// and deleted ones are left in place until it has been written.
+			if (rewrite) backupNonCached(IMMUTABLE_DATA, backupPostsImmutableDataFile, postsBackedUp); // handles post deletion
+			else backupCached(IMMUTABLE_DATA, backupPostsImmutableDataFile, newPosts, nonEmptyFile); // "appends" new posts to the storage
+			// appends the records of the posts which have changed, the ones of deleted posts are only left out by overwriting the file
+			final int records = rewrite ? 0 : interactionsRecords;
+			interactionsRecords = 0; // overwritten by the next backup, should this one fail
+			interactionsRecords = backupSnapshot(s, postsBackedUp, changed, 0, records, backupPostsMutableDataFile);
+			backupCycles(c, backupPostsMutableDataFile);
+			if (j != null) j.truncate();
+		}
+		finally
+		{
+			try
 			{
-				return false;
+				backupLock.writeLock().lock();
+				s.getRemoved().forEach(postsBackedUp::remove);
+				snapshot = null;
 			}
-		};
+			finally { backupLock.writeLock().unlock(); }
+		}
+	}
+
+	public void snapshotPosts(final File snapshotFile)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(snapshotFile, "File" + NULL_ERROR);
+
+		final BinarySnapshot b = new BinarySnapshot(SNAPSHOT_MAGIC);
+		final Snapshot<Integer, Post, byte[]> s = new Snapshot<>(List.of(p -> b.encode(out -> p.writeTo(out, b::indexOf))));
+		final Journal j = journal;
+		final int c;
 
 		try
 		{
-			// No other methods are to be run while a backup is in progress.
+			// requests are only stopped while the snapshot is being taken: posts are copied lazily, right before being modified.
 			backupLock.writeLock().lock();
-			if (flush) // overwrites cached copy of the storage to handle post deletion
+			postsBackedUp.putAll(postsToBeBackedUp);
+			postsToBeBackedUp = new ConcurrentHashMap<>();
+			modified = ConcurrentHashMap.newKeySet(); // every post is written down each time
+			c = cycles.get();
+			if (j != null) j.rotate(); // records appended from now on are the ones missing from the snapshot
+			snapshot = s;
+		}
+		finally { backupLock.writeLock().unlock(); }
+
+		try
+		{
+			if (j != null) j.seal(); // the segment retired while requests were stopped is fsynced now that they are not
+			// deleted posts are left in place until the snapshot has been written.
+			b.write(s, postsBackedUp, snapshotFile);
+			backupCycles(c, snapshotFile);
+			if (j != null) j.truncate();
+		}
+		finally
+		{
+			try
 			{
-				flush = false;
-				backupNonCached(strat, backupPostsImmutableDataFile, postsBackedUp);
+				backupLock.writeLock().lock();
+				s.getRemoved().forEach(postsBackedUp::remove);
+				snapshot = null;
 			}
-			// "appends" new posts to the storage and adds them to the cache
-			backupCached(strat, backupPostsImmutableDataFile, postsBackedUp, postsToBeBackedUp, flag);
-			postsToBeBackedUp = new HashMap<>();
-			flag = false; // this is not the first backup anymore
+			finally { backupLock.writeLock().unlock(); }
+		}
+	}
 
-			// overwrites the file posts' mutable data is stored in
-			backupNonCached(new ExclusionStrategy()
-			{
-				public boolean shouldSkipField(FieldAttributes f)
-				{
-					// skips everything but "id", "comments", "rewonBy", "upvotedBy", "downvotedBy", "iterations", "newVotes", "newCommentsBy"
-					// and "newCurators" fields specified inside RewinPost class.
-					return f.getDeclaringClass() == RewinPost.class && !f.getName().equals("id") && !f.getName().equals("comments")
-							&& !f.getName().equals("rewonBy") && !f.getName().equals("upvotedBy") && !f.getName().equals("downvotedBy")
-							&& !f.getName().equals("iterations")  && !f.getName().equals("newVotes")
-							&& !f.getName().equals("newCommentsBy") && !f.getName().equals("newCurators");
-				}
+	/**
+	 * Recovers a PostMap given a binary snapshot of its posts and the number of cycles of the Gain formula backed up along with it.
+	 * Authors' and rewinners' blogs are indexed while the snapshot is being loaded.
+	 * Every post is yet to be backed up, so that exporting the storage to JSON writes down all of them.
+	 * @param snapshotFile cannot be null, must be a snapshot written by snapshotPosts.
+	 * @return the recovered PostMap.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if snapshotFile is null.
+	 * @throws IllegalArchiveException if snapshotFile is not a valid snapshot.
+	 * @throws InvalidGeneratorException if the generator is not in a consistent state.
+	 */
+	public static PostMap fromSnapshot(final File snapshotFile)
+	throws IOException, IllegalArchiveException, InvalidGeneratorException, NullPointerException
+	{
+		Objects.requireNonNull(snapshotFile, "File" + NULL_ERROR);
 
-				public boolean shouldSkipClass(Class<?> clazz)
-				{
-					return false;
-				}
-			}, backupPostsMutableDataFile, postsBackedUp);
-		}
-		finally { backupLock.writeLock().unlock(); }
+		final String INVALID_STORAGE = "The file to be loaded is not a valid storage.";
+		final Map<Integer, Post> parsedPosts = new ConcurrentHashMap<>();
+		final Map<String, NavigableSet<Integer>> parsedBlogs = new ConcurrentHashMap<>();
+
+		BinarySnapshot.load(snapshotFile, SNAPSHOT_MAGIC, (record, strings) ->
+		{
+			final Post p;
+			try { p = RewinPost.readFrom(record, i -> strings[i]); }
+			catch (InvalidCommentException illegalSnapshot) { throw new IllegalArchiveException(INVALID_STORAGE); }
+			if (parsedPosts.putIfAbsent(p.getID(), p) != null) throw new IllegalArchiveException(INVALID_STORAGE);
+			parsedBlogs.computeIfAbsent(p.getAuthor(), k -> new ConcurrentSkipListSet<>()).add(p.getID());
+			for (String rewinner : p.getRewinnersNames()) // rewon posts show up on their rewinners' blogs as well
+				parsedBlogs.computeIfAbsent(rewinner, k -> new ConcurrentSkipListSet<>()).add(p.getID());
+		});
+
+		PostMap map = new PostMap(parsedPosts.keySet().stream().max(Comparator.naturalOrder()).orElse(0)); // Posts with IDs up to parsedPosts' max id have already been generated.
+		map.postsToBeBackedUp = parsedPosts;
+		map.postsByAuthor = parsedBlogs;
+		map.cycles.set(loadCycles(snapshotFile));
+		return map;
 	}
 
 	/**
-	 * Recovers a PostMap given the two files used to backup the posts.
+	 * Recovers a PostMap given the two files used to backup the posts and the number of cycles of the Gain formula backed up along with them.
 	 * @param backupPostsFile cannot be null, must be a valid backup.
 	 * @param backupPostsMetadataFile cannot be null, must be a valid backup.
 	 * @return the recovered PostMap.
@@ -410,6 +642,8 @@ public class PostMap extends Storage implements PostStorage
 
 		final String INVALID_STORAGE = "The files to be parsed are not a valid storage.";
 
+		/** Toggled on if the file posts are stored in is to be overwritten by the next backup, as an append to it has been interrupted. */
+		boolean rewritePosts = false;
 		/** Maps an ID to the JsonObject which will be used to restore a RewinPost with said ID. */
 		Map<Integer, JsonObject> parsedPosts = new HashMap<>();
 
@@ -474,6 +708,16 @@ public class PostMap extends Storage implements PostStorage
 							}
 							break;
 
+						case "created":
+							try { parsedPosts.get(id).addProperty(name, reader.nextInt()); }
+							catch (NullPointerException e)
+							{
+								FileChannel.open(backupPostsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+								FileChannel.open(backupPostsMetadataFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+								throw new IllegalArchiveException(INVALID_STORAGE);
+							}
+							break;
+
 						default:
 								throw new IllegalArchiveException(INVALID_STORAGE);
 					}
@@ -481,17 +725,23 @@ public class PostMap extends Storage implements PostStorage
 				reader.endObject();
 			}
 			reader.endArray();
+			rewritePosts = interruptedAppend(reader);
 		}
 		
 		if (parsedPosts.isEmpty())
 		{
 			FileChannel.open(backupPostsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
 			FileChannel.open(backupPostsMetadataFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-			return new PostMap();
+			final PostMap map = new PostMap();
+			map.cycles.set(loadCycles(backupPostsMetadataFile));
+			return map;
 		}
 
 		// for (JsonObject o: parsedPosts.values()) System.out.println(o);
 
+		/** Number of records stored inside backupPostsMetadataFile, later ones superseding earlier ones about the same post. */
+		int records = 0;
+
 		// recovering posts' mutable data
 		try (final InputStream is = new FileInputStream(backupPostsMetadataFile); final JsonReader reader = new JsonReader(new InputStreamReader(is)))
 		{
@@ -508,7 +758,7 @@ public class PostMap extends Storage implements PostStorage
 				String name = null;
 				int id = -1;
 				int newVotes = -1;
-				int iterations = -1;
+				int lastCycle = 0;
 				/** Array of comments (Objects). */
 				JsonArray comments = new JsonArray();
 				/** Array of rewinners (String). */
@@ -595,8 +845,8 @@ public class PostMap extends Storage implements PostStorage
 							//System.out.println("\tnewCurators: " + newCurators);
 							break;
 
-						case "iterations":
-							iterations = reader.nextInt();
+						case "lastCycle":
+							lastCycle = reader.nextInt();
 							break;
 
 						default:
@@ -606,6 +856,7 @@ public class PostMap extends Storage implements PostStorage
 					}
 				}
 				reader.endObject();
+				records++;
 				try
 				{
 					// filling up the JsonObject with all the fields.
@@ -616,7 +867,7 @@ public class PostMap extends Storage implements PostStorage
 					parsedPosts.get(id).addProperty("newVotes", newVotes);
 					parsedPosts.get(id).add("newCommentsBy", newCommentsBy);
 					parsedPosts.get(id).add("newCurators", newCurators);
-					parsedPosts.get(id).addProperty("iterations", iterations);
+					parsedPosts.get(id).addProperty("lastCycle", lastCycle);
 				}
 				catch (NullPointerException e)
 				{
@@ -626,55 +877,295 @@ public class PostMap extends Storage implements PostStorage
 				}
 			}
 			reader.endArray();
+			if (interruptedAppend(reader)) records = 0; // overwritten by the next backup
 		}
 
 		// for (JsonObject o: parsedPosts.values()) System.out.println(o);
 
 		PostMap map = new PostMap(parsedPosts.keySet().stream().max(Comparator.naturalOrder()).orElse(0)); // Posts with IDs up to parsedPosts' max id have already been generated.
 		map.flag = true; // instantiated from a backup
+		map.interactionsRecords = records;
+		map.flush = rewritePosts;
+		map.cycles.set(loadCycles(backupPostsMetadataFile));
 		
 		/** Used to handle the recovery of the parsed RewinPosts. */
 		Gson generator = new Gson();
 		for (Entry<Integer, JsonObject> entry: parsedPosts.entrySet())
 		{
 			Post p = generator.fromJson(entry.getValue(), RewinPost.class);
-			Set<Integer> tmp = new HashSet<>(); tmp.add(entry.getKey());
 			map.postsBackedUp.put(entry.getKey(), p);
-			map.postsByAuthor.compute(p.getAuthor(), (k, v) -> v == null ? tmp : Stream.concat(v.stream(), tmp.stream()).collect(Collectors.toSet()));
+			map.postsByAuthor.computeIfAbsent(p.getAuthor(), k -> new ConcurrentSkipListSet<>()).add(entry.getKey());
+			for (String rewinner : p.getRewinnersNames()) // rewon posts show up on their rewinners' blogs as well
+				map.postsByAuthor.computeIfAbsent(rewinner, k -> new ConcurrentSkipListSet<>()).add(entry.getKey());
 		}
 		return map;
 	}
 
-	/** Method used to check whether a post belongs to a certain user's feed. */
-	private boolean feedContainsPost(final String username, final UserStorage users, final Post p)
+	/**
+	 * Method used to back up the number of cycles of the Gain formula run next to the file posts are backed up in, as a JSON array holding it alone.
+	 * The file is replaced all at once.
+	 */
+	private static void backupCycles(final int cycles, final File backupFile)
+	throws IOException
 	{
-		Integer ID = p.getID();
-		boolean result = false;
-		try
+		backupNonCached(MUTABLE_DATA, cyclesFileOf(backupFile), List.of(cycles));
+	}
+
+	/**
+	 * Method used to recover the number of cycles of the Gain formula run given the file posts are backed up in, 0 if it has never been backed up.
+	 * @throws IllegalArchiveException if the backup is not valid.
+	 */
+	private static int loadCycles(final File backupFile)
+	throws IOException, IllegalArchiveException
+	{
+		final File cyclesFile = cyclesFileOf(backupFile);
+
+		if (!cyclesFile.exists()) return 0;
+		try (final InputStream is = new FileInputStream(cyclesFile); final JsonReader reader = new JsonReader(new InputStreamReader(is)))
 		{
-			Iterator<Set<Integer>> it = users.handleListFollowing(username)
-				.stream()
-				.map(s -> new Gson().fromJson(s, JsonObject.class).get("username").getAsString())
-				.map(followingUsername -> Optional.ofNullable(postsByAuthor.get(followingUsername)).orElseGet(HashSet<Integer>::new))
-				.iterator();
-			while (it.hasNext() && !result)
+			reader.beginArray();
+			return reader.nextInt();
+		}
+		catch (EOFException | IllegalStateException | NumberFormatException e) { throw new IllegalArchiveException("The number of cycles backed up is not valid."); }
+	}
+
+	/** Method used to recover the file the number of cycles of the Gain formula run is backed up in, given the file posts are backed up in. */
+	private static File cyclesFileOf(final File backupFile)
+	{
+		return new File(backupFile.getPath() + ".cycles");
+	}
+
+	/** Method used to add a new post to the storage and to its author's blog. */
+	private void add(final Post p)
+	{
+		postsToBeBackedUp.put(p.getID(), p);
+		postsByAuthor.computeIfAbsent(p.getAuthor(), k -> new ConcurrentSkipListSet<>()).add(p.getID());
+	}
+
+	/** Method used to remove a post from the storage and from the blogs it shows up on. It is to be invoked while holding the post's monitor. */
+	private void remove(final Post p)
+	{
+		final Snapshot<Integer, Post, ?> s = snapshot;
+		if (postsToBeBackedUp.remove(p.getID()) == null)
+		{
+			if (s != null) s.remove(p.getID(), p); // part of the backup in progress: it is removed once it has been written
+			else postsBackedUp.remove(p.getID());
+		}
+		postsByAuthor.get(p.getAuthor()).remove(p.getID());
+		for (String rewinner : p.getRewinnersNames()) // feeds skip it lazily instead
+			Optional.ofNullable(postsByAuthor.get(rewinner)).ifPresent(ids -> ids.remove(p.getID()));
+		flush = true;
+	}
+
+	/**
+	 * Method used to apply a record of the journal.
+	 * @return true if it has been applied, false if it is about posts which do not exist or it is not valid.
+	 */
+	private boolean replay(final byte type, final DataInputStream record)
+	throws IOException
+	{
+		final int id = record.readInt();
+
+		if (type == CYCLE)
+		{
+			cycles.accumulateAndGet(id, Math::max); // the number of the cycle is written down in place of an ID
+			return true;
+		}
+
+		if (type == POST)
+		{
+			// recovered the same way the ones stored inside the backup are:
+			final JsonObject object = new JsonObject();
+			object.addProperty("id", id);
+			object.addProperty("author", record.readUTF());
+			object.addProperty("title", record.readUTF());
+			object.addProperty("contents", record.readUTF());
+			object.addProperty("created", record.readInt());
+			object.add("rewonBy", new JsonArray());
+			object.add("upvotedBy", new JsonArray());
+			object.add("downvotedBy", new JsonArray());
+			object.add("comments", new JsonArray());
+			object.addProperty("newVotes", 0);
+			object.add("newCommentsBy", new JsonObject());
+			object.add("newCurators", new JsonArray());
+			object.addProperty("lastCycle", 0);
+			if (getPostByID(id) != null) return true; // already part of the backup
+			add(new Gson().fromJson(object, RewinPost.class));
+			try { Post.skipIDs(id); }
+			catch (InvalidGeneratorException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); }
+			return true;
+		}
+
+		final Post p = getPostByID(id);
+		switch (type)
+		{
+			case RATE:
 			{
-				Set<Integer> tmp = it.next();
-				for (Integer i : tmp)
-				{
-					if (result) break;
-					result = i.equals(ID);
-				}
+				final String username = record.readUTF();
+				final String vote = record.readUTF();
+				if (p == null) return false;
+				final Vote v;
+				try { v = Vote.valueOf(vote); }
+				catch (IllegalArgumentException illegalRecord) { return false; }
+				preserve(p);
+				try { p.addVote(username, v); }
+				catch (InvalidVoteException alreadyApplied) { } // votes cannot be cast twice: it is already part of the backup
+				return true;
+			}
+
+			case COMMENT:
+			{
+				final int index = record.readInt();
+				final String author = record.readUTF();
+				final String contents = record.readUTF();
+				if (p == null || p.getCommentsNo() < index) return false;
+				if (p.getCommentsNo() > index) return true; // already part of the backup
+				preserve(p);
+				try { p.addComment(author, contents); }
+				catch (InvalidCommentException illegalRecord) { return false; }
+				return true;
+			}
+
+			case REWIN:
+			{
+				final String username = record.readUTF();
+				if (p == null) return false;
+				preserve(p);
+				p.addRewin(username);
+				postsByAuthor.computeIfAbsent(username, k -> new ConcurrentSkipListSet<>()).add(id);
+				return true;
+			}
+
+			case DELETE:
+				if (p == null) return true; // already part of the backup
+				remove(p);
+				return true;
+
+			case GAIN:
+			{
+				final int cycle = record.readInt();
+				if (p == null) return false;
+				if (p.getLastCycle() >= cycle) return true; // already part of the backup
+				preserve(p);
+				p.getGainAndCurators(cycle);
+				return true;
 			}
+
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * Method used to push a post to the feeds of an author's followers. Feeds yet to be built are skipped, as they are going to pull it.
+	 * It is to be invoked once the post has been added to the author's blog.
+	 */
+	private void fanOut(final String author, final UserStorage users, final int id)
+	{
+		if (pulledAuthors.contains(author)) return;
+		final Set<String> followers;
+		try { followers = users.getFollowers(author); }
+		catch (NoSuchUserException e) { return; } // nobody can be following them
+		if (followers.size() > FANOUTLIMIT)
+		{
+			pulledAuthors.add(author);
+			return;
+		}
+		for (String follower : followers)
+		{
+			final FeedInbox inbox = feeds.get(follower);
+			if (inbox != null) synchronized (inbox) { inbox.push(id); }
+		}
+	}
+
+	/**
+	 * Method used to push the posts of a pulled author to their followers' feeds again once they have few enough followers.
+	 * The author is no longer pulled before their posts are pushed, so that none published meanwhile is left out by fanOut.
+	 */
+	private void pushAgain(final String author, final UserStorage users)
+	throws NoSuchUserException
+	{
+		final Set<String> followers = users.getFollowers(author);
+		// halfway through the limit, so that an author whose followers hover around it is not pushed over and over again:
+		if (followers.size() > FANOUTLIMIT / 2 || !pulledAuthors.remove(author)) return;
+		final NavigableSet<Integer> posts = postsByAuthor.getOrDefault(author, Collections.emptyNavigableSet());
+		for (String follower : followers)
+		{
+			final FeedInbox inbox = feeds.get(follower);
+			if (inbox != null) synchronized (inbox) { posts.forEach(inbox::push); }
 		}
+	}
+
+	/**
+	 * Method used to build up a user's feed out of the posts of the users they are following, posts by pulled authors are left out.
+	 * The feed is published before being filled up, so that every post added to a blog after it has been read is pushed to it by fanOut.
+	 */
+	private FeedInbox buildFeed(final String username, final UserStorage users)
+	throws NoSuchUserException
+	{
+		final FeedInbox built = new FeedInbox();
+		final FeedInbox inbox;
+
+		synchronized (built)
+		{
+			if ((inbox = feeds.putIfAbsent(username, built)) != null) return inbox; // built concurrently
+			// pushed from the oldest, so that the newest ones are kept if there are too many:
+			users.getFollowing(username)
+				.stream()
+				.filter(followingUsername -> !pulledAuthors.contains(followingUsername))
+				.flatMap(followingUsername -> postsByAuthor.getOrDefault(followingUsername, Collections.emptyNavigableSet()).stream())
+				.sorted()
+				.forEach(built::push);
+		}
+		return built;
+	}
+
+	/** Method used to iterate over the IDs of the posts on a user's blog lower than a certain one, from the newest. */
+	private Iterator<Integer> newestBefore(final String username, final int before)
+	{
+		return postsByAuthor.getOrDefault(username, Collections.emptyNavigableSet()).headSet(before, false).descendingIterator();
+	}
+
+	/**
+	 * Method used to merge sources yielding IDs from the newest into the previews of the newest posts, stopping as soon as limit of them have been found.
+	 * Posts yielded by more than one source are returned once, deleted ones are skipped.
+	 */
+	private List<PostPreview> mergeNewestFirst(final List<Iterator<Integer>> sources, final int limit)
+	{
+		/** Sources yet to be exhausted, each paired with the next ID it yields. */
+		final PriorityQueue<Entry<Integer, Iterator<Integer>>> heads = new PriorityQueue<>((a, b) -> Integer.compare(b.getKey(), a.getKey()));
+		final List<PostPreview> r = new ArrayList<>();
+		int last = -1;
+
+		for (Iterator<Integer> it : sources)
+			if (it.hasNext()) heads.add(new SimpleEntry<>(it.next(), it));
+		while (r.size() < limit && !heads.isEmpty())
+		{
+			final Entry<Integer, Iterator<Integer>> head = heads.poll();
+			final int id = head.getKey();
+			if (head.getValue().hasNext()) heads.add(new SimpleEntry<>(head.getValue().next(), head.getValue()));
+			if (id == last) continue; // the same ID comes out of every source yielding it one after the other
+			last = id;
+			final Post p = getPostByID(id);
+			if (p != null) r.add(postToPreview(p));
+		}
+		return r;
+	}
+
+	/**
+	 * Method used to check whether a post belongs to a certain user's feed: it does if they are following either its author or any of its rewinners,
+	 * as a post shows up on the blogs of both.
+	 */
+	private boolean feedContainsPost(final String username, final UserStorage users, final Post p)
+	{
+		try { return users.feedContains(username, p); }
 		catch (NoSuchUserException | NullPointerException e) { return false; }
-		return result;
 	}
 
 	/** Method used to return the preview of a Post. */
-	private static String postToPreview(final Post p)
+	private static PostPreview postToPreview(final Post p)
 	{
-		return String.format("{ \"%s\": \"%d\",\n \"%s\": \"%s\",\n \"%s\": \"%s\"}", "id", p.getID(), "author", p.getAuthor(), "title", p.getTitle());
+		return new PostPreview(p.getID(), p.getAuthor(), p.getTitle());
 	}
 
 	/** Method used to return the shown version of a Post. */
@@ -685,11 +1176,24 @@ public class PostMap extends Storage implements PostStorage
 				"rewonBy", String.join(", ", p.getRewinnersNames()), "comments", String.join(", ", p.getComments()));
 	}
 
+	/**
+	 * Method used to mark a post as modified since the last backup, preserving it as it is right before it is modified if it is part of the backup in progress.
+	 * It is to be invoked while holding the post's monitor.
+	 */
+	private void preserve(final Post p)
+	{
+		final Snapshot<Integer, Post, ?> s = snapshot;
+		if (s != null && postsBackedUp.containsKey(p.getID())) s.preserve(p.getID(), p);
+		modified.add(p.getID());
+	}
+
 	/** Method used to recover a Post given its ID. It may return null. */
 	private Post getPostByID(final int id)
 	{
+		final Snapshot<Integer, Post, ?> s = snapshot;
 		Post p = postsBackedUp.get(id);
 		if (p == null) p = postsToBeBackedUp.get(id);
+		else if (s != null && s.isRemoved(id)) p = null; // deleted while being backed up
 		return p;
 	}
 }
@@ -3,8 +3,10 @@ package server.storage;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
-import java.util.Set;
+
+import api.PostPreview;
 
 import server.post.InvalidCommentException;
 import server.post.InvalidGeneratorException;
@@ -24,8 +26,9 @@ public interface PostStorage
 	public Map<String, GainAndCurators> calculateGains();
 
 	/**
-	 * Handles post creation.
+	 * Handles post creation, the post is pushed to the feeds of author's followers.
 	 * @param author cannot be null or empty.
+	 * @param users cannot be null.
 	 * @param title cannot be null or empty or longer than 20 characters.
 	 * @param contents cannot be null or empty or longer than 500 characters.
 	 * @return created post ID on success.
@@ -34,28 +37,34 @@ public interface PostStorage
 	 * @throws InvalidGeneratorException if posts' ID generator is not in a valid state.
 	 * @throws NullPointerException if any parameter is null.
 	 */
-	public int handleCreatePost(final String author, final String title, final String contents)
+	public int handleCreatePost(final String author, final UserStorage users, final String title, final String contents)
 	throws InvalidPostException, InvalidGeneratorException, NullPointerException;
 
 	/**
 	 * Handles blog command.
 	 * @param author cannot be null.
-	 * @return the previews of each and every post written or rewon by author as a set of strings written following JSON syntax.
+	 * @param before only posts whose ID is lower than this one are returned, Integer.MAX_VALUE to start from the newest.
+	 * @param limit maximum number of posts returned, must be greater than zero.
+	 * @return the previews of the newest posts written or rewon by author, from the newest.
+	 * @throws IllegalArgumentException if limit is not greater than zero.
 	 * @throws NullPointerException if author is null.
 	 */
-	public Set<String> handleBlog(final String author)
-	throws NullPointerException;
+	public List<PostPreview> handleBlog(final String author, final int before, final int limit)
+	throws IllegalArgumentException, NullPointerException;
 
 	/**
 	 * Handles show feed command.
 	 * @param username cannot be null, must belong to WINSOME registered users' set.
 	 * @param users cannot be null.
-	 * @return the previews of each and every post written or rewon by the users username is currently following as a set of strings following JSON syntax.
+	 * @param before only posts whose ID is lower than this one are returned, Integer.MAX_VALUE to start from the newest.
+	 * @param limit maximum number of posts returned, must be greater than zero.
+	 * @return the previews of the newest posts written or rewon by the users username is currently following, from the newest.
+	 * @throws IllegalArgumentException if limit is not greater than zero.
 	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
 	 * @throws NullPointerException if any parameter is null.
 	 */
-	public Set<String> handleShowFeed(final String username, final UserStorage users)
-	throws NoSuchUserException, NullPointerException;
+	public List<PostPreview> handleShowFeed(final String username, final UserStorage users, final int before, final int limit)
+	throws IllegalArgumentException, NoSuchUserException, NullPointerException;
 
 	/**
 	 * Handles show post command.
@@ -116,6 +125,38 @@ public interface PostStorage
 	public void handleAddComment(final String author, final UserStorage users, final int id, final String contents)
 	throws InvalidCommentException, NoSuchPostException, NullPointerException;
 
+	/**
+	 * Updates a user's feed once they have started following another user.
+	 * @param followerUsername cannot be null.
+	 * @param followedUsername cannot be null.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public void updateFeedOnFollow(final String followerUsername, final String followedUsername)
+	throws NullPointerException;
+
+	/**
+	 * Updates a user's feed once they have stopped following another user: the posts shared by the latter are removed from it,
+	 * unless they are shared by any other user the former is following.
+	 * @param followerUsername cannot be null.
+	 * @param followedUsername cannot be null.
+	 * @param users cannot be null, the storage the follow has already been removed from.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public void updateFeedOnUnfollow(final String followerUsername, final String followedUsername, final UserStorage users)
+	throws NullPointerException;
+
+	/**
+	 * Replays the journal stored inside the given directory on top of this storage, which is to be recovered from its last backup beforehand,
+	 * and has every following mutation (i.e. new posts, votes, comments, rewins, deletions and gains) appended to it, so that none is lost between two backups.
+	 * A mutation is durable once the method applying it has returned.
+	 * @param directory cannot be null, it is created if it does not exist.
+	 * @return the number of records which could not be replayed.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if directory is null.
+	 */
+	public int openJournal(final File directory)
+	throws IOException, NullPointerException;
+
 	/**
 	 * Backs up posts splitting the data between two files: one will contain their immutable data, the other
 	 * the mutable one.
@@ -128,4 +169,13 @@ public interface PostStorage
 	 */
 	public void backupPosts(final File backupPostsImmutableDataFile, final File backupPostsMutableDataFile)
 	throws FileNotFoundException, IOException, NullPointerException;
+
+	/**
+	 * Backs up posts as a binary snapshot, written down as a whole and loaded by mapping it in memory.
+	 * @param snapshotFile cannot be null, it is replaced once the snapshot has been written down.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if snapshotFile is null.
+	 */
+	public void snapshotPosts(final File snapshotFile)
+	throws IOException, NullPointerException;
 }
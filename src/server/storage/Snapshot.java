@@ -0,0 +1,93 @@
+package server.storage;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Copy-on-write snapshot of the mutable data of the entities of a storage, taken whenever a backup starts so that it can be written
+ * without stopping requests. Rather than copying every entity upfront, an entity is copied right before it is first modified
+ * after the snapshot has been taken: any other entity is still as it was at that time and it is read straight away.
+ * Every entity is described by one record for each view, i.e. for each file its data is split between, of type R.
+ * Every method dealing with an entity is to be invoked while holding its monitor, the same one held while modifying it.
+ * @author Giacomo Trapani.
+ */
+class Snapshot<K, V, R>
+{
+	/** Used to write down the records of every view. */
+	private final List<Function<? super V, ? extends R>> views;
+	/** Maps the key of every entity modified since the snapshot has been taken to its records as they were at that time. */
+	private final Map<K, List<R>> preserved = new ConcurrentHashMap<>();
+	/** Keys of the entities removed since the snapshot has been taken, they are still part of it. */
+	private final Set<K> removed = ConcurrentHashMap.newKeySet();
+
+	/**
+	 * Default constructor.
+	 * @param views cannot be null, used to write down the records of each view.
+	 * @throws NullPointerException if views is null.
+	 */
+	Snapshot(final List<Function<? super V, ? extends R>> views)
+	throws NullPointerException
+	{
+		this.views = new ArrayList<>(Objects.requireNonNull(views, "Views cannot be null."));
+	}
+
+	/**
+	 * Preserves the records of an entity which is about to be modified, unless they have already been.
+	 * @param key cannot be null.
+	 * @param value cannot be null.
+	 */
+	void preserve(final K key, final V value)
+	{
+		preserved.computeIfAbsent(key, k -> render(value));
+	}
+
+	/**
+	 * Preserves the records of an entity which is about to be removed: it is to be left in place until the snapshot has been written.
+	 * @param key cannot be null.
+	 * @param value cannot be null.
+	 */
+	void remove(final K key, final V value)
+	{
+		preserve(key, value);
+		removed.add(key);
+	}
+
+	/** Returns true if the entity has been removed since the snapshot has been taken. */
+	boolean isRemoved(final K key)
+	{
+		return removed.contains(key);
+	}
+
+	/** Getter for the keys of the entities removed since the snapshot has been taken. */
+	Set<K> getRemoved()
+	{
+		return removed;
+	}
+
+	/**
+	 * Getter for the record of a view of an entity as it was when the snapshot has been taken.
+	 * @param key cannot be null.
+	 * @param value cannot be null.
+	 * @param view index of the view, in the same order as the views.
+	 * @return the record.
+	 */
+	R recordOf(final K key, final V value, final int view)
+	{
+		final List<R> r = preserved.get(key);
+		return r != null ? r.get(view) : views.get(view).apply(value);
+	}
+
+	/** Writes down the record of every view of an entity. */
+	private List<R> render(final V value)
+	{
+		final List<R> r = new ArrayList<>(views.size());
+		for (Function<? super V, ? extends R> view : views)
+			r.add(view.apply(value));
+		return r;
+	}
+}
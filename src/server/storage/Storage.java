@@ -3,22 +3,27 @@ package server.storage;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.nio.ByteBuffer;
 import java.nio.CharBuffer;
 import java.nio.channels.FileChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
-import java.nio.file.Path;
+import java.nio.file.NoSuchFileException;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
 import java.util.Collection;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Map.Entry;
 import java.util.Objects;
-import java.util.Scanner;
+import java.util.function.Function;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.Gson;
 import com.google.gson.GsonBuilder;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
 /**
  * Abstract class with utility methods for storage classes.
@@ -26,11 +31,15 @@ import com.google.gson.GsonBuilder;
  */
 abstract class Storage
 {
-	private static final int BUFFERSIZE = 1024;
 	private static final String NULL_ERROR = " cannot be null";
+	/** Number of records a backup file can hold for every entity before it is overwritten with the up-to-date ones only. */
+	private static final int COMPACTIONRATIO = 2;
+
+	/** Journal every mutation is appended to, it is null if mutations are not journaled. */
+	volatile Journal journal = null;
 
 	/**
-	 * Creates a backup of a data structure and stores it inside given file which will be overwritten.
+	 * Creates a backup of a data structure and stores it inside given file which will be overwritten, refer to overwrite.
 	 * @param <K> type of the keys of the data Map.
 	 * @param <V> type of the values of the data Map.
 	 * @param strategy cannot be null. It is used to specify whichever fields are not to be stored.
@@ -46,39 +55,12 @@ abstract class Storage
 		Objects.requireNonNull(fileToBeStoredIn, "File" + NULL_ERROR);
 		Objects.requireNonNull(data, "Map" + NULL_ERROR);
 
-		Gson gson = new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create();
-
-		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		int i = 0;
-
-		fileToBeStoredIn.getParentFile().mkdirs();
-
-		try
-		(
-			final FileOutputStream fos = new FileOutputStream(fileToBeStoredIn, false);
-			final FileChannel c = fos.getChannel()
-		)
-		{
-			writeChar(c, '[');
-			for (Iterator<V> it = data.values().iterator(); it.hasNext(); i++)
-			{
-				V v = it.next();
-				final byte[] bytes = gson.toJson(v).getBytes();
-				for (int offset = 0; offset < bytes.length; offset += BUFFERSIZE)
-				{
-					buffer.clear();
-					buffer.put(bytes, offset, Math.min(BUFFERSIZE, bytes.length - offset));
-					buffer.flip();
-					while (buffer.hasRemaining()) c.write(buffer);
-				}
-				if (i < data.size() - 1) writeChar(c, ',');
-			}
-			writeChar(c, ']');
-		}
+		final Gson gson = new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create();
+		overwrite(fileToBeStoredIn, data.values().stream().map(v -> gson.toJson(v).getBytes()).iterator());
 	}
 
 	/**
-	 * Creates a backup of a data structure and stores it inside given file which will be overwritten.
+	 * Creates a backup of a data structure and stores it inside given file which will be overwritten, refer to overwrite.
 	 * @param <T> type of the items of the data Collection.
 	 * @param strategy cannot be null. It is used to specify whichever fields are not to be stored.
 	 * @param fileToBeStoredIn cannot be null.
@@ -95,129 +77,290 @@ abstract class Storage
 
 		if (data.isEmpty()) return;
 
-		Gson gson = new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create();
+		final Gson gson = new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create();
+		overwrite(fileToBeStoredIn, data.stream().map(t -> gson.toJson(t).getBytes()).iterator());
+	}
 
-		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		int i = 0;
+	/**
+	 * Creates a backup of a data structure and appends it to given file, refer to append: only the square bracket closing the backup
+	 * it already holds is overwritten, so that appending costs as much as the bytes appended. The file is overwritten instead if the backup it holds is empty.
+	 * @param <K> type of the keys of the data Map.
+	 * @param <V> type of the values of the data Map.
+	 * @param strategy cannot be null. It is used to specify whichever fields are not to be stored.
+	 * @param fileToBeStoredIn cannot be null.
+	 * @param toBeBackedUpData cannot be null.
+	 * @param nonEmptyFile should be toggled on if and only if given file already holds a non-empty backup.
+	 * @throws IOException if I/O error(s) occur(s) or if nonEmptyFile is toggled on and given file does not hold a JSON array.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public static <K, V> void backupCached(final ExclusionStrategy strategy, final File fileToBeStoredIn, Map<K,V> toBeBackedUpData,
+			boolean nonEmptyFile)
+	throws IOException
+	{
+		Objects.requireNonNull(strategy, "Exclusion strategy" + NULL_ERROR);
+		Objects.requireNonNull(fileToBeStoredIn, "File" + NULL_ERROR);
+		Objects.requireNonNull(toBeBackedUpData, "Map" + NULL_ERROR);
 
-		fileToBeStoredIn.getParentFile().mkdirs();
+		if (toBeBackedUpData.isEmpty()) return;
 
-		try
-		(
-			final FileOutputStream fos = new FileOutputStream(fileToBeStoredIn, false);
-			final FileChannel c = fos.getChannel()
-		)
+		final Gson gson = new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create();
+		final Iterator<byte[]> records = toBeBackedUpData.values().stream().map(v -> gson.toJson(v).getBytes()).iterator();
+
+		if (nonEmptyFile)
 		{
-			writeChar(c, '[');
-			for (Iterator<T> it = data.iterator(); it.hasNext(); i++)
+			try (final FileChannel c = FileChannel.open(fileToBeStoredIn.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE))
 			{
-				T t = it.next();
-				final byte[] bytes = gson.toJson(t).getBytes();
-				for (int offset = 0; offset < bytes.length; offset += BUFFERSIZE)
+				final long end = closingBracket(c);
+				if (end < 0) throw new IOException(fileToBeStoredIn + " does not hold a valid backup.");
+				if (!opensArray(c, end))
 				{
-					buffer.clear();
-					buffer.put(bytes, offset, Math.min(BUFFERSIZE, bytes.length - offset));
-					buffer.flip();
-					while (buffer.hasRemaining()) c.write(buffer);
+					append(c, end, records);
+					return;
 				}
-				if (i < data.size() - 1) writeChar(c, ',');
 			}
-			writeChar(c, ']');
 		}
+		overwrite(fileToBeStoredIn, records); // whatever is left of an empty backup is overwritten
 	}
 
 	/**
-	 * Creates a backup of a data structure and appends it to given file.
-	 * <br> backedUpData: POST(backedUpData) = PREV(backedUpData) U toBeBackedUpData.
-	 * <br> toBeBackedUpData: POST(toBeBackedUpData) = EMPTY_MAP with EMPTY_MAP denoting an empty map.
-	 * @param <K> type of the keys of the data Maps.
-	 * @param <V> type of the values of the data Maps.
-	 * @param strategy cannot be null. It is used to specify whichever fields are not to be stored.
+	 * Creates a backup of a view of the entities of a data structure as they were when a snapshot has been taken, given the file
+	 * already holds a backup of every entity but the changed ones: their records are appended to it, a later record of an entity superseding
+	 * the earlier ones, refer to append. The file is overwritten with the record of every entity instead if it holds no records yet or if it would
+	 * end up holding more than COMPACTIONRATIO records for every entity, refer to overwrite. Every entity is read while holding its monitor.
+	 * @param <K> type of the keys of the data Map.
+	 * @param <V> type of the values of the data Map.
+	 * @param snapshot cannot be null.
+	 * @param data cannot be null, it must hold every entity which is part of the snapshot and no others.
+	 * @param changed cannot be null, keys of the entities whose record is missing from the file or outdated.
+	 * @param view index of the view of the snapshot to be backed up.
+	 * @param records number of records the file holds, 0 if it is to be overwritten.
 	 * @param fileToBeStoredIn cannot be null.
-	 * @param backedUpData cannot be null.
-	 * @param toBeBackedUpData cannot be null.
-	 * @param firstBackupAndNonEmptyStorage should be toggled on if and only if this is the first backup and the storage is non-empty.
+	 * @return the number of records the file holds afterwards.
 	 * @throws IOException if I/O error(s) occur(s).
 	 * @throws NullPointerException if any parameter is null.
 	 */
-	public static <K, V> void backupCached(final ExclusionStrategy strategy, final File fileToBeStoredIn, final Map<K, V> backedUpData,
-			Map<K,V> toBeBackedUpData, boolean firstBackupAndNonEmptyStorage)
-	throws IOException
+	static <K, V> int backupSnapshot(final Snapshot<K, V, String> snapshot, final Map<K, V> data, final Collection<K> changed, final int view,
+			final int records, final File fileToBeStoredIn)
+	throws IOException, NullPointerException
 	{
-		Objects.requireNonNull(strategy, "Exclusion strategy" + NULL_ERROR);
+		Objects.requireNonNull(snapshot, "Snapshot" + NULL_ERROR);
+		Objects.requireNonNull(data, "Map" + NULL_ERROR);
+		Objects.requireNonNull(changed, "Changed keys" + NULL_ERROR);
 		Objects.requireNonNull(fileToBeStoredIn, "File" + NULL_ERROR);
-		Objects.requireNonNull(backedUpData, "Map" + NULL_ERROR);
-		Objects.requireNonNull(toBeBackedUpData, "Map" + NULL_ERROR);
-
-		if (toBeBackedUpData.isEmpty()) return;
 
-		Gson gson = new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create();
-		ByteBuffer buffer = ByteBuffer.allocate(BUFFERSIZE);
-		byte[] data = null;
-		Path from = null;
-		Path to = null;
-		Scanner scanner = null;
-		FileOutputStream fos = null;
-		FileChannel c = null;
-
-		// the file is non-empty:
-		// the closing square bracket is to be deleted.
-		if (!(backedUpData.isEmpty()) || firstBackupAndNonEmptyStorage)
+		if (records > 0 && records + changed.size() <= COMPACTIONRATIO * data.size())
 		{
-			File copy = new File("copy-map.json");
-			scanner = new Scanner(fileToBeStoredIn);
-			fos = new FileOutputStream(copy);
-			c = fos.getChannel();
-			while(scanner.hasNextLine())
+			if (changed.isEmpty()) return records;
+			try (final FileChannel c = FileChannel.open(fileToBeStoredIn.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE))
 			{
-				String line = scanner.nextLine();
-				if(!scanner.hasNextLine())
-					line = line.substring(0, line.length() - 1) + "\n";
-				else
-					line = line + "\n";
-				buffer.clear();
-				data = line.getBytes(StandardCharsets.US_ASCII);
-				buffer.put(data);
-				buffer.flip();
-				while (buffer.hasRemaining()) c.write(buffer);
+				final long end = closingBracket(c);
+				if (end >= 0)
+				{
+					final Iterator<byte[]> appended = changed.stream().map(key ->
+					{
+						final V value = data.get(key);
+						if (value == null) return null; // removed before the snapshot has been taken
+						synchronized (value) { return snapshot.recordOf(key, value, view).getBytes(); }
+					}).filter(Objects::nonNull).iterator();
+					return records + append(c, end, appended);
+				}
 			}
-			scanner.close();
-			// replace file:
-			from = copy.toPath();
-			to = fileToBeStoredIn.toPath();
-			Files.copy(from, to, StandardCopyOption.REPLACE_EXISTING);
-			Files.delete(from);
-			c.close();
-			fos.close();
+			catch (NoSuchFileException missing) { } // overwritten from scratch
 		}
 
-		fileToBeStoredIn.getParentFile().mkdirs();
-		fos = new FileOutputStream(fileToBeStoredIn, true);
-		c = fos.getChannel();
+		overwrite(fileToBeStoredIn, data.entrySet().stream().map(entry ->
+		{
+			synchronized (entry.getValue()) { return snapshot.recordOf(entry.getKey(), entry.getValue(), view).getBytes(); }
+		}).iterator());
+		return data.size();
+	}
+
+	/**
+	 * Builds up the view writing down the fields of an entity which are not skipped by a strategy according to JSON syntax.
+	 * @param strategy cannot be null. It is used to specify whichever fields are not to be stored.
+	 * @return the view, writing the same way the backup methods do.
+	 * @throws NullPointerException if strategy is null.
+	 */
+	static Function<Object, String> viewOf(final ExclusionStrategy strategy)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(strategy, "Exclusion strategy" + NULL_ERROR);
+		return new GsonBuilder().setPrettyPrinting().addSerializationExclusionStrategy(strategy).create()::toJson;
+	}
 
-		if (backedUpData.isEmpty()) writeChar(c, '[');
-		else writeChar(c, ',');
+	/**
+	 * Appends a record to the journal, if mutations are journaled. It is to be invoked while holding the monitor of the entity
+	 * being mutated, so that the records about the same entity are appended in the same order they have been applied in.
+	 * @param type type of the record.
+	 * @param fields refer to Journal.append.
+	 * @return the position to be committed, 0 if there is none.
+	 */
+	long append(final byte type, final Object... fields)
+	{
+		final Journal j = journal;
+		return j == null ? 0 : j.append(type, fields);
+	}
 
-		int i = 0;
-		for (Iterator<V> it = toBeBackedUpData.values().iterator(); it.hasNext(); i++)
+	/**
+	 * Blocks until every record up to the given position is durable. It is to be invoked after every lock has been released,
+	 * so that the threads waiting for the same fsync do not hold up anybody else.
+	 * @param position returned by append.
+	 * @throws UncheckedIOException if I/O error(s) occur.
+	 */
+	void commit(final long position)
+	throws UncheckedIOException
+	{
+		final Journal j = journal;
+		if (j == null || position == 0) return;
+		try { j.commit(position); }
+		catch (IOException e) { throw new UncheckedIOException(e); }
+	}
+
+	/**
+	 * Checks whether the JSON array which has just been read by a reader is followed by anything but whitespace, that is whether
+	 * an append to the file it has been read from has been interrupted: refer to append.
+	 * @param reader cannot be null, it must have just read the square bracket closing the array.
+	 * @return true if the file is to be overwritten by the next backup, false if it can be appended to.
+	 * @throws NullPointerException if reader is null.
+	 */
+	static boolean interruptedAppend(final JsonReader reader)
+	throws NullPointerException
+	{
+		Objects.requireNonNull(reader, "Reader" + NULL_ERROR);
+		try { return reader.peek() != JsonToken.END_DOCUMENT; }
+		catch (IOException malformedTail) { return true; }
+	}
+
+	/**
+	 * Appends records to the non-empty JSON array stored inside a file without ever leaving it unparseable: they are written down
+	 * past the square bracket closing the array and forced to the storage device, only then the bracket is turned into a comma
+	 * and forced as well. Should the server crash in between, the file still holds the array it used to, followed by bytes
+	 * the parsers do not read and which are detected by interruptedAppend: the records are replayed from the journal.
+	 * @param channel pointer to the channel to write on.
+	 * @param end position of the square bracket closing the array.
+	 * @param records records to be appended.
+	 * @return the number of records appended.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	private static int append(FileChannel channel, long end, Iterator<byte[]> records)
+	throws IOException
+	{
+		int appended = 0;
+
+		channel.truncate(end + 1);
+		channel.position(end + 1);
+		try
+		{
+			while (records.hasNext())
+			{
+				if (appended > 0) writeChar(channel, ',');
+				writeBytes(channel, records.next());
+				appended++;
+			}
+			if (appended == 0) return 0;
+			writeChar(channel, ']');
+			channel.force(false);
+		}
+		catch (IOException e)
+		{
+			try { channel.truncate(end + 1); } // the bracket has not been moved yet
+			catch (IOException ignored) { }
+			throw e;
+		}
+		final ByteBuffer comma = StandardCharsets.US_ASCII.encode(",");
+		while (comma.hasRemaining()) channel.write(comma, end);
+		channel.force(false);
+		return appended;
+	}
+
+	/**
+	 * Overwrites a file with a JSON array made up of records. They are written down to a temporary file which is forced to the
+	 * storage device and then moved over the file all at once, so that it always holds a complete array.
+	 * @param fileToBeStoredIn file to be overwritten.
+	 * @param records records the array is made up of.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	private static void overwrite(File fileToBeStoredIn, Iterator<byte[]> records)
+	throws IOException
+	{
+		final File tmp = new File(fileToBeStoredIn.getPath() + ".tmp");
+
+		fileToBeStoredIn.getAbsoluteFile().getParentFile().mkdirs();
+		try
+		(
+			final FileOutputStream fos = new FileOutputStream(tmp, false);
+			final FileChannel c = fos.getChannel()
+		)
 		{
-			V v = it.next();
-			data = gson.toJson(v).getBytes();
-			buffer.flip(); buffer.clear();
-			for (int offset = 0; offset < data.length; offset += BUFFERSIZE)
+			boolean first = true;
+			writeChar(c, '[');
+			while (records.hasNext())
 			{
-				buffer.clear();
-				buffer.put(data, offset, Math.min(BUFFERSIZE, data.length - offset));
-				buffer.flip();
-				while (buffer.hasRemaining()) c.write(buffer);
+				if (!first) writeChar(c, ',');
+				writeBytes(c, records.next());
+				first = false;
 			}
-			if (i < toBeBackedUpData.size() - 1) writeChar(c, ',');
+			writeChar(c, ']');
+			c.force(false);
+		}
+		Files.move(tmp.toPath(), fileToBeStoredIn.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+	}
+
+	/**
+	 * Looks for the square bracket closing the JSON array stored inside a file, skipping any trailing whitespace.
+	 * @param channel pointer to the channel to read from.
+	 * @return the position of the bracket, -1 if the file does not end with one.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	private static long closingBracket(FileChannel channel)
+	throws IOException
+	{
+		final ByteBuffer b = ByteBuffer.allocate(1);
+
+		for (long position = channel.size() - 1; position >= 0; position--)
+		{
+			b.clear();
+			if (channel.read(b, position) != 1) return -1;
+			final char c = (char) b.get(0);
+			if (c == ']') return position;
+			if (!Character.isWhitespace(c)) return -1;
+		}
+		return -1;
+	}
+
+	/**
+	 * Checks whether the square bracket opening a JSON array is right before a certain position of a file, skipping any whitespace.
+	 * @param channel pointer to the channel to read from.
+	 * @param position position of the square bracket closing the array.
+	 * @return true if the array is empty, false otherwise.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	private static boolean opensArray(FileChannel channel, long position)
+	throws IOException
+	{
+		final ByteBuffer b = ByteBuffer.allocate(1);
+
+		while (--position >= 0)
+		{
+			b.clear();
+			if (channel.read(b, position) != 1) return false;
+			final char c = (char) b.get(0);
+			if (!Character.isWhitespace(c)) return c == '[';
 		}
-		writeChar(c, ']');
-		backedUpData.putAll(toBeBackedUpData);
+		return false;
+	}
 
-		c.close();
-		fos.close();
+	/**
+	 * Writes every byte of an array onto the channel.
+	 * @param channel pointer to the channel to write on.
+	 * @param bytes bytes to write.
+	 * @throws IOException if I/O error(s) occur.
+	 */
+	private static void writeBytes(FileChannel channel, byte[] bytes)
+	throws IOException
+	{
+		final ByteBuffer buffer = ByteBuffer.wrap(bytes);
+		while (buffer.hasRemaining()) channel.write(buffer);
 	}
 
 	/**
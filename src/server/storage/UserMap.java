@@ -1,6 +1,7 @@
 package server.storage;
 
 import java.io.BufferedReader;
+import java.io.DataInputStream;
 import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
@@ -14,17 +15,19 @@ import java.nio.channels.SocketChannel;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.StandardOpenOption;
 import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
 import java.util.Map.Entry;
-import java.util.HashMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 import com.google.gson.ExclusionStrategy;
 import com.google.gson.FieldAttributes;
@@ -32,6 +35,8 @@ import com.google.gson.Gson;
 import com.google.gson.JsonObject;
 import com.google.gson.stream.JsonReader;
 
+import api.TransactionRecord;
+import api.UserRecord;
 import api.rmi.InvalidTagException;
 import api.rmi.PasswordNotValidException;
 import api.rmi.TagListTooLongException;
@@ -39,11 +44,14 @@ import api.rmi.UserRMIStorage;
 import api.rmi.UsernameAlreadyExistsException;
 import api.rmi.UsernameNotValidException;
 import cryptography.Passwords;
+import server.post.Post;
 import server.post.Post.GainAndCurators;
 import server.user.*;
 
 /**
- * User storage backed by a hashmap. This class is thread-safe.
+ * User storage backed by a hashmap. This class is thread-safe: its indexes are concurrent maps and sets, and only the operations
+ * updating more than one of them at once lock the user they are about, so that operations on different users never contend.
+ * Backups only stop requests while taking a snapshot of the storage, the users making it up are copied right before being modified.
  * @author Giacomo Trapani.
  */
 public class UserMap extends Storage implements UserRMIStorage, UserStorage
@@ -54,15 +62,26 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 	private Map<String, User> usersToBeBackedUp = null;
 	/** Toggled on if this is the first backup and the storage has been recovered from a JSON file. */
 	private boolean usersFirstBackupAndNonEmptyStorage = false;
+	/** Toggled on if the file users are stored in is to be overwritten by the next backup, as an append to it has been interrupted. */
+	private boolean rewriteUsers = false;
+	/** Usernames of the users whose follows have changed since the last backup, it is only replaced while holding backupLock's write lock. */
+	private Set<String> followingModified = ConcurrentHashMap.newKeySet();
+	/** Usernames of the users who have received transactions since the last backup, it is only replaced while holding backupLock's write lock. */
+	private Set<String> transactionsModified = ConcurrentHashMap.newKeySet();
+	/** Number of records stored inside the file users' follows are stored in, it is only accessed by backups. */
+	private int followingRecords = 0;
+	/** Number of records stored inside the file users' transactions are stored in, it is only accessed by backups. */
+	private int transactionsRecords = 0;
 	/** Maps a tag to the set of the users currently interested in it. */
 	private Map<Tag, Set<User>> interestsMap = null;
 	/** Maps a user to the set of users currently following it. */
 	private Map<User, Set<User>> followersMap = null;
 
-	/** Used to allow for every method to run concurrently as long as a backup is not occurring. */
+	/** Snapshot of the users being backed up, it is null if no backup is in progress. It is only replaced while holding backupLock's write lock. */
+	private volatile Snapshot<String, User, ?> snapshot = null;
+
+	/** Used to allow for every method to run concurrently as long as a backup is not taking a snapshot of the storage. */
 	private ReentrantReadWriteLock backupLock = new ReentrantReadWriteLock(true);
-	/** Used to allow for every method not directly editing this class' fields to run concurrently. */
-	private ReentrantReadWriteLock dataAccessLock = new ReentrantReadWriteLock(true);
 
 	/** Empty string. */
 	private static final String EMPTY_STRING = "";
@@ -70,15 +89,71 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 	private static final String NULL_ERROR = " cannot be null.";
 	/** Part of the exception message when a user cannot be find in the storage. */
 	private static final String NOT_SIGNED_UP = " has yet to sign up.";
+	/** Name of the journal of this storage. */
+	private static final String JOURNAL_NAME = "users";
+	/** Type of the records journaling a registration. */
+	private static final byte REGISTER = 0;
+	/** Type of the records journaling a follow. */
+	private static final byte FOLLOW = 1;
+	/** Type of the records journaling an unfollow. */
+	private static final byte UNFOLLOW = 2;
+	/** Type of the records journaling a transaction. */
+	private static final byte TRANSACTION = 3;
+	/** Magic number of the binary snapshots of this storage. */
+	private static final int SNAPSHOT_MAGIC = 0x57535553;
+	/** Strategy used to back up users' immutable data. */
+	private static final ExclusionStrategy IMMUTABLE_DATA = new ExclusionStrategy()
+	{
+		public boolean shouldSkipField(FieldAttributes f)
+		{
+			// skips "following" and "transactions" fields specified inside User class.
+			return f.getDeclaringClass() == User.class && (f.getName().equals("following") || f.getName().equals("transactions"));
+		}
+
+		public boolean shouldSkipClass(Class<?> clazz)
+		{
+			return false;
+		}
+	};
+	/** Strategy used to back up users' follows. */
+	private static final ExclusionStrategy FOLLOWING_DATA = new ExclusionStrategy()
+	{
+		public boolean shouldSkipField(FieldAttributes f)
+		{
+			// skips everything except "username" and "following".
+			return f.getDeclaringClass() == User.class && !f.getName().equals("following") &&
+					!f.getName().equals("username");
+		}
+
+		public boolean shouldSkipClass(Class<?> clazz)
+		{
+			return false;
+		}
+	};
+	/** Strategy used to back up users' transactions. */
+	private static final ExclusionStrategy TRANSACTIONS_DATA = new ExclusionStrategy()
+	{
+		public boolean shouldSkipField(FieldAttributes f)
+		{
+			// skips everything except "username" and "transactions".
+			return f.getDeclaringClass() == User.class && !f.getName().equals("transactions") &&
+					!f.getName().equals("username");
+		}
+
+		public boolean shouldSkipClass(Class<?> clazz)
+		{
+			return false;
+		}
+	};
 
 	/** Default constructor. */
 	public UserMap()
 	{
-		usersBackedUp = new HashMap<>();
-		usersToBeBackedUp = new HashMap<>();
+		usersBackedUp = new ConcurrentHashMap<>();
+		usersToBeBackedUp = new ConcurrentHashMap<>();
 		usersFirstBackupAndNonEmptyStorage = false;
-		interestsMap = new HashMap<>();
-		followersMap = new HashMap<>();
+		interestsMap = new ConcurrentHashMap<>();
+		followersMap = new ConcurrentHashMap<>();
 	}
 
 	public void register(final String username, final String password, final Set<String> tags, final byte[] salt)
@@ -98,69 +173,93 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 		emptyStringHashed = Passwords.hashPassword(EMPTY_STRING.getBytes(StandardCharsets.US_ASCII), salt);
 		if (emptyStringHashed.equals(password)) throw new PasswordNotValidException("Password" + EMPTY_ERROR);
 		u = new User(username, password, tags, salt);
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			// locked until it has been journaled, so that no records about it can be appended before:
+			synchronized (u)
 			{
-				dataAccessLock.writeLock().lock();
-				if (usersToBeBackedUp.containsKey(username) || usersBackedUp.containsKey(username)) // username already exists
-					throw new UsernameAlreadyExistsException("Username has already been taken.");
-				usersToBeBackedUp.put(username, u);
-				u.getTags().forEach(t -> 
-					{
-						Set<User> tmp = new HashSet<>(); tmp.add(u);
-						Set<User> value = null;
-						if ((value = interestsMap.get(t)) == null) interestsMap.put(t, tmp);
-						else value.add(u);
-				});
-				followersMap.put(u, new HashSet<>());
+				add(u);
+				final List<Object> fields = new ArrayList<>(Arrays.asList(u.username, u.hashPassword, u.saltDecoded, u.getTags().size()));
+				u.getTags().forEach(t -> fields.add(t.name));
+				position = append(REGISTER, fields.toArray());
 			}
-			finally { dataAccessLock.writeLock().unlock(); }
+		}
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
+		}
+	}
+
+	public UserRecord getUserRecord(final String username)
+	throws NoSuchUserException, NullPointerException
+	{
+		Objects.requireNonNull(username, "Username" + NULL_ERROR);
+
+		final User u;
+
+		try
+		{
+			backupLock.readLock().lock();
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			return u.toRecord();
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
 
-	public String usernameToUserString(final String username)
+	public Set<String> getFollowing(final String username)
 	throws NoSuchUserException, NullPointerException
 	{
-		Objects.requireNonNull(username, "Username cannot be null");
+		Objects.requireNonNull(username, "Username" + NULL_ERROR);
+
+		final User u;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				return getUserByName(username).toString();
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			return u.getFollowing();
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
 
-	public Set<String> recoverFollowers(final String username)
+	public Set<String> getFollowers(final String username)
 	throws NoSuchUserException, NullPointerException
 	{
 		Objects.requireNonNull(username, "Username" + NULL_ERROR);
 
 		final User u;
+		final Set<String> r = new HashSet<>();
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				return followersMap.get(u)
-					.stream()
-					.map(follower ->
-						follower.toString())
-				.collect(Collectors.toSet());
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			followersMap.get(u).forEach(follower -> r.add(follower.username));
+			return r;
+		}
+		finally { backupLock.readLock().unlock(); }
+	}
+
+	public Set<UserRecord> recoverFollowers(final String username)
+	throws NoSuchUserException, NullPointerException
+	{
+		Objects.requireNonNull(username, "Username" + NULL_ERROR);
+
+		final User u;
+
+		try
+		{
+			backupLock.readLock().lock();
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			return followersMap.get(u)
+				.stream()
+				.map(follower ->
+					follower.toRecord())
+			.collect(Collectors.toSet());
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -173,35 +272,35 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 
 		User u = null;
 		Transaction t = null;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			for (Entry<String, GainAndCurators> entry: gains.entrySet())
 			{
-				dataAccessLock.readLock().lock();
-				for (Entry<String, GainAndCurators> entry: gains.entrySet())
-				{
-					final String username = entry.getKey();
-					final double gain = entry.getValue().gain;
-					final Set<String> curators = entry.getValue().getCurators();
+				final String username = entry.getKey();
+				final double gain = entry.getValue().gain;
+				final Set<String> curators = entry.getValue().getCurators();
 
-					if (gain == 0) continue;
-					if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-					t = new Transaction((gain * authorPercentage) / 100);
-					u.addTransaction(t);
+				if (gain == 0) continue;
+				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+				t = new Transaction((gain * authorPercentage) / 100);
+				position = addTransaction(u, t);
 
-					for (String s: curators)
-					{
-						if ((u = getUserByName(s)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-						t = new Transaction((gain * (100 - authorPercentage)) / (100 * curators.size()));
-						u.addTransaction(t);
-					}
+				for (String s: curators)
+				{
+					if ((u = getUserByName(s)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+					t = new Transaction((gain * (100 - authorPercentage)) / (100 * curators.size()));
+					position = addTransaction(u, t);
 				}
 			}
-			finally { dataAccessLock.readLock().unlock(); }
 		}
-		finally { backupLock.readLock().unlock(); }
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
+		}
 	}
 
 	public String handleLoginSetup(final String username)
@@ -214,13 +313,8 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				return u.saltDecoded;
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			return u.saltDecoded;
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -237,13 +331,8 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				u.login(clientID, hashPassword);
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			u.login(clientID, hashPassword);
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -259,68 +348,70 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				u.logout(clientID);
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			u.logout(clientID);
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
 
-	public Set<String> handleListUsers(final String username)
+	public Set<UserRecord> handleListUsers(final String username)
 	throws NoSuchUserException, NullPointerException
 	{
 		Objects.requireNonNull(username, "Username" + NULL_ERROR);
 
-		Set<String> r = new HashSet<>();
+		Set<UserRecord> r = new HashSet<>();
 		final User u;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				u.getTags().forEach(t ->
-					interestsMap.get(t).forEach(tUser ->
-					{
-						if (!tUser.username.equals(username)) r.add(tUser.toString());
-					})
-				);
-				return r;
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			u.getTags().forEach(t ->
+				interestsMap.get(t).forEach(tUser ->
+				{
+					if (!tUser.username.equals(username)) r.add(tUser.toRecord());
+				})
+			);
+			return r;
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
 
-	public Set<String> handleListFollowing(final String username)
+	public Set<UserRecord> handleListFollowing(final String username)
 	throws NoSuchUserException, NullPointerException
 	{
 		Objects.requireNonNull(username, "Username" + NULL_ERROR);
 
-		Set<String> r = new HashSet<>();
+		Set<UserRecord> r = new HashSet<>();
 		final User u;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			u.getFollowing().forEach(following ->
 			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				u.getFollowing().forEach(following ->
-				{
-					try { r.add(getUserByName(following).toString()); }
-					catch (NullPointerException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); } // storage is in an inconsistent state
-				});
-				return r;
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+				try { r.add(getUserByName(following).toRecord()); }
+				catch (NullPointerException shouldNeverBeThrown) { throw new IllegalStateException(shouldNeverBeThrown); } // storage is in an inconsistent state
+			});
+			return r;
+		}
+		finally { backupLock.readLock().unlock(); }
+	}
+
+	public boolean feedContains(final String username, final Post p)
+	throws NoSuchUserException, NullPointerException
+	{
+		Objects.requireNonNull(username, "Username" + NULL_ERROR);
+		Objects.requireNonNull(p, "Post" + NULL_ERROR);
+
+		final User u;
+
+		try
+		{
+			backupLock.readLock().lock();
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			return p.isSharedByAny(u::isFollowing);
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -333,27 +424,30 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 
 		final User followerUser;
 		final User followedUser;
-		boolean result = false;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			if ((followerUser = getUserByName(followerUsername)) == null) throw new NoSuchUserException(followerUsername + NOT_SIGNED_UP);
+			if ((followedUser = getUserByName(followedUsername)) == null) throw new NoSuchUserException(followedUsername + NOT_SIGNED_UP);
+			synchronized (followedUser) { } // waits for it to be journaled, if it has just been registered
+			// the follower is locked for its follows and followersMap not to be updated by concurrent (un)follows in different orders:
+			synchronized (followerUser)
 			{
-				dataAccessLock.writeLock().lock();
-				if ((followerUser = getUserByName(followerUsername)) == null) throw new NoSuchUserException(followerUsername + NOT_SIGNED_UP);
-				if ((followedUser = getUserByName(followedUsername)) == null) throw new NoSuchUserException(followedUsername + NOT_SIGNED_UP);
-				result = followerUser.follow(followedUser);
-				if (result)
-				{
-					Set<User> tmp = new HashSet<>(); tmp.add(followerUser);
-					followersMap.compute(followedUser, (k, v) -> v == null ? tmp : Stream.concat(tmp.stream(), v.stream()).collect(Collectors.toSet()));
-				}
-				return result;
+				preserve(followerUser);
+				if (!followerUser.follow(followedUser)) return false;
+				followersMap.computeIfAbsent(followedUser, k -> ConcurrentHashMap.newKeySet()).add(followerUser);
+				followingModified.add(followerUsername);
+				position = append(FOLLOW, followerUsername, followedUsername);
+				return true;
 			}
-			finally { dataAccessLock.writeLock().unlock(); }
 		}
-		finally { backupLock.readLock().unlock(); }
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
+		}
 	}
 
 	public boolean handleUnfollowUser(final String followerUsername, final String followedUsername)
@@ -364,49 +458,44 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 
 		final User followerUser;
 		final User followedUser;
+		long position = 0;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
+			if ((followerUser = getUserByName(followerUsername)) == null) throw new NoSuchUserException(followerUsername + NOT_SIGNED_UP);
+			if ((followedUser = getUserByName(followedUsername)) == null) throw new NoSuchUserException(followedUsername + NOT_SIGNED_UP);
+			synchronized (followerUser)
 			{
-				dataAccessLock.writeLock().lock();
-				if ((followerUser = getUserByName(followerUsername)) == null) throw new NoSuchUserException(followerUsername + NOT_SIGNED_UP);
-				if ((followedUser = getUserByName(followedUsername)) == null) throw new NoSuchUserException(followedUsername + NOT_SIGNED_UP);
-				if (followerUser.unfollow(followedUser))
-				{
-					followersMap.get(followedUser).remove(followerUser);
-					return true;
-				}
-				return false;
+				preserve(followerUser);
+				if (!followerUser.unfollow(followedUser)) return false;
+				followersMap.get(followedUser).remove(followerUser);
+				followingModified.add(followerUsername);
+				position = append(UNFOLLOW, followerUsername, followedUsername);
+				return true;
 			}
-			finally { dataAccessLock.writeLock().unlock(); }
 		}
-		finally { backupLock.readLock().unlock(); }
+		finally
+		{
+			backupLock.readLock().unlock();
+			commit(position);
+		}
 	}
 
-	public Set<String> handleGetWallet(final String username)
+	public List<TransactionRecord> handleGetWallet(final String username)
 	throws NoSuchUserException, NullPointerException
 	{
 		Objects.requireNonNull(username, "Username" + NULL_ERROR);
 
-		Set<String> r = new HashSet<>();
+		List<TransactionRecord> r = new ArrayList<>();
 		final User u;
-		List<Transaction> transactions = null;
 
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				transactions = u.getTransactions();
-				r.add(Double.toString(transactions.stream().mapToDouble(t -> t.amount).sum()) + "\r\n");
-				for (Transaction t: transactions) r.add(t.toString());
-				return r;
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			for (Transaction t: u.getTransactions()) r.add(t.toRecord());
+			return r;
 		}
 		finally { backupLock.readLock().unlock(); }
 	}
@@ -428,18 +517,23 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 		try
 		{
 			backupLock.readLock().lock();
-			try
-			{
-				dataAccessLock.readLock().lock();
-				if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
-				return Double.toString(u.getTransactions().stream().mapToDouble(t -> t.amount).sum() * rate);
-			}
-			finally { dataAccessLock.readLock().unlock(); }
+			if ((u = getUserByName(username)) == null) throw new NoSuchUserException(username + NOT_SIGNED_UP);
+			return Double.toString(u.getTransactions().stream().mapToDouble(t -> t.amount).sum() * rate);
 		}
 		finally { backupLock.readLock().unlock(); }
 		
 	}
 
+	public int openJournal(final File directory)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(directory, "Directory" + NULL_ERROR);
+
+		final Journal j = Journal.open(directory, JOURNAL_NAME, this::replay);
+		journal = j;
+		return j.getSkipped();
+	}
+
 	public void backupUsers(final File usersImmutableDataFile, final File followingFile, final File transactionsFile)
 	throws FileNotFoundException, IOException, NullPointerException
 	{
@@ -447,56 +541,156 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 		Objects.requireNonNull(followingFile, "Users' following file" + NULL_ERROR);
 		Objects.requireNonNull(transactionsFile, "Users' transactions' file" + NULL_ERROR);
 
+		final Map<String, User> newUsers;
+		final Set<String> changedFollowing;
+		final Set<String> changedTransactions;
+		final boolean nonEmptyFile;
+		final boolean rewrite;
+		final Snapshot<String, User, String> s = new Snapshot<>(List.of(viewOf(FOLLOWING_DATA), viewOf(TRANSACTIONS_DATA)));
+		final Journal j = journal;
+
 		try
 		{
+			// requests are only stopped while the snapshot is being taken: users are copied lazily, right before being modified.
 			backupLock.writeLock().lock();
-			backupCached(new ExclusionStrategy()
+			newUsers = usersToBeBackedUp;
+			usersToBeBackedUp = new ConcurrentHashMap<>();
+			nonEmptyFile = !usersBackedUp.isEmpty() || usersFirstBackupAndNonEmptyStorage;
+			usersBackedUp.putAll(newUsers);
+			usersFirstBackupAndNonEmptyStorage = false;
+			rewrite = rewriteUsers;
+			rewriteUsers = false;
+			changedFollowing = followingModified;
+			followingModified = ConcurrentHashMap.newKeySet();
+			changedTransactions = transactionsModified;
+			transactionsModified = ConcurrentHashMap.newKeySet();
+			if (j != null) j.rotate(); // records appended from now on are the ones missing from the snapshot
+			snapshot = s;
+		}
+		finally { backupLock.writeLock().unlock(); }
+
+		try
+		{
+			if (j != null) j.seal(); // the segment retired while requests were stopped is fsynced now that they are not
+			// users stored inside usersBackedUp are the ones making up the snapshot: new ones are added to usersToBeBackedUp.
+			if (rewrite) backupNonCached(IMMUTABLE_DATA, usersImmutableDataFile, usersBackedUp);
+			else backupCached(IMMUTABLE_DATA, usersImmutableDataFile, newUsers, nonEmptyFile);
+			// appends the records of the users which have changed:
+			int records = followingRecords;
+			followingRecords = 0; // overwritten by the next backup, should this one fail
+			followingRecords = backupSnapshot(s, usersBackedUp, changedFollowing, 0, records, followingFile);
+			records = transactionsRecords;
+			transactionsRecords = 0;
+			transactionsRecords = backupSnapshot(s, usersBackedUp, changedTransactions, 1, records, transactionsFile);
+			if (j != null) j.truncate();
+		}
+		finally
+		{
+			try
 			{
-				public boolean shouldSkipField(FieldAttributes f)
-				{
-					// skips "following" and "transactions" fields specified inside User class.
-					return f.getDeclaringClass() == User.class && (f.getName().equals("following") || f.getName().equals("transactions"));
-				}
+				backupLock.writeLock().lock();
+				snapshot = null;
+			}
+			finally { backupLock.writeLock().unlock(); }
+		}
+	}
 
-				public boolean shouldSkipClass(Class<?> clazz)
-				{
-					return false;
-				}
-			}, usersImmutableDataFile, usersBackedUp, usersToBeBackedUp, usersFirstBackupAndNonEmptyStorage);
-			usersFirstBackupAndNonEmptyStorage = false;
-			usersToBeBackedUp = new HashMap<>();
+	public void snapshotUsers(final File snapshotFile)
+	throws IOException, NullPointerException
+	{
+		Objects.requireNonNull(snapshotFile, "Snapshot file" + NULL_ERROR);
+
+		final BinarySnapshot b = new BinarySnapshot(SNAPSHOT_MAGIC);
+		final Snapshot<String, User, byte[]> s = new Snapshot<>(List.of(u -> encode(b, u)));
+		final Journal j = journal;
+
+		try
+		{
+			// requests are only stopped while the snapshot is being taken: users are copied lazily, right before being modified.
+			backupLock.writeLock().lock();
+			usersBackedUp.putAll(usersToBeBackedUp);
+			usersToBeBackedUp = new ConcurrentHashMap<>();
+			// every user is written down each time:
+			followingModified = ConcurrentHashMap.newKeySet();
+			transactionsModified = ConcurrentHashMap.newKeySet();
+			if (j != null) j.rotate(); // records appended from now on are the ones missing from the snapshot
+			snapshot = s;
+		}
+		finally { backupLock.writeLock().unlock(); }
 
-			backupNonCached(new ExclusionStrategy()
+		try
+		{
+			if (j != null) j.seal(); // the segment retired while requests were stopped is fsynced now that they are not
+			b.write(s, usersBackedUp, snapshotFile);
+			if (j != null) j.truncate();
+		}
+		finally
+		{
+			try
 			{
-				public boolean shouldSkipField(FieldAttributes f)
-				{
-					// skips everything except "username" and "following".
-					return f.getDeclaringClass() == User.class && !f.getName().equals("following") &&
-							!f.getName().equals("username");
-				}
-				
-				public boolean shouldSkipClass(Class<?> clazz)
-				{
-					return false;
-				}
-			}, followingFile, usersBackedUp);
+				backupLock.writeLock().lock();
+				snapshot = null;
+			}
+			finally { backupLock.writeLock().unlock(); }
+		}
+	}
 
-			backupNonCached(new ExclusionStrategy()
+	/**
+	 * Instantiates UserMap given a binary snapshot of its users. Users' followers and interests are indexed while the snapshot is being loaded.
+	 * Every user is yet to be backed up, so that exporting the storage to JSON writes down all of them.
+	 * @param snapshotFile cannot be null, must be a snapshot written by snapshotUsers.
+	 * @return Instantiated map on success.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws IllegalArchiveException if snapshotFile is not a valid snapshot.
+	 * @throws NullPointerException if snapshotFile is null.
+	 */
+	public static UserMap fromSnapshot(final File snapshotFile)
+	throws IOException, IllegalArchiveException, NullPointerException
+	{
+		Objects.requireNonNull(snapshotFile, "Snapshot file" + NULL_ERROR);
+
+		final String INVALID_STORAGE = "The file to be loaded is not a valid storage.";
+		final UserMap map = new UserMap();
+		/** Maps a username to the usernames of the users it is following, they are followed once every user has been loaded. */
+		final Map<User, List<String>> parsedFollowing = new HashMap<>();
+
+		BinarySnapshot.load(snapshotFile, SNAPSHOT_MAGIC, (record, strings) ->
+		{
+			final String username = strings[record.getInt()];
+			final String hashPassword = strings[record.getInt()];
+			final String saltDecoded = strings[record.getInt()];
+			final Set<String> tags = new HashSet<>();
+			for (int i = record.getInt(); i > 0; i--) tags.add(strings[record.getInt()]);
+			final List<String> following = new ArrayList<>();
+			for (int i = record.getInt(); i > 0; i--) following.add(strings[record.getInt()]);
+			final User u;
+			try
 			{
-				public boolean shouldSkipField(FieldAttributes f)
-				{
-					// skips everything except "username" and "transactions".
-					return f.getDeclaringClass() == User.class && !f.getName().equals("transactions") &&
-							!f.getName().equals("username");
-				}
-				
-				public boolean shouldSkipClass(Class<?> clazz)
-				{
-					return false;
-				}
-			}, transactionsFile, usersBackedUp);
+				u = new User(username, hashPassword, tags, Base64.getDecoder().decode(saltDecoded));
+				for (int i = record.getInt(); i > 0; i--) u.addTransaction(new Transaction(record.getDouble(), strings[record.getInt()]));
+			}
+			catch (InvalidTagException | TagListTooLongException | InvalidAmountException illegalSnapshot)
+			{
+				throw new IllegalArchiveException(INVALID_STORAGE);
+			}
+			if (map.usersToBeBackedUp.putIfAbsent(username, u) != null) throw new IllegalArchiveException(INVALID_STORAGE);
+			for (Tag t: u.getTags())
+				map.interestsMap.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(u);
+			map.followersMap.putIfAbsent(u, ConcurrentHashMap.newKeySet());
+			parsedFollowing.put(u, following);
+		});
+		for (Entry<User, List<String>> entry: parsedFollowing.entrySet())
+		{
+			final User u = entry.getKey();
+			for (String s: entry.getValue())
+			{
+				final User followed = map.usersToBeBackedUp.get(s);
+				try { if (followed == null || !u.follow(followed)) throw new IllegalArchiveException(INVALID_STORAGE); }
+				catch (SameUserException illegalSnapshot) { throw new IllegalArchiveException(INVALID_STORAGE); }
+				map.followersMap.get(followed).add(u);
+			}
 		}
-		finally { backupLock.writeLock().unlock(); }
+		return map;
 	}
 
 	/**
@@ -584,10 +778,13 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 					throw new IllegalArchiveException(INVALID_STORAGE);
 				}
 				map.usersBackedUp.put(username, u);
-				map.followersMap.put(u, new HashSet<>());
+				map.followersMap.put(u, ConcurrentHashMap.newKeySet());
 			}
 			reader.endArray();
+			map.rewriteUsers = interruptedAppend(reader);
 		}
+		/** Maps a username to the usernames of the users it is following, as stored by the last record about it. */
+		final Map<String, Set<String>> parsedFollowing = new HashMap<>();
 		try (final InputStream is = new FileInputStream(followingFile); final JsonReader reader = new JsonReader(new InputStreamReader(is)))
 		{
 			reader.setLenient(true);
@@ -616,31 +813,40 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 							following.add(reader.nextString());
 						reader.endArray();
 					}
-					for (String s: following)
-					{
-						try
-						{
-							if (!map.handleFollowUser(username, s))
-							{
-								FileChannel.open(usersFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-								FileChannel.open(followingFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-								FileChannel.open(transactionsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-								throw new IllegalArchiveException(INVALID_STORAGE);
-							}
-						}
-						catch (NullPointerException | NoSuchUserException | SameUserException illegalJSON)
-						{
-							FileChannel.open(usersFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-							FileChannel.open(followingFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-							FileChannel.open(transactionsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-							throw new IllegalArchiveException(INVALID_STORAGE);
-						}
-					}
+					else reader.skipValue();
 				}
 				reader.endObject();
+				parsedFollowing.put(username, following); // later records supersede earlier ones
+				map.followingRecords++;
 			}
 			reader.endArray();
+			if (interruptedAppend(reader)) map.followingRecords = 0; // overwritten by the next backup
 		}
+		for (Entry<String, Set<String>> entry: parsedFollowing.entrySet())
+		{
+			for (String s: entry.getValue())
+			{
+				try
+				{
+					if (!map.handleFollowUser(entry.getKey(), s))
+					{
+						FileChannel.open(usersFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+						FileChannel.open(followingFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+						FileChannel.open(transactionsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+						throw new IllegalArchiveException(INVALID_STORAGE);
+					}
+				}
+				catch (NullPointerException | NoSuchUserException | SameUserException illegalJSON)
+				{
+					FileChannel.open(usersFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+					FileChannel.open(followingFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+					FileChannel.open(transactionsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+					throw new IllegalArchiveException(INVALID_STORAGE);
+				}
+			}
+		}
+		/** Maps a username to its transactions, as stored by the last record about it. */
+		final Map<String, List<Transaction>> parsedTransactions = new HashMap<>();
 		try (final InputStream is = new FileInputStream(transactionsFile); final JsonReader reader = new JsonReader(new InputStreamReader(is)))
 		{
 			reader.setLenient(true);
@@ -656,18 +862,17 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 				reader.beginObject();
 				String name = null;
 				String username = null;
-				JsonObject object = new JsonObject();
+				List<Transaction> transactions = new ArrayList<>();
 				while (reader.hasNext())
 				{
 					name = reader.nextName();
-					boolean flag = false;
 					if (name.equals("username")) username = reader.nextString();
 					else if (name.equals("transactions"))
 					{
 						reader.beginArray();
 						while (reader.hasNext())
 						{
-							flag = true;
+							JsonObject object = new JsonObject();
 							reader.beginObject();
 							while (reader.hasNext())
 							{
@@ -677,41 +882,157 @@ public class UserMap extends Storage implements UserRMIStorage, UserStorage
 								else throw new IllegalArchiveException(INVALID_STORAGE);
 							}
 							reader.endObject();
-							if (flag) try { map.getUserByName(username).addTransaction(generator.fromJson(object, Transaction.class)); }
-							catch (NullPointerException illegalJSON)
-							{
-								FileChannel.open(usersFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-								FileChannel.open(followingFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-								FileChannel.open(transactionsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
-								throw new IllegalArchiveException(INVALID_STORAGE);
-							}
+							transactions.add(generator.fromJson(object, Transaction.class));
 						}
 						reader.endArray();
 					}
 					else reader.skipValue();
 				}
 				reader.endObject();
+				parsedTransactions.put(username, transactions); // later records supersede earlier ones
+				map.transactionsRecords++;
 			}
 			reader.endArray();
+			if (interruptedAppend(reader)) map.transactionsRecords = 0; // overwritten by the next backup
 		}
+		for (Entry<String, List<Transaction>> entry: parsedTransactions.entrySet())
+		{
+			try { for (Transaction t: entry.getValue()) map.getUserByName(entry.getKey()).addTransaction(t); }
+			catch (NullPointerException illegalJSON)
+			{
+				FileChannel.open(usersFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+				FileChannel.open(followingFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+				FileChannel.open(transactionsFile.toPath(), StandardOpenOption.WRITE).truncate(0).close();
+				throw new IllegalArchiveException(INVALID_STORAGE);
+			}
+		}
+		map.followingModified.clear(); // as stored inside the files
 
 		for (User u: map.usersBackedUp.values())
 		{
 			for (Tag t: u.getTags())
+				map.interestsMap.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(u);
+			for (String s: u.getFollowing())
+				map.followersMap.computeIfAbsent(map.usersBackedUp.get(s), k -> ConcurrentHashMap.newKeySet()).add(u);
+		}
+		return map;
+	}
+
+	/**
+	 * Method used to encode the record of a user inside a binary snapshot: its username, password and salt, followed by its tags,
+	 * the users it is following and its transactions, each list prefixed by its size. It is to be invoked while holding the user's monitor.
+	 */
+	private static byte[] encode(final BinarySnapshot b, final User u)
+	{
+		return b.encode(out ->
+		{
+			out.writeInt(b.indexOf(u.username));
+			out.writeInt(b.indexOf(u.hashPassword));
+			out.writeInt(b.indexOf(u.saltDecoded));
+			final Set<Tag> tags = u.getTags();
+			out.writeInt(tags.size());
+			for (Tag t: tags) out.writeInt(b.indexOf(t.name));
+			final Set<String> following = u.getFollowing();
+			out.writeInt(following.size());
+			for (String s: following) out.writeInt(b.indexOf(s));
+			final List<Transaction> transactions = u.getTransactions();
+			out.writeInt(transactions.size());
+			for (Transaction t: transactions)
 			{
-				if (map.interestsMap.get(t) == null)
-					map.interestsMap.put(t, new HashSet<>());
-				map.interestsMap.get(t).add(u);
+				out.writeDouble(t.amount);
+				out.writeInt(b.indexOf(t.timestamp));
 			}
-			for (String s: u.getFollowing())
+		});
+	}
+
+	/**
+	 * Method used to add a user to the storage and to the indexes.
+	 * @throws UsernameAlreadyExistsException if its username has already been taken.
+	 */
+	private void add(final User u)
+	throws UsernameAlreadyExistsException
+	{
+		// users are only moved to usersBackedUp while holding the write lock:
+		if (usersBackedUp.containsKey(u.username) || usersToBeBackedUp.putIfAbsent(u.username, u) != null) // username already exists
+			throw new UsernameAlreadyExistsException("Username has already been taken.");
+		u.getTags().forEach(t -> interestsMap.computeIfAbsent(t, k -> ConcurrentHashMap.newKeySet()).add(u));
+		followersMap.putIfAbsent(u, ConcurrentHashMap.newKeySet());
+	}
+
+	/**
+	 * Method used to add a transaction to a user, preserving it first if it is part of the backup in progress.
+	 * @return the position to be committed for the transaction to be durable.
+	 */
+	private long addTransaction(final User u, final Transaction t)
+	{
+		synchronized (u)
+		{
+			preserve(u);
+			final int index = u.getTransactionsNo();
+			u.addTransaction(t);
+			transactionsModified.add(u.username);
+			return append(TRANSACTION, u.username, index, t.amount, t.timestamp);
+		}
+	}
+
+	/**
+	 * Method used to apply a record of the journal.
+	 * @return true if it has been applied, false if it is about users which do not exist or it is not valid.
+	 */
+	private boolean replay(final byte type, final DataInputStream record)
+	throws IOException
+	{
+		switch (type)
+		{
+			case REGISTER:
 			{
-				User followed = map.usersBackedUp.get(s);
-				if (map.followersMap.get(followed) == null)
-					map.followersMap.put(followed, new HashSet<>());
-				map.followersMap.get(followed).add(u);
+				final String username = record.readUTF();
+				final String hashPassword = record.readUTF();
+				final String saltDecoded = record.readUTF();
+				final Set<String> tags = new HashSet<>();
+				for (int i = record.readInt(); i > 0; i--) tags.add(record.readUTF());
+				try { add(new User(username, hashPassword, tags, Base64.getDecoder().decode(saltDecoded))); }
+				catch (IllegalArgumentException | InvalidTagException | TagListTooLongException illegalRecord) { return false; }
+				catch (UsernameAlreadyExistsException alreadyApplied) { } // already part of the backup
+				return true;
+			}
+
+			case FOLLOW:
+				try { handleFollowUser(record.readUTF(), record.readUTF()); }
+				catch (NoSuchUserException | SameUserException illegalRecord) { return false; }
+				return true;
+
+			case UNFOLLOW:
+				try { handleUnfollowUser(record.readUTF(), record.readUTF()); }
+				catch (NoSuchUserException illegalRecord) { return false; }
+				return true;
+
+			case TRANSACTION:
+			{
+				final User u = getUserByName(record.readUTF());
+				final int index = record.readInt();
+				final JsonObject object = new JsonObject();
+				object.addProperty("amount", record.readDouble());
+				object.addProperty("timestamp", record.readUTF());
+				if (u == null || u.getTransactionsNo() < index) return false;
+				if (u.getTransactionsNo() > index) return true; // already part of the backup
+				addTransaction(u, new Gson().fromJson(object, Transaction.class)); // not journaled again, as the journal is yet to be opened
+				return true;
 			}
+
+			default:
+				return false;
 		}
-		return map;
+	}
+
+	/**
+	 * Method used to preserve a user as it is right before it is modified, if it is part of the backup in progress.
+	 * It is to be invoked while holding the user's monitor.
+	 */
+	private void preserve(final User u)
+	{
+		final Snapshot<String, User, ?> s = snapshot;
+		if (s != null && usersBackedUp.containsKey(u.username)) s.preserve(u.username, u);
 	}
 
 	private User getUserByName(final String username)
@@ -4,9 +4,14 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.SocketChannel;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import api.TransactionRecord;
+import api.UserRecord;
+
+import server.post.Post;
 import server.post.Post.GainAndCurators;
 import server.user.InvalidAmountException;
 import server.user.InvalidLoginException;
@@ -24,21 +29,41 @@ public interface UserStorage
 	/**
 	 * Recovers the set of the usernames of the users the given user is currently followed by.
 	 * @param username cannot be null, must belong to WINSOME registered users' set.
-	 * @return the usernames of every user currently following given user.
+	 * @return every user currently following given user.
+	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
+	 * @throws NullPointerException if username is null.
+	 */
+	public Set<UserRecord> recoverFollowers(final String username)
+	throws NoSuchUserException, NullPointerException;
+
+	/**
+	 * Converts a user to the record sent to clients.
+	 * @param username cannot be null, must belong to WINSOME registered users' set.
+	 * @return the record describing the user.
+	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
+	 * @throws NullPointerException if username is null.
+	 */
+	public UserRecord getUserRecord(final String username)
+	throws NoSuchUserException, NullPointerException;
+
+	/**
+	 * Getter for the usernames of the users a user is currently following, it is meant to be used by other storages.
+	 * @param username cannot be null, must belong to WINSOME registered users' set.
+	 * @return a copy of the usernames of the users currently followed by the one specified.
 	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
 	 * @throws NullPointerException if username is null.
 	 */
-	public Set<String> recoverFollowers(final String username)
+	public Set<String> getFollowing(final String username)
 	throws NoSuchUserException, NullPointerException;
 
 	/**
-	 * Converts a user to a stringified user.
+	 * Getter for the usernames of the users currently following a user, it is meant to be used by other storages.
 	 * @param username cannot be null, must belong to WINSOME registered users' set.
-	 * @return Stringified user.
+	 * @return a copy of the usernames of the users currently following the one specified.
 	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
 	 * @throws NullPointerException if username is null.
 	 */
-	public String usernameToUserString(final String username)
+	public Set<String> getFollowers(final String username)
 	throws NoSuchUserException, NullPointerException;
 
 	/**
@@ -90,21 +115,32 @@ public interface UserStorage
 	/**
 	 * Handles list users.
 	 * @param username cannot be null, must belong to WINSOME registered users' set.
-	 * @return a set of stringified users sharing at least a common tag with the one specified.
+	 * @return a set of users sharing at least a common tag with the one specified.
 	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
 	 * @throws NullPointerException if username is null.
 	 */
-	public Set<String> handleListUsers(final String username)
+	public Set<UserRecord> handleListUsers(final String username)
 	throws NoSuchUserException, NullPointerException;
 
 	/**
 	 * Handles list following.
 	 * @param username cannot be null, must belong to WINSOME registered users' set.
-	 * @return a set of stringified users currently following the one specified.
+	 * @return a set of users currently followed by the one specified.
 	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
 	 * @throws NullPointerException if username is null.
 	 */
-	public Set<String> handleListFollowing(final String username)
+	public Set<UserRecord> handleListFollowing(final String username)
+	throws NoSuchUserException, NullPointerException;
+
+	/**
+	 * Checks whether a post shows up on a user's feed, i.e. whether they are following its author or any of its rewinners.
+	 * @param username cannot be null, must belong to WINSOME registered users' set.
+	 * @param p cannot be null.
+	 * @return true if p shows up on username's feed, false otherwise.
+	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
+	 * @throws NullPointerException if any parameter is null.
+	 */
+	public boolean feedContains(final String username, final Post p)
 	throws NoSuchUserException, NullPointerException;
 
 	/**
@@ -133,12 +169,12 @@ public interface UserStorage
 	/**
 	 * Handles get wallet.
 	 * @param username cannot be null, must belong to WINSOME registered users' set.
-	 * @return the history of each and every transaction involving given user written in JSON syntax and
-	 * the total amount of WINCOINS currently held by them.
+	 * @return the history of each and every transaction involving given user, the total amount of WINCOINS
+	 * currently held by them being the sum of their amounts.
 	 * @throws NoSuchUserException if username does not belong to WINSOME registered users' set.
 	 * @throws NullPointerException if username is null.
 	 */
-	public Set<String> handleGetWallet(final String username)
+	public List<TransactionRecord> handleGetWallet(final String username)
 	throws NoSuchUserException, NullPointerException;
 
 	/**
@@ -152,6 +188,18 @@ public interface UserStorage
 	public String handleGetWalletInBitcoin(final String username)
 	throws IOException, NoSuchUserException, NullPointerException;
 
+	/**
+	 * Replays the journal stored inside the given directory on top of this storage, which is to be recovered from its last backup beforehand,
+	 * and has every following mutation (i.e. registrations, follows, unfollows and transactions) appended to it, so that none is lost between two backups.
+	 * A mutation is durable once the method applying it has returned.
+	 * @param directory cannot be null, it is created if it does not exist.
+	 * @return the number of records which could not be replayed.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if directory is null.
+	 */
+	public int openJournal(final File directory)
+	throws IOException, NullPointerException;
+
 	/**
 	 * Backs up WINSOME registered users' set according to JSON syntax.
 	 * @param usersImmutableDataFile cannot be null.
@@ -164,4 +212,13 @@ public interface UserStorage
 	 */
 	public void backupUsers(final File usersImmutableDataFile, final File followingFile, final File transactionsFile)
 	throws FileNotFoundException, IOException, NullPointerException;
+
+	/**
+	 * Backs up WINSOME registered users' set as a binary snapshot, written down as a whole and loaded by mapping it in memory.
+	 * @param snapshotFile cannot be null, it is replaced once the snapshot has been written down.
+	 * @throws IOException if I/O error(s) occur.
+	 * @throws NullPointerException if snapshotFile is null.
+	 */
+	public void snapshotUsers(final File snapshotFile)
+	throws IOException, NullPointerException;
 }
\ No newline at end of file
@@ -4,9 +4,12 @@ import java.time.Instant;
 import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
+import java.util.Objects;
 
 import com.google.gson.Gson;
 
+import api.TransactionRecord;
+
 /**
  * Utility class used to denote a Transaction made on WINSOME.
  * @author Giacomo Trapani.
@@ -34,11 +37,32 @@ public class Transaction
 		this.timestamp = FORMATTER.format(Instant.now());
 	}
 
+	/**
+	 * Constructor for a transaction recovered from a backup.
+	 * @param amount must be greater than zero.
+	 * @param timestamp cannot be null.
+	 * @throws InvalidAmountException if amount is not greater than zero.
+	 * @throws NullPointerException if timestamp is null.
+	 */
+	public Transaction(final double amount, final String timestamp)
+	throws InvalidAmountException, NullPointerException
+	{
+		if (amount <= 0) throw new InvalidAmountException("Negative transactions are not supported.");
+		this.amount = amount;
+		this.timestamp = Objects.requireNonNull(timestamp, "Timestamp cannot be null.");
+	}
+
 	public String toString()
 	{
 		return String.format("{ \"amount\": \"%f\", \"timestamp\":  \"%s\" }", amount, timestamp);
 	}
 
+	/** Converts this transaction to the record sent to clients. */
+	public TransactionRecord toRecord()
+	{
+		return new TransactionRecord(amount, timestamp);
+	}
+
 	/** Parses a JSON formatted string to a Transaction. */
 	public static Transaction fromJSON(String JSONString)
 	{
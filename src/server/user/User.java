@@ -9,6 +9,7 @@ import java.util.List;
 import java.util.Objects;
 import java.util.Set;
 
+import api.UserRecord;
 import api.rmi.InvalidTagException;
 import api.rmi.TagListTooLongException;
 
@@ -24,8 +25,8 @@ public class User
 	public final String hashPassword;
 	/** User's salt decoded with US ASCII. */
 	public final String saltDecoded;
-	/** Identifier of the client which has logged in with this user's credentials. It is set to null on default. */
-	private SocketChannel loggedIn;
+	/** Identifier of the client which has logged in with this user's credentials. It is set to null on default, it is never backed up. */
+	private transient SocketChannel loggedIn;
 	/** Set of the tags the user is interested in. */
 	private Set<Tag> tags = null;
 	/** Set of the usernames of the users this user is currently following. */
@@ -88,6 +89,16 @@ public class User
 		return res;
 	}
 
+	/**
+	 * Checks whether this user is currently following another one.
+	 * @param username username of the other user.
+	 * @return true if this user is following username, false otherwise.
+	 */
+	public synchronized boolean isFollowing(final String username)
+	{
+		return following.contains(username);
+	}
+
 	/**
 	 * Getter for the transactions this user has been involved with.
 	 * @return a copy of the transactions this user has been involved with.
@@ -99,6 +110,12 @@ public class User
 		return r;
 	}
 
+	/** Getter for the number of transactions this user has been involved with. */
+	public synchronized int getTransactionsNo()
+	{
+		return transactions.size();
+	}
+
 	/** Adds a new transaction to this user. */
 	public void addTransaction(Transaction t)
 	{
@@ -208,6 +225,14 @@ public class User
 		return String.format("{ \"username\": \"%s\", \"tags\": [%s]", username, setToString(tags)) + "}";
 	}
 
+	/** Converts this user to the record sent to clients. */
+	public UserRecord toRecord()
+	{
+		List<String> r = new ArrayList<>();
+		for (Tag t : tags) r.add(t.name);
+		return new UserRecord(username, r);
+	}
+
 	/** Utility method used to convert a Set to a String. */
 	private <T> String setToString(Set<T> set)
 	{